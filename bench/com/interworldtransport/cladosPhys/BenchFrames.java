@@ -0,0 +1,226 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BenchFrames<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BenchFrames<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+
+import com.interworldtransport.cladosF.*;
+import com.interworldtransport.cladosG.*;
+import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
+
+/**
+ * Frames for the benchmarks. Every frame type is built the same way so the
+ * types can be compared: direction j is default blade j+1 tilted a little
+ * toward every other blade, which keeps the directions independent and the
+ * coefficients dense. The helpers dispatch to the per-type static methods
+ * the frames provide.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class BenchFrames
+{
+	static final String	REAL_F		= "RealF";
+
+	static final String	REAL_D		= "RealD";
+
+	static final String	COMPLEX_F	= "ComplexF";
+
+	static final String	COMPLEX_D	= "ComplexD";
+
+	private BenchFrames()
+	{
+	}
+
+	/**
+	 * Build an algebra suited to a frame type.
+	 * 
+	 * @param pType
+	 *            String one of the four type names
+	 * @param pGenerators
+	 *            int number of generators
+	 * @return AlgebraAbstract
+	 */
+	static AlgebraAbstract algebra(String pType, int pGenerators)
+	{
+		String tName = "Bench" + pGenerators;
+		StringBuilder tSig = new StringBuilder("+");
+		for (int g = 1; g < pGenerators; g++)
+			tSig.append('-');
+		switch (pType)
+		{
+			case REAL_F:
+				return new AlgebraRealF(tName, new Foot(tName, RealF.newONE(tName)), tSig.toString(),
+								RealF.newONE(tName));
+			case REAL_D:
+				return new AlgebraRealD(tName, new Foot(tName, RealD.newONE(tName)), tSig.toString(),
+								RealD.newONE(tName));
+			case COMPLEX_F:
+				return new AlgebraComplexF(tName, new Foot(tName, ComplexF.newONE(tName)), tSig.toString(),
+								ComplexF.newONE(tName));
+			case COMPLEX_D:
+				return new AlgebraComplexD(tName, new Foot(tName, ComplexD.newONE(tName)), tSig.toString(),
+								ComplexD.newONE(tName));
+			default:
+				throw new IllegalArgumentException("No frame type " + pType);
+		}
+	}
+
+	/**
+	 * Build a frame over an algebra from that algebra's type.
+	 * 
+	 * @param pAlg
+	 *            AlgebraAbstract made by algebra()
+	 * @param pName
+	 *            String frame name
+	 * @param pOrder
+	 *            int number of directions, cut back to what the algebra holds
+	 * @return FrameAbstract with directions named e0, e1 and so on
+	 */
+	static FrameAbstract frame(AlgebraAbstract pAlg, String pName, int pOrder)
+	{
+		int tN = Math.min(pOrder, pAlg.getGBasis().getBladeCount() - 1);
+		ArrayList<String> tNames = new ArrayList<String>(tN);
+		for (int j = 0; j < tN; j++)
+			tNames.add("e" + j);
+		FrameAbstract rFrame = build(pAlg, pName, tN);
+		rFrame.setNameList(tNames);
+		return rFrame;
+	}
+
+	/**
+	 * Make pN directions and the frame around them.
+	 */
+	private static FrameAbstract build(AlgebraAbstract pAlg, String pName, int pN)
+	{
+		int tB = pAlg.getGBasis().getBladeCount();
+		if (pAlg instanceof AlgebraRealF)
+		{
+			AlgebraRealF tAlg = (AlgebraRealF) pAlg;
+			ArrayList<MonadRealF> tList = new ArrayList<MonadRealF>(pN);
+			for (int j = 0; j < pN; j++)
+			{
+				RealF[] tC = new RealF[tB];
+				for (int k = 0; k < tB; k++)
+				{
+					tC[k] = new RealF(tAlg.getProtoNumber());
+					tC[k].setReal((float) tilt(j, k, tB));
+				}
+				tList.add(new MonadRealF("e" + j, tAlg, pName, tC));
+			}
+			return new FrameRealF(pName, tAlg, tList);
+		}
+		if (pAlg instanceof AlgebraRealD)
+		{
+			AlgebraRealD tAlg = (AlgebraRealD) pAlg;
+			ArrayList<MonadRealD> tList = new ArrayList<MonadRealD>(pN);
+			for (int j = 0; j < pN; j++)
+			{
+				RealD[] tC = new RealD[tB];
+				for (int k = 0; k < tB; k++)
+				{
+					tC[k] = new RealD(tAlg.getProtoNumber());
+					tC[k].setReal(tilt(j, k, tB));
+				}
+				tList.add(new MonadRealD("e" + j, tAlg, pName, tC));
+			}
+			return new FrameRealD(pName, tAlg, tList);
+		}
+		if (pAlg instanceof AlgebraComplexF)
+		{
+			AlgebraComplexF tAlg = (AlgebraComplexF) pAlg;
+			ArrayList<MonadComplexF> tList = new ArrayList<MonadComplexF>(pN);
+			for (int j = 0; j < pN; j++)
+			{
+				ComplexF[] tC = new ComplexF[tB];
+				for (int k = 0; k < tB; k++)
+				{
+					tC[k] = new ComplexF(tAlg.getProtoNumber());
+					tC[k].setReal((float) tilt(j, k, tB));
+					tC[k].setImg((float) tilt(k, j, tB));
+				}
+				tList.add(new MonadComplexF("e" + j, tAlg, pName, tC));
+			}
+			return new FrameComplexF(pName, tAlg, tList);
+		}
+		AlgebraComplexD tAlg = (AlgebraComplexD) pAlg;
+		ArrayList<MonadComplexD> tList = new ArrayList<MonadComplexD>(pN);
+		for (int j = 0; j < pN; j++)
+		{
+			ComplexD[] tC = new ComplexD[tB];
+			for (int k = 0; k < tB; k++)
+			{
+				tC[k] = new ComplexD(tAlg.getProtoNumber());
+				tC[k].setReal(tilt(j, k, tB));
+				tC[k].setImg(tilt(k, j, tB));
+			}
+			tList.add(new MonadComplexD("e" + j, tAlg, pName, tC));
+		}
+		return new FrameComplexD(pName, tAlg, tList);
+	}
+
+	/**
+	 * Find a basis monad through the frame's own findMonad.
+	 */
+	static int findMonad(FrameAbstract pF, Object pM)
+	{
+		if (pF instanceof FrameRealF) return FrameRealF.findMonad((FrameRealF) pF, (MonadRealF) pM);
+		if (pF instanceof FrameRealD) return FrameRealD.findMonad((FrameRealD) pF, (MonadRealD) pM);
+		if (pF instanceof FrameComplexF) return FrameComplexF.findMonad((FrameComplexF) pF, (MonadComplexF) pM);
+		return FrameComplexD.findMonad((FrameComplexD) pF, (MonadComplexD) pM);
+	}
+
+	static boolean isREqual(FrameAbstract pF1, FrameAbstract pF2)
+	{
+		if (pF1 instanceof FrameRealF) return FrameRealF.isREqual((FrameRealF) pF1, (FrameRealF) pF2);
+		if (pF1 instanceof FrameRealD) return FrameRealD.isREqual((FrameRealD) pF1, (FrameRealD) pF2);
+		if (pF1 instanceof FrameComplexF) return FrameComplexF.isREqual((FrameComplexF) pF1, (FrameComplexF) pF2);
+		return FrameComplexD.isREqual((FrameComplexD) pF1, (FrameComplexD) pF2);
+	}
+
+	static void removeRefMonad(FrameAbstract pF, Object pM) throws CladosFrameException
+	{
+		if (pF instanceof FrameRealF) ((FrameRealF) pF).removeRefMonad((MonadRealF) pM);
+		else if (pF instanceof FrameRealD) ((FrameRealD) pF).removeRefMonad((MonadRealD) pM);
+		else if (pF instanceof FrameComplexF) ((FrameComplexF) pF).removeRefMonad((MonadComplexF) pM);
+		else ((FrameComplexD) pF).removeRefMonad((MonadComplexD) pM);
+	}
+
+	static String toXMLString(FrameAbstract pF)
+	{
+		if (pF instanceof FrameRealF) return FrameRealF.toXMLString((FrameRealF) pF);
+		if (pF instanceof FrameRealD) return FrameRealD.toXMLString((FrameRealD) pF);
+		if (pF instanceof FrameComplexF) return FrameComplexF.toXMLString((FrameComplexF) pF);
+		return FrameComplexD.toXMLString((FrameComplexD) pF);
+	}
+
+	/**
+	 * Coefficient k of direction j.
+	 */
+	private static double tilt(int pj, int pk, int pBlades)
+	{
+		return (pk == pj + 1) ? 1.0d : 0.01d * (pj + pk + 1) / pBlades;
+	}
+}
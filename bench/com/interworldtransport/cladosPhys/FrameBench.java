@@ -0,0 +1,144 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameBench<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameBench<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.interworldtransport.cladosG.AlgebraAbstract;
+import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
+
+/**
+ * JMH benchmarks for the frame operations that callers lean on: lookups by
+ * name and by monad, equality, the XML and binary exports and removal of a
+ * direction. Every benchmark runs over each frame type, algebra size and
+ * frame order given by the parameters. Frame orders larger than an algebra
+ * allows are cut back to a full frame.
+ * <p>
+ * Run them with the bench target in build.xml, which writes the results as
+ * JSON.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FrameBench
+{
+	/**
+	 * A frame to take a direction out of, rebuilt before every call because
+	 * removal changes it.
+	 */
+	@State(Scope.Thread)
+	public static class Removal
+	{
+		FrameAbstract	frame;
+
+		Object			target;
+
+		@Setup(Level.Invocation)
+		public void setUp(FrameBench pBench)
+		{
+			frame = BenchFrames.frame(pBench.algebra, "bench", pBench.order);
+			target = frame.getFBasis().get(frame.getFBasis().size() - 1);
+		}
+	}
+
+	@Param({ BenchFrames.REAL_F, BenchFrames.REAL_D, BenchFrames.COMPLEX_F, BenchFrames.COMPLEX_D })
+	public String			type;
+
+	@Param({ "3", "5", "7" })
+	public int				generators;
+
+	@Param({ "2", "8", "64" })
+	public int				order;
+
+	AlgebraAbstract			algebra;
+
+	FrameAbstract			frame;
+
+	/**
+	 * A separate frame equal to frame, so equality has to look at content.
+	 */
+	FrameAbstract			twin;
+
+	String					lastName;
+
+	Object					lastMonad;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		algebra = BenchFrames.algebra(type, generators);
+		frame = BenchFrames.frame(algebra, "bench", order);
+		twin = BenchFrames.frame(algebra, "bench", order);
+		int tLast = frame.getFBasis().size() - 1;
+		lastName = frame.getNameList().get(tLast);
+		lastMonad = twin.getFBasis().get(tLast);
+	}
+
+	@Benchmark
+	public int findMonad()
+	{
+		return BenchFrames.findMonad(frame, lastMonad);
+	}
+
+	@Benchmark
+	public int findName()
+	{
+		return FrameAbstract.findName(frame, lastName);
+	}
+
+	@Benchmark
+	public boolean isREqual()
+	{
+		return BenchFrames.isREqual(frame, twin);
+	}
+
+	@Benchmark
+	public FrameAbstract removeRefMonad(Removal pRemoval) throws CladosFrameException
+	{
+		BenchFrames.removeRefMonad(pRemoval.frame, pRemoval.target);
+		return pRemoval.frame;
+	}
+
+	@Benchmark
+	public ByteBuffer toBinary()
+	{
+		return FrameBinary.encode(frame);
+	}
+
+	@Benchmark
+	public String toXMLString()
+	{
+		return BenchFrames.toXMLString(frame);
+	}
+}
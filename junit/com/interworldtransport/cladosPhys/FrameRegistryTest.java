@@ -0,0 +1,111 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameRegistryTest<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameRegistryTest<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+
+import com.interworldtransport.cladosF.RealD;
+import com.interworldtransport.cladosG.AlgebraRealD;
+import com.interworldtransport.cladosG.Foot;
+import com.interworldtransport.cladosG.MonadRealD;
+
+/**
+ * Checks that FrameRegistry interns frames built from a list of monads.
+ * Such frames have no name list, and comparing two of them once reached
+ * for it. Equal frames must come back as the first one interned, with or
+ * without a name list, and an unequal frame must come back as itself.
+ * <p>
+ * The process exits with status 1 on any failure. The test-registry Ant
+ * target runs it.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameRegistryTest
+{
+	private static int	checks;
+
+	private static int	failures;
+
+	public static void main(String[] args)
+	{
+		String tName = "Registry3";
+		AlgebraRealD tAlg = new AlgebraRealD(tName, new Foot(tName, RealD.newONE(tName)), "+--",
+						RealD.newONE(tName));
+
+		FrameRealD tFirst = new FrameRealD("F", tAlg, directions(tAlg, 0.0d));
+		FrameRealD tSecond = new FrameRealD("F", tAlg, directions(tAlg, 0.0d));
+		FrameRealD tOther = new FrameRealD("F", tAlg, directions(tAlg, 0.5d));
+		FrameRealD tNamed = new FrameRealD("F", tAlg, directions(tAlg, 0.0d));
+		ArrayList<String> tNames = new ArrayList<String>();
+		for (MonadRealD tM : tNamed.getFBasis())
+			tNames.add(tM.getName());
+		tNamed.setNameList(tNames);
+
+		check("order without a name list", tFirst.getFrameOrder() == 3);
+		check("equal list frames", FrameRealD.isREqual(tFirst, tSecond));
+		check("fingerprint with and without a name list",
+						tFirst.getFingerprint() == tNamed.getFingerprint());
+
+		FrameRegistry tRegistry = new FrameRegistry(16);
+		check("first frame interns as itself", tRegistry.intern(tFirst) == tFirst);
+		check("equal frame interns as the first", tRegistry.intern(tSecond) == tFirst);
+		check("named frame interns as the first", tRegistry.intern(tNamed) == tFirst);
+		check("unequal frame interns as itself", tRegistry.intern(tOther) == tOther);
+		check("hit count", tRegistry.getHitCount() == 2);
+
+		System.out.println(checks + " checks, " + failures + " failed");
+		if (failures > 0) System.exit(1);
+	}
+
+	private static void check(String pWhat, boolean pPassed)
+	{
+		checks++;
+		if (pPassed) return;
+		failures++;
+		System.out.println("FAIL " + pWhat);
+	}
+
+	/**
+	 * Make one direction per generator, each a unit vector with a little of
+	 * the next generator mixed in.
+	 */
+	private static ArrayList<MonadRealD> directions(AlgebraRealD pAlg, double pTilt)
+	{
+		int tB = pAlg.getGBasis().getBladeCount();
+		ArrayList<MonadRealD> rList = new ArrayList<MonadRealD>(3);
+		for (int j = 0; j < 3; j++)
+		{
+			RealD[] tC = new RealD[tB];
+			for (int k = 0; k < tB; k++)
+			{
+				tC[k] = new RealD(pAlg.getProtoNumber());
+				tC[k].setReal((k == j + 1) ? 1.0d : (k == j + 2) ? pTilt : 0.0d);
+			}
+			rList.add(new MonadRealD("e" + j, pAlg, "F", tC));
+		}
+		return rList;
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.KernelEquivalenceTest<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.KernelEquivalenceTest<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.Random;
+
+/**
+ * Checks the kernel FrameKernel picked against the scalar kernel. Every
+ * operation is run at sizes 1 to 64 and at the sizes either side of each
+ * multiple of the common vector widths up to 257, so every masked tail
+ * length is reached. Inputs start at odd offsets and some entries are zero.
+ * <p>
+ * The kernels add terms in different orders, so results may differ by
+ * rounding. A result passes when it is within 2n ulp of the sum of the
+ * absolute values of its n terms.
+ * <p>
+ * Run it with the system property cladosPhys.expect set to "vector" or
+ * "scalar" to also check which kernel was loaded. Without that, a vector
+ * kernel that failed to load would leave the scalar kernel compared with
+ * itself. The test-kernel Ant target runs it both ways. The process exits
+ * with status 1 on any failure.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class KernelEquivalenceTest
+{
+	private static final int	OFFSET	= 3;
+
+	private static int			checks;
+
+	private static int			failures;
+
+	public static void main(String[] args)
+	{
+		FrameKernel tKernel = FrameKernel.KERNEL;
+		FrameKernel tScalar = FrameKernel.scalar();
+		System.out.println("Kernel " + tKernel.getName());
+
+		String tExpect = System.getProperty("cladosPhys.expect");
+		if (tExpect != null && !tKernel.getName().startsWith(tExpect))
+		{
+			System.out.println("FAIL expected the " + tExpect + " kernel");
+			System.exit(1);
+		}
+
+		Random tRandom = new Random(20180417L);
+		for (int n : sizes())
+		{
+			checkMultiply(tKernel, tScalar, n, tRandom);
+			checkMultiplyBatch(tKernel, tScalar, n, tRandom);
+			checkDot(tKernel, tScalar, n, tRandom);
+		}
+
+		System.out.println(checks + " results checked, " + failures + " failed");
+		if (failures > 0) System.exit(1);
+	}
+
+	private static void checkDot(FrameKernel pKernel, FrameKernel pScalar, int pN, Random pRandom)
+	{
+		double[] tW = fill(new double[pN], pRandom);
+		double[] tA = fill(new double[OFFSET + pN], pRandom);
+		double[] tB = fill(new double[2 * OFFSET + pN], pRandom);
+
+		double tGot = pKernel.dot(tW, tA, OFFSET, tB, 2 * OFFSET, pN);
+		double tWant = pScalar.dot(tW, tA, OFFSET, tB, 2 * OFFSET, pN);
+		double tScale = 0.0d;
+		for (int k = 0; k < pN; k++)
+			tScale += Math.abs(tW[k] * tA[OFFSET + k] * tB[2 * OFFSET + k]);
+		compare("dot", pN, 0, tGot, tWant, tScale);
+	}
+
+	private static void checkMultiply(FrameKernel pKernel, FrameKernel pScalar, int pN, Random pRandom)
+	{
+		double[] tA = fill(new double[OFFSET + pN * pN], pRandom);
+		double[] tX = fill(new double[pN], pRandom);
+		double[] tGot = new double[pN];
+		double[] tWant = new double[pN];
+
+		pKernel.multiply(tA, OFFSET, pN, tX, tGot);
+		pScalar.multiply(tA, OFFSET, pN, tX, tWant);
+		for (int r = 0; r < pN; r++)
+		{
+			double tScale = 0.0d;
+			for (int c = 0; c < pN; c++)
+				tScale += Math.abs(tA[OFFSET + r * pN + c] * tX[c]);
+			compare("multiply", pN, r, tGot[r], tWant[r], tScale);
+		}
+	}
+
+	private static void checkMultiplyBatch(FrameKernel pKernel, FrameKernel pScalar, int pN, Random pRandom)
+	{
+		int tCount = 3;
+		double[] tCols = fill(new double[pN * pN], pRandom);
+		double[] tIn = fill(new double[OFFSET + tCount * pN], pRandom);
+		double[] tGot = fill(new double[2 * OFFSET + tCount * pN], pRandom);
+		double[] tWant = tGot.clone();
+
+		pKernel.multiplyBatch(tCols, pN, tIn, OFFSET, tCount, tGot, 2 * OFFSET);
+		pScalar.multiplyBatch(tCols, pN, tIn, OFFSET, tCount, tWant, 2 * OFFSET);
+		for (int k = 0; k < 2 * OFFSET; k++)
+			compare("multiplyBatch prefix", pN, k, tGot[k], tWant[k], 0.0d);
+		for (int v = 0; v < tCount; v++)
+			for (int r = 0; r < pN; r++)
+			{
+				double tScale = 0.0d;
+				for (int c = 0; c < pN; c++)
+					tScale += Math.abs(tCols[c * pN + r] * tIn[OFFSET + v * pN + c]);
+				int tAt = 2 * OFFSET + v * pN + r;
+				compare("multiplyBatch", pN, v * pN + r, tGot[tAt], tWant[tAt], tScale);
+			}
+	}
+
+	private static void compare(String pWhat, int pN, int pAt, double pGot, double pWant, double pScale)
+	{
+		checks++;
+		double tBound = 2.0d * Math.max(pN, 1) * Math.ulp(pScale);
+		if (Math.abs(pGot - pWant) <= tBound) return;
+		failures++;
+		if (failures <= 20)
+			System.out.println("FAIL " + pWhat + " n=" + pN + " at " + pAt + ": " + pGot
+							+ " vs " + pWant + " (bound " + tBound + ")");
+	}
+
+	/**
+	 * Fill an array with values of mixed sign and magnitude, about one in
+	 * eight of them zero.
+	 */
+	private static double[] fill(double[] pOut, Random pRandom)
+	{
+		for (int k = 0; k < pOut.length; k++)
+			pOut[k] = (pRandom.nextInt(8) == 0) ? 0.0d
+							: pRandom.nextGaussian() * Math.scalb(1.0d, pRandom.nextInt(21) - 10);
+		return pOut;
+	}
+
+	/**
+	 * Sizes 1 to 64, then one below, at and one above each multiple of 8 up
+	 * to 256. That covers every tail for vectors of 2, 4 and 8 doubles.
+	 */
+	private static int[] sizes()
+	{
+		int[] rSizes = new int[64 + 3 * 24];
+		int tN = 0;
+		for (int n = 1; n <= 64; n++)
+			rSizes[tN++] = n;
+		for (int m = 72; m <= 256; m += 8)
+		{
+			rSizes[tN++] = m - 1;
+			rSizes[tN++] = m;
+			rSizes[tN++] = m + 1;
+		}
+		return rSizes;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.VectorKernel<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.VectorKernel<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Frame kernel built on the incubating JDK Vector API. It lives in its own
+ * source tree because it needs --add-modules jdk.incubator.vector to compile
+ * and to run. FrameKernel loads it reflectively and falls back to the scalar
+ * kernel when it can't.
+ * <p>
+ * Loops run at the preferred species width and finish with a masked tail, so
+ * blade counts smaller than the vector width still use one masked pass.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class VectorKernel extends FrameKernel
+{
+	private static final VectorSpecies<Double>	SPECIES	= DoubleVector.SPECIES_PREFERRED;
+
+	@Override
+	String getName()
+	{
+		return "vector-" + SPECIES.vectorBitSize();
+	}
+
+	@Override
+	void multiply(double[] pA, int pAOff, int pN, double[] pX, double[] pOut)
+	{
+		int tBound = SPECIES.loopBound(pN);
+		for (int r = 0; r < pN; r++)
+		{
+			int tRow = pAOff + r * pN;
+			DoubleVector tAcc = DoubleVector.zero(SPECIES);
+			int c = 0;
+			for (; c < tBound; c += SPECIES.length())
+			{
+				DoubleVector tA = DoubleVector.fromArray(SPECIES, pA, tRow + c);
+				DoubleVector tX = DoubleVector.fromArray(SPECIES, pX, c);
+				tAcc = tA.fma(tX, tAcc);
+			}
+			if (c < pN)
+			{
+				VectorMask<Double> tMask = SPECIES.indexInRange(c, pN);
+				DoubleVector tA = DoubleVector.fromArray(SPECIES, pA, tRow + c, tMask);
+				DoubleVector tX = DoubleVector.fromArray(SPECIES, pX, c, tMask);
+				tAcc = tA.fma(tX, tAcc);
+			}
+			pOut[r] = tAcc.reduceLanes(VectorOperators.ADD);
+		}
+	}
+
+	@Override
+	void multiplyBatch(	double[] pCols, int pN, 
+						double[] pIn, int pInOff, int pCount,
+						double[] pOut, int pOutOff)
+	{
+		int tBound = SPECIES.loopBound(pN);
+		for (int v = 0; v < pCount; v++)
+		{
+			int tIn = pInOff + v * pN;
+			int tOut = pOutOff + v * pN;
+			Arrays.fill(pOut, tOut, tOut + pN, 0.0d);
+			for (int c = 0; c < pN; c++)
+			{
+				double tX = pIn[tIn + c];
+				if (tX == 0.0d) continue;
+				DoubleVector tXs = DoubleVector.broadcast(SPECIES, tX);
+				int tCol = c * pN;
+				int r = 0;
+				for (; r < tBound; r += SPECIES.length())
+				{
+					DoubleVector tM = DoubleVector.fromArray(SPECIES, pCols, tCol + r);
+					DoubleVector tO = DoubleVector.fromArray(SPECIES, pOut, tOut + r);
+					tM.fma(tXs, tO).intoArray(pOut, tOut + r);
+				}
+				if (r < pN)
+				{
+					VectorMask<Double> tMask = SPECIES.indexInRange(r, pN);
+					DoubleVector tM = DoubleVector.fromArray(SPECIES, pCols, tCol + r, tMask);
+					DoubleVector tO = DoubleVector.fromArray(SPECIES, pOut, tOut + r, tMask);
+					tM.fma(tXs, tO).intoArray(pOut, tOut + r, tMask);
+				}
+			}
+		}
+	}
+
+	@Override
+	double dot(double[] pW, double[] pA, int pAOff, double[] pB, int pBOff, int pN)
+	{
+		int tBound = SPECIES.loopBound(pN);
+		DoubleVector tAcc = DoubleVector.zero(SPECIES);
+		int k = 0;
+		for (; k < tBound; k += SPECIES.length())
+		{
+			DoubleVector tW = DoubleVector.fromArray(SPECIES, pW, k);
+			DoubleVector tA = DoubleVector.fromArray(SPECIES, pA, pAOff + k);
+			DoubleVector tB = DoubleVector.fromArray(SPECIES, pB, pBOff + k);
+			tAcc = tW.mul(tA).fma(tB, tAcc);
+		}
+		if (k < pN)
+		{
+			VectorMask<Double> tMask = SPECIES.indexInRange(k, pN);
+			DoubleVector tW = DoubleVector.fromArray(SPECIES, pW, k, tMask);
+			DoubleVector tA = DoubleVector.fromArray(SPECIES, pA, pAOff + k, tMask);
+			DoubleVector tB = DoubleVector.fromArray(SPECIES, pB, pBOff + k, tMask);
+			tAcc = tW.mul(tA).fma(tB, tAcc);
+		}
+		return tAcc.reduceLanes(VectorOperators.ADD);
+	}
+}
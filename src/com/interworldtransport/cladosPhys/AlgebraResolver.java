@@ -0,0 +1,47 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.AlgebraResolver<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.AlgebraResolver<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import com.interworldtransport.cladosG.AlgebraAbstract;
+
+/**
+ * An algebra resolver finds the algebra a persisted frame names. The frame
+ * readers call it once per name and share the result between every frame
+ * that names the same algebra.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public interface AlgebraResolver
+{
+	/**
+	 * Return the algebra with the given name.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return AlgebraAbstract or null for an unknown name
+	 */
+	AlgebraAbstract resolve(String pName);
+}
@@ -0,0 +1,265 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixComplexD<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixComplexD<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.interworldtransport.cladosF.ComplexD;
+import com.interworldtransport.cladosG.AlgebraComplexD;
+import com.interworldtransport.cladosG.MonadComplexD;
+
+/**
+ * The complex basis matrix holds the coefficients of a frame's reference
+ * directions as two contiguous double arrays, one for the real parts and one
+ * for the imaginary parts. Both are laid out a row per direction and a
+ * column per default blade. Products and changes of basis run over these
+ * arrays without making a complex number object per coefficient.
+ * <p>
+ * A FrameComplexD keeps one of these alongside its monad list. It can also be
+ * built from a matrix alone, in which case the monads are only made when
+ * something asks for them.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class BasisMatrixComplexD
+{
+	/**
+	 * Pack a list of monads into a new matrix.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadComplexD to be packed
+	 * @param pBlades
+	 *            int number of blades in their algebra
+	 * @return BasisMatrixComplexD
+	 */
+	public static BasisMatrixComplexD of(ArrayList<MonadComplexD> pML, int pBlades)
+	{
+		BasisMatrixComplexD tMatrix = new BasisMatrixComplexD(pML.size(), pBlades);
+		for (int i = 0; i < pML.size(); i++)
+		{
+			ComplexD[] tC = pML.get(i).getCoeff();
+			for (int k = 0; k < pBlades; k++)
+			{
+				tMatrix.real[i * pBlades + k] = tC[k].getReal();
+				tMatrix.imag[i * pBlades + k] = tC[k].getImg();
+			}
+		}
+		return tMatrix;
+	}
+
+	private final int		blades;
+	private final int		directions;
+	private final double[]	imag;
+	private final double[]	real;
+
+	/**
+	 * Matrix constructor with every coefficient zero.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 */
+	public BasisMatrixComplexD(int pDirections, int pBlades)
+	{
+		this(pDirections, pBlades, new double[pDirections * pBlades], new double[pDirections * pBlades]);
+	}
+
+	/**
+	 * Matrix constructor around existing coefficients. The arrays are used as
+	 * they are, not copied.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @param pReal
+	 *            double[] real parts, a row per direction
+	 * @param pImag
+	 *            double[] imaginary parts, a row per direction
+	 */
+	public BasisMatrixComplexD(int pDirections, int pBlades, double[] pReal, double[] pImag)
+	{
+		if (pReal.length < pDirections * pBlades || pImag.length < pDirections * pBlades)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ pDirections * pBlades + " coefficients in each part.");
+		directions = pDirections;
+		blades = pBlades;
+		real = pReal;
+		imag = pImag;
+	}
+
+	/**
+	 * Return a new matrix holding these rows followed by the coefficients of
+	 * the monads in pML from pFrom on.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadComplexD holding the new rows
+	 * @param pFrom
+	 *            int position in pML of the first new row
+	 * @return BasisMatrixComplexD
+	 */
+	BasisMatrixComplexD append(ArrayList<MonadComplexD> pML, int pFrom)
+	{
+		int tLength = directions * blades;
+		int tMore = pML.size() - pFrom;
+		double[] tReal = Arrays.copyOf(real, tLength + tMore * blades);
+		double[] tImag = Arrays.copyOf(imag, tLength + tMore * blades);
+		for (int i = 0; i < tMore; i++)
+		{
+			ComplexD[] tC = pML.get(pFrom + i).getCoeff();
+			for (int k = 0; k < blades; k++)
+			{
+				tReal[tLength + i * blades + k] = tC[k].getReal();
+				tImag[tLength + i * blades + k] = tC[k].getImg();
+			}
+		}
+		return new BasisMatrixComplexD(directions + tMore, blades, tReal, tImag);
+	}
+
+	public int getBladeCount()
+	{
+		return blades;
+	}
+
+	public int getDirectionCount()
+	{
+		return directions;
+	}
+
+	/**
+	 * Return the imaginary parts themselves, a row per direction. Edits made
+	 * through this array are edits to the matrix.
+	 * 
+	 * @return double[]
+	 */
+	public double[] getImg()
+	{
+		return imag;
+	}
+
+	/**
+	 * Return one imaginary part.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return double
+	 */
+	public double getImg(int pDirection, int pBlade)
+	{
+		return imag[pDirection * blades + pBlade];
+	}
+
+	/**
+	 * Return the real parts themselves, a row per direction. Edits made
+	 * through this array are edits to the matrix.
+	 * 
+	 * @return double[]
+	 */
+	public double[] getReal()
+	{
+		return real;
+	}
+
+	/**
+	 * Return one real part.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return double
+	 */
+	public double getReal(int pDirection, int pBlade)
+	{
+		return real[pDirection * blades + pBlade];
+	}
+
+	/**
+	 * Set one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @param pReal
+	 *            double
+	 * @param pImag
+	 *            double
+	 */
+	public void set(int pDirection, int pBlade, double pReal, double pImag)
+	{
+		real[pDirection * blades + pBlade] = pReal;
+		imag[pDirection * blades + pBlade] = pImag;
+	}
+
+	/**
+	 * Overwrite one direction from a caller's real and imaginary arrays.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pRe
+	 *            double[] holding the real parts of the row
+	 * @param pIm
+	 *            double[] holding the imaginary parts of the row
+	 * @param pOff
+	 *            int where the row starts in pRe and pIm
+	 */
+	void setRow(int pDirection, double[] pRe, double[] pIm, int pOff)
+	{
+		System.arraycopy(pRe, pOff, real, pDirection * blades, blades);
+		System.arraycopy(pIm, pOff, imag, pDirection * blades, blades);
+	}
+
+	/**
+	 * Make a monad for one direction. This is the same monad a matrix-backed
+	 * frame hands out through getFBasis.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pName
+	 *            String name for the new monad
+	 * @param pAlg
+	 *            AlgebraComplexD the directions belong to
+	 * @param pFrameName
+	 *            String frame name for the new monad
+	 * @return MonadComplexD
+	 */
+	public MonadComplexD toMonad(int pDirection, String pName, AlgebraComplexD pAlg, String pFrameName)
+	{
+		ComplexD[] tC = new ComplexD[blades];
+		for (int k = 0; k < blades; k++)
+		{
+			tC[k] = new ComplexD(pAlg.getProtoNumber());
+			tC[k].setReal(real[pDirection * blades + k]);
+			tC[k].setImg(imag[pDirection * blades + k]);
+		}
+		return new MonadComplexD(pName, pAlg, pFrameName, tC);
+	}
+}
@@ -0,0 +1,286 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixComplexF<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixComplexF<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.interworldtransport.cladosF.ComplexF;
+import com.interworldtransport.cladosG.AlgebraComplexF;
+import com.interworldtransport.cladosG.MonadComplexF;
+
+/**
+ * The complex basis matrix holds the coefficients of a frame's reference
+ * directions as two contiguous float arrays, one for the real parts and one
+ * for the imaginary parts. Both are laid out a row per direction and a
+ * column per default blade. Products and changes of basis run over these
+ * arrays without making a complex number object per coefficient.
+ * <p>
+ * A FrameComplexF keeps one of these alongside its monad list. It can also be
+ * built from a matrix alone, in which case the monads are only made when
+ * something asks for them.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class BasisMatrixComplexF
+{
+	/**
+	 * Pack a list of monads into a new matrix.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadComplexF to be packed
+	 * @param pBlades
+	 *            int number of blades in their algebra
+	 * @return BasisMatrixComplexF
+	 */
+	public static BasisMatrixComplexF of(ArrayList<MonadComplexF> pML, int pBlades)
+	{
+		BasisMatrixComplexF tMatrix = new BasisMatrixComplexF(pML.size(), pBlades);
+		for (int i = 0; i < pML.size(); i++)
+		{
+			ComplexF[] tC = pML.get(i).getCoeff();
+			for (int k = 0; k < pBlades; k++)
+			{
+				tMatrix.real[i * pBlades + k] = tC[k].getReal();
+				tMatrix.imag[i * pBlades + k] = tC[k].getImg();
+			}
+		}
+		return tMatrix;
+	}
+
+	private final int		blades;
+	private final int		directions;
+	private final float[]	imag;
+	private final float[]	real;
+
+	/**
+	 * Matrix constructor with every coefficient zero.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 */
+	public BasisMatrixComplexF(int pDirections, int pBlades)
+	{
+		this(pDirections, pBlades, new float[pDirections * pBlades], new float[pDirections * pBlades]);
+	}
+
+	/**
+	 * Matrix constructor around existing coefficients. The arrays are used as
+	 * they are, not copied.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @param pReal
+	 *            float[] real parts, a row per direction
+	 * @param pImag
+	 *            float[] imaginary parts, a row per direction
+	 */
+	public BasisMatrixComplexF(int pDirections, int pBlades, float[] pReal, float[] pImag)
+	{
+		if (pReal.length < pDirections * pBlades || pImag.length < pDirections * pBlades)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ pDirections * pBlades + " coefficients in each part.");
+		directions = pDirections;
+		blades = pBlades;
+		real = pReal;
+		imag = pImag;
+	}
+
+	/**
+	 * Return a new matrix holding these rows followed by the coefficients of
+	 * the monads in pML from pFrom on.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadComplexF holding the new rows
+	 * @param pFrom
+	 *            int position in pML of the first new row
+	 * @return BasisMatrixComplexF
+	 */
+	BasisMatrixComplexF append(ArrayList<MonadComplexF> pML, int pFrom)
+	{
+		int tLength = directions * blades;
+		int tMore = pML.size() - pFrom;
+		float[] tReal = Arrays.copyOf(real, tLength + tMore * blades);
+		float[] tImag = Arrays.copyOf(imag, tLength + tMore * blades);
+		for (int i = 0; i < tMore; i++)
+		{
+			ComplexF[] tC = pML.get(pFrom + i).getCoeff();
+			for (int k = 0; k < blades; k++)
+			{
+				tReal[tLength + i * blades + k] = tC[k].getReal();
+				tImag[tLength + i * blades + k] = tC[k].getImg();
+			}
+		}
+		return new BasisMatrixComplexF(directions + tMore, blades, tReal, tImag);
+	}
+
+	public int getBladeCount()
+	{
+		return blades;
+	}
+
+	public int getDirectionCount()
+	{
+		return directions;
+	}
+
+	/**
+	 * Return the imaginary parts themselves, a row per direction. Edits made
+	 * through this array are edits to the matrix.
+	 * 
+	 * @return float[]
+	 */
+	public float[] getImg()
+	{
+		return imag;
+	}
+
+	/**
+	 * Return one imaginary part.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return float
+	 */
+	public float getImg(int pDirection, int pBlade)
+	{
+		return imag[pDirection * blades + pBlade];
+	}
+
+	/**
+	 * Return the real parts themselves, a row per direction. Edits made
+	 * through this array are edits to the matrix.
+	 * 
+	 * @return float[]
+	 */
+	public float[] getReal()
+	{
+		return real;
+	}
+
+	/**
+	 * Return one real part.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return float
+	 */
+	public float getReal(int pDirection, int pBlade)
+	{
+		return real[pDirection * blades + pBlade];
+	}
+
+	/**
+	 * Set one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @param pReal
+	 *            float
+	 * @param pImag
+	 *            float
+	 */
+	public void set(int pDirection, int pBlade, float pReal, float pImag)
+	{
+		real[pDirection * blades + pBlade] = pReal;
+		imag[pDirection * blades + pBlade] = pImag;
+	}
+
+	/**
+	 * Overwrite one direction from a caller's real and imaginary arrays of
+	 * doubles.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pRe
+	 *            double[] holding the real parts of the row
+	 * @param pIm
+	 *            double[] holding the imaginary parts of the row
+	 * @param pOff
+	 *            int where the row starts in pRe and pIm
+	 */
+	void setRow(int pDirection, double[] pRe, double[] pIm, int pOff)
+	{
+		int tTo = pDirection * blades;
+		for (int k = 0; k < blades; k++)
+		{
+			real[tTo + k] = (float) pRe[pOff + k];
+			imag[tTo + k] = (float) pIm[pOff + k];
+		}
+	}
+
+	/**
+	 * Make a monad for one direction. This is the same monad a matrix-backed
+	 * frame hands out through getFBasis.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pName
+	 *            String name for the new monad
+	 * @param pAlg
+	 *            AlgebraComplexF the directions belong to
+	 * @param pFrameName
+	 *            String frame name for the new monad
+	 * @return MonadComplexF
+	 */
+	public MonadComplexF toMonad(int pDirection, String pName, AlgebraComplexF pAlg, String pFrameName)
+	{
+		ComplexF[] tC = new ComplexF[blades];
+		for (int k = 0; k < blades; k++)
+		{
+			tC[k] = new ComplexF(pAlg.getProtoNumber());
+			tC[k].setReal(real[pDirection * blades + k]);
+			tC[k].setImg(imag[pDirection * blades + k]);
+		}
+		return new MonadComplexF(pName, pAlg, pFrameName, tC);
+	}
+
+	/**
+	 * Widen the matrix to double precision for kernels that work in double.
+	 * 
+	 * @return double[][] the real parts then the imaginary parts
+	 */
+	double[][] toDouble()
+	{
+		double[][] tOut = new double[2][directions * blades];
+		for (int k = 0; k < tOut[0].length; k++)
+		{
+			tOut[0][k] = real[k];
+			tOut[1][k] = imag[k];
+		}
+		return tOut;
+	}
+}
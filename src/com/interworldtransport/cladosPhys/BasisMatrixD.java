@@ -0,0 +1,389 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixD<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixD<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.interworldtransport.cladosF.RealD;
+import com.interworldtransport.cladosG.AlgebraRealD;
+import com.interworldtransport.cladosG.MonadRealD;
+
+/**
+ * The basis matrix holds the coefficients of a frame's reference directions
+ * in one contiguous double array, a row per direction and a column per
+ * default blade. Projections and transforms walk it as a linear scan instead
+ * of visiting each monad and each coefficient object in turn.
+ * <p>
+ * A FrameRealD keeps one of these alongside its monad list. It can also be
+ * built from a matrix alone, in which case the monads are only made when
+ * something asks for them.
+ * <p>
+ * A matrix can also sit over a DoubleBuffer instead of an array, such as a
+ * slice of a mapped file. Reads then go straight to the buffer and writes go
+ * through to it, or fail if the buffer is read-only. Kernels that need an
+ * array get a copy from getData. The frame's own kernels share one copy,
+ * made on first use and kept in step with writes made through the matrix.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class BasisMatrixD
+{
+	/**
+	 * Pack a list of monads into a new matrix.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD to be packed
+	 * @param pBlades
+	 *            int number of blades in their algebra
+	 * @return BasisMatrixD
+	 */
+	public static BasisMatrixD of(ArrayList<MonadRealD> pML, int pBlades)
+	{
+		BasisMatrixD tMatrix = new BasisMatrixD(pML.size(), pBlades);
+		for (int i = 0; i < pML.size(); i++)
+		{
+			RealD[] tC = pML.get(i).getCoeff();
+			for (int k = 0; k < pBlades; k++)
+				tMatrix.data[i * pBlades + k] = tC[k].getReal();
+		}
+		return tMatrix;
+	}
+
+	/**
+	 * Make a matrix over a block of doubles held in a byte buffer, a row per
+	 * direction, starting at the buffer's position. The buffer's byte order is
+	 * used, so a block written by native code should arrive in
+	 * ByteOrder.nativeOrder(). Nothing is copied. A direct or mapped buffer
+	 * keeps the coefficients off the heap, and a writable one takes writes
+	 * made through set.
+	 * 
+	 * @param pBytes
+	 *            ByteBuffer holding the block at its position
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @return BasisMatrixD
+	 */
+	public static BasisMatrixD over(ByteBuffer pBytes, int pDirections, int pBlades)
+	{
+		long tBytes = 8L * pDirections * pBlades;
+		if (pBytes.remaining() < tBytes)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ tBytes + " bytes.");
+		ByteOrder tOrder = pBytes.order();
+		ByteBuffer tBlock = pBytes.slice();
+		tBlock.limit((int) tBytes);
+		return new BasisMatrixD(pDirections, pBlades, tBlock.order(tOrder).asDoubleBuffer());
+	}
+
+	private final int			blades;
+	private final DoubleBuffer	buffer;
+	private double[]			copy;
+	private final double[]		data;
+	private final int			directions;
+
+	/**
+	 * Matrix constructor with every coefficient zero.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 */
+	public BasisMatrixD(int pDirections, int pBlades)
+	{
+		this(pDirections, pBlades, new double[pDirections * pBlades]);
+	}
+
+	/**
+	 * Matrix constructor around existing coefficients. The array is used as
+	 * is, not copied.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @param pData
+	 *            double[] coefficients, a row per direction
+	 */
+	public BasisMatrixD(int pDirections, int pBlades, double[] pData)
+	{
+		if (pData.length < pDirections * pBlades)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ pDirections * pBlades + " coefficients.");
+		directions = pDirections;
+		blades = pBlades;
+		data = pData;
+		buffer = null;
+	}
+
+	/**
+	 * Matrix constructor over a buffer of coefficients. The buffer is used as
+	 * is, starting at index zero, and is neither copied nor moved.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @param pBuffer
+	 *            DoubleBuffer coefficients, a row per direction
+	 */
+	public BasisMatrixD(int pDirections, int pBlades, DoubleBuffer pBuffer)
+	{
+		if (pBuffer.capacity() < pDirections * pBlades)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ pDirections * pBlades + " coefficients.");
+		directions = pDirections;
+		blades = pBlades;
+		data = null;
+		buffer = pBuffer;
+	}
+
+	/**
+	 * Return a new matrix holding these rows followed by the coefficients of
+	 * the monads in pML from pFrom on. The new matrix sits on the heap
+	 * whatever backs this one.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD holding the new rows
+	 * @param pFrom
+	 *            int position in pML of the first new row
+	 * @return BasisMatrixD
+	 */
+	BasisMatrixD append(ArrayList<MonadRealD> pML, int pFrom)
+	{
+		int tLength = directions * blades;
+		int tMore = pML.size() - pFrom;
+		double[] tData = new double[tLength + tMore * blades];
+		if (buffer == null)
+			System.arraycopy(data, 0, tData, 0, tLength);
+		else
+		{
+			DoubleBuffer tIn = buffer.duplicate();
+			tIn.clear();
+			tIn.get(tData, 0, tLength);
+		}
+		for (int i = 0; i < tMore; i++)
+		{
+			RealD[] tC = pML.get(pFrom + i).getCoeff();
+			for (int k = 0; k < blades; k++)
+				tData[tLength + i * blades + k] = tC[k].getReal();
+		}
+		return new BasisMatrixD(directions + tMore, blades, tData);
+	}
+
+	/**
+	 * Return a copy of this matrix on the heap. Nothing is shared with it.
+	 * 
+	 * @return BasisMatrixD
+	 */
+	BasisMatrixD copy()
+	{
+		return new BasisMatrixD(directions, blades, 
+						Arrays.copyOf(readData(), directions * blades));
+	}
+
+	/**
+	 * Return the buffer under this matrix or null if it sits over an array.
+	 * 
+	 * @return DoubleBuffer
+	 */
+	public DoubleBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**
+	 * Return the coefficient array itself, a row per direction. Edits made
+	 * through it are edits to the matrix. A matrix over a buffer hands back a
+	 * fresh copy instead, and edits to that copy go nowhere.
+	 * 
+	 * @return double[]
+	 */
+	public double[] getData()
+	{
+		if (data != null) return data;
+		double[] rCopy = new double[directions * blades];
+		DoubleBuffer tIn = buffer.duplicate();
+		tIn.clear();
+		tIn.get(rCopy);
+		return rCopy;
+	}
+
+	/**
+	 * Return the coefficients as an array to be read, not edited. That is the
+	 * array itself, or for a matrix over a buffer one copy made on first use
+	 * and kept until bufferChanged. Writes through set and setRow reach the
+	 * copy too, so only writes made to the buffer some other way need
+	 * bufferChanged.
+	 * 
+	 * @return double[]
+	 */
+	double[] readData()
+	{
+		if (data != null) return data;
+		double[] rCopy = copy;
+		if (rCopy == null)
+		{
+			rCopy = getData();
+			copy = rCopy;
+		}
+		return rCopy;
+	}
+
+	/**
+	 * Drop the copy readData keeps for a matrix over a buffer after the buffer
+	 * was written some way other than through this matrix.
+	 */
+	void bufferChanged()
+	{
+		copy = null;
+	}
+
+	/**
+	 * Return one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return double
+	 */
+	public double get(int pDirection, int pBlade)
+	{
+		if (data == null) return buffer.get(pDirection * blades + pBlade);
+		return data[pDirection * blades + pBlade];
+	}
+
+	public int getBladeCount()
+	{
+		return blades;
+	}
+
+	public int getDirectionCount()
+	{
+		return directions;
+	}
+
+	/**
+	 * Copy one direction into a caller's array.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pOut
+	 *            double[] receives the row. May be null.
+	 * @return double[] the row
+	 */
+	public double[] getRow(int pDirection, double[] pOut)
+	{
+		double[] rOut = (pOut == null) ? new double[blades] : pOut;
+		if (data == null)
+		{
+			DoubleBuffer tIn = buffer.duplicate();
+			tIn.clear().position(pDirection * blades);
+			tIn.get(rOut, 0, blades);
+		}
+		else
+			System.arraycopy(data, pDirection * blades, rOut, 0, blades);
+		return rOut;
+	}
+
+	/**
+	 * Set one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @param pValue
+	 *            double
+	 */
+	public void set(int pDirection, int pBlade, double pValue)
+	{
+		if (data == null)
+		{
+			buffer.put(pDirection * blades + pBlade, pValue);
+			double[] tCopy = copy;
+			if (tCopy != null) tCopy[pDirection * blades + pBlade] = pValue;
+		}
+		else
+			data[pDirection * blades + pBlade] = pValue;
+	}
+
+	/**
+	 * Overwrite one direction from a caller's array.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pIn
+	 *            double[] holding the row
+	 * @param pOff
+	 *            int where the row starts in pIn
+	 */
+	void setRow(int pDirection, double[] pIn, int pOff)
+	{
+		if (data == null)
+		{
+			DoubleBuffer tOut = buffer.duplicate();
+			tOut.clear().position(pDirection * blades);
+			tOut.put(pIn, pOff, blades);
+			double[] tCopy = copy;
+			if (tCopy != null) System.arraycopy(pIn, pOff, tCopy, pDirection * blades, blades);
+		}
+		else
+			System.arraycopy(pIn, pOff, data, pDirection * blades, blades);
+	}
+
+	/**
+	 * Make a monad for one direction. This is the same monad a matrix-backed
+	 * frame hands out through getFBasis.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pName
+	 *            String name for the new monad
+	 * @param pAlg
+	 *            AlgebraRealD the directions belong to
+	 * @param pFrameName
+	 *            String frame name for the new monad
+	 * @return MonadRealD
+	 */
+	public MonadRealD toMonad(int pDirection, String pName, AlgebraRealD pAlg, String pFrameName)
+	{
+		RealD[] tC = new RealD[blades];
+		for (int k = 0; k < blades; k++)
+		{
+			tC[k] = new RealD(pAlg.getProtoNumber());
+			tC[k].setReal(get(pDirection, k));
+		}
+		return new MonadRealD(pName, pAlg, pFrameName, tC);
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixF<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.BasisMatrixF<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import com.interworldtransport.cladosF.RealF;
+import com.interworldtransport.cladosG.AlgebraRealF;
+import com.interworldtransport.cladosG.MonadRealF;
+
+/**
+ * The basis matrix holds the coefficients of a frame's reference directions
+ * in one contiguous float array, a row per direction and a column per
+ * default blade. Projections and transforms walk it as a linear scan instead
+ * of visiting each monad and each coefficient object in turn.
+ * <p>
+ * A FrameRealF keeps one of these alongside its monad list. It can also be
+ * built from a matrix alone, in which case the monads are only made when
+ * something asks for them.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class BasisMatrixF
+{
+	/**
+	 * Pack a list of monads into a new matrix.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealF to be packed
+	 * @param pBlades
+	 *            int number of blades in their algebra
+	 * @return BasisMatrixF
+	 */
+	public static BasisMatrixF of(ArrayList<MonadRealF> pML, int pBlades)
+	{
+		BasisMatrixF tMatrix = new BasisMatrixF(pML.size(), pBlades);
+		for (int i = 0; i < pML.size(); i++)
+		{
+			RealF[] tC = pML.get(i).getCoeff();
+			for (int k = 0; k < pBlades; k++)
+				tMatrix.data[i * pBlades + k] = tC[k].getReal();
+		}
+		return tMatrix;
+	}
+
+	private final int		blades;
+	private final float[]	data;
+	private final int		directions;
+
+	/**
+	 * Matrix constructor with every coefficient zero.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 */
+	public BasisMatrixF(int pDirections, int pBlades)
+	{
+		this(pDirections, pBlades, new float[pDirections * pBlades]);
+	}
+
+	/**
+	 * Matrix constructor around existing coefficients. The array is used as
+	 * is, not copied.
+	 * 
+	 * @param pDirections
+	 *            int number of reference directions
+	 * @param pBlades
+	 *            int number of blades in the algebra
+	 * @param pData
+	 *            float[] coefficients, a row per direction
+	 */
+	public BasisMatrixF(int pDirections, int pBlades, float[] pData)
+	{
+		if (pData.length < pDirections * pBlades)
+			throw new IllegalArgumentException("Basis matrix needs "
+							+ pDirections * pBlades + " coefficients.");
+		directions = pDirections;
+		blades = pBlades;
+		data = pData;
+	}
+
+	/**
+	 * Return a new matrix holding these rows followed by the coefficients of
+	 * the monads in pML from pFrom on.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealF holding the new rows
+	 * @param pFrom
+	 *            int position in pML of the first new row
+	 * @return BasisMatrixF
+	 */
+	BasisMatrixF append(ArrayList<MonadRealF> pML, int pFrom)
+	{
+		int tLength = directions * blades;
+		int tMore = pML.size() - pFrom;
+		float[] tData = Arrays.copyOf(data, tLength + tMore * blades);
+		for (int i = 0; i < tMore; i++)
+		{
+			RealF[] tC = pML.get(pFrom + i).getCoeff();
+			for (int k = 0; k < blades; k++)
+				tData[tLength + i * blades + k] = tC[k].getReal();
+		}
+		return new BasisMatrixF(directions + tMore, blades, tData);
+	}
+
+	/**
+	 * Return the coefficient array itself, a row per direction. Edits made
+	 * through it are edits to the matrix.
+	 * 
+	 * @return float[]
+	 */
+	public float[] getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Return one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @return float
+	 */
+	public float get(int pDirection, int pBlade)
+	{
+		return data[pDirection * blades + pBlade];
+	}
+
+	public int getBladeCount()
+	{
+		return blades;
+	}
+
+	public int getDirectionCount()
+	{
+		return directions;
+	}
+
+	/**
+	 * Copy one direction into a caller's array.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pOut
+	 *            float[] receives the row. May be null.
+	 * @return float[] the row
+	 */
+	public float[] getRow(int pDirection, float[] pOut)
+	{
+		float[] rOut = (pOut == null) ? new float[blades] : pOut;
+		System.arraycopy(data, pDirection * blades, rOut, 0, blades);
+		return rOut;
+	}
+
+	/**
+	 * Set one coefficient.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pBlade
+	 *            int
+	 * @param pValue
+	 *            float
+	 */
+	public void set(int pDirection, int pBlade, float pValue)
+	{
+		data[pDirection * blades + pBlade] = pValue;
+	}
+
+	/**
+	 * Overwrite one direction from a caller's array of doubles.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pIn
+	 *            double[] holding the row
+	 * @param pOff
+	 *            int where the row starts in pIn
+	 */
+	void setRow(int pDirection, double[] pIn, int pOff)
+	{
+		int tTo = pDirection * blades;
+		for (int k = 0; k < blades; k++)
+			data[tTo + k] = (float) pIn[pOff + k];
+	}
+
+	/**
+	 * Make a monad for one direction. This is the same monad a matrix-backed
+	 * frame hands out through getFBasis.
+	 * 
+	 * @param pDirection
+	 *            int
+	 * @param pName
+	 *            String name for the new monad
+	 * @param pAlg
+	 *            AlgebraRealF the directions belong to
+	 * @param pFrameName
+	 *            String frame name for the new monad
+	 * @return MonadRealF
+	 */
+	public MonadRealF toMonad(int pDirection, String pName, AlgebraRealF pAlg, String pFrameName)
+	{
+		RealF[] tC = new RealF[blades];
+		for (int k = 0; k < blades; k++)
+		{
+			tC[k] = new RealF(pAlg.getProtoNumber());
+			tC[k].setReal(data[pDirection * blades + k]);
+		}
+		return new MonadRealF(pName, pAlg, pFrameName, tC);
+	}
+
+	/**
+	 * Widen the matrix to double precision for kernels that work in double.
+	 * 
+	 * @return double[] a row per direction
+	 */
+	double[] toDouble()
+	{
+		double[] tOut = new double[directions * blades];
+		for (int k = 0; k < tOut.length; k++)
+			tOut[k] = data[k];
+		return tOut;
+	}
+}
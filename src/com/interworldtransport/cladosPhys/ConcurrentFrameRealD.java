@@ -0,0 +1,857 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.ConcurrentFrameRealD<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.ConcurrentFrameRealD<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+import com.interworldtransport.cladosG.*;
+import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
+
+/**
+ * A FrameRealD that many threads can share. The frame's state lives in an
+ * immutable snapshot that is replaced whole whenever a writer changes it, so
+ * readers never lock and never see a half-finished edit.
+ * <p>
+ * A snapshot is a private FrameRealD published through a volatile field.
+ * Its cheap caches (name list, basis matrix, name index, fingerprint and
+ * monad index) are filled in before it is published. The transform, product
+ * table and reciprocal are built by the first reader that needs them, under
+ * the snapshot's own lock, and every later reader finds them without
+ * locking. The snapshot also pins the algebra's ProductIndex and remembers
+ * when the directions don't span the algebra, so nothing is built twice.
+ * <p>
+ * Writers are synchronized. Each one copies the current snapshot, edits the
+ * copy and publishes it. The copy carries every cache the snapshot had, so
+ * an edit the frame can extend, like an append, extends them, and the copy
+ * made for a change of name or flags shares the basis instead of copying
+ * it.
+ * <p>
+ * The fields inherited from FrameRealD stay empty. Every method works on the
+ * current snapshot instead, so this frame can go anywhere a FrameRealD can.
+ * <p>
+ * Monads never cross the boundary by reference. They are copied on the way
+ * in and on the way out, so nothing a caller holds can change a published
+ * snapshot.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public class ConcurrentFrameRealD extends FrameRealD
+{
+	/**
+	 * Copy a list of monads.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD. May be null.
+	 * @return ArrayList of copied monads or null
+	 */
+	private static ArrayList<MonadRealD> copyOf(ArrayList<MonadRealD> pML)
+	{
+		if (pML == null) return null;
+		ArrayList<MonadRealD> rList = new ArrayList<MonadRealD>(pML.size());
+		for (MonadRealD tM : pML)
+			rList.add(new MonadRealD(tM));
+		return rList;
+	}
+
+	/**
+	 * Copy a frame into a new FrameRealD that shares nothing mutable with it.
+	 * 
+	 * @param pFrame
+	 *            FrameRealD
+	 * @return FrameRealD
+	 */
+	private static FrameRealD copyOf(FrameRealD pFrame)
+	{
+		FrameRealD rFrame = new FrameRealD(pFrame.getName(), 
+						(AlgebraRealD) pFrame.getAlgebra(), 
+						copyOf(pFrame.getFBasis()));
+		if (pFrame.getNameList() != null)
+			rFrame.setNameList(new ArrayList<String>(pFrame.getNameList()));
+		rFrame.setMonadIndexing(pFrame.isMonadIndexing());
+		return rFrame;
+	}
+
+	/**
+	 * Fill the cheap caches of a frame so readers of the published snapshot
+	 * don't write them. Caches the frame carried from the last snapshot are
+	 * already there and cost nothing.
+	 * 
+	 * @param pFrame
+	 *            FrameRealD about to be published
+	 * @return Snapshot
+	 */
+	private static Snapshot publishable(FrameRealD pFrame)
+	{
+		ArrayList<MonadRealD> tBasis = pFrame.getFBasis();
+		if (pFrame.getNameList() == null)
+		{
+			ArrayList<String> tNames = new ArrayList<String>(tBasis.size());
+			for (MonadRealD tM : tBasis)
+				tNames.add(tM.getName());
+			pFrame.setNameList(tNames);
+		}
+		pFrame.getBasisMatrix();
+		pFrame.getNameIndex();
+		pFrame.getFingerprint();
+		if (pFrame.isMonadIndexing()) pFrame.getMonadIndex();
+		return new Snapshot(pFrame, ProductIndex.of(pFrame.getAlgebra()));
+	}
+
+	/**
+	 * The published state of the frame. It is replaced, never edited.
+	 */
+	private volatile Snapshot	snapshot;
+
+	/**
+	 * Frame constructor with an empty basis list.
+	 * 
+	 * @param pName
+	 * 			This is the name of the Frame being constructed
+	 * @param pAlg
+	 * 			This is the algebra referenced in the Frame
+	 */
+	public ConcurrentFrameRealD(String pName, AlgebraRealD pAlg)
+	{
+		snapshot = publishable(new FrameRealD(pName, pAlg));
+	}
+
+	/**
+	 * Frame Constructor with a full basis list. The monads are copied.
+	 * 
+	 * @param pName
+	 *            String
+	 * @param pAlg
+	 *            AlgebraRealD
+	 * @param pML
+	 * 			  ArrayList 
+	 * 			  List contains MonadRealD entries used in construction.
+	 */
+	public ConcurrentFrameRealD(String pName, AlgebraRealD pAlg, ArrayList<MonadRealD> pML)
+	{
+		snapshot = publishable(new FrameRealD(pName, pAlg, copyOf(pML)));
+	}
+
+	/**
+	 * Frame Constructor that copies another frame.
+	 * 
+	 * @param pFrame
+	 *            FrameRealD
+	 */
+	public ConcurrentFrameRealD(FrameRealD pFrame)
+	{
+		snapshot = publishable(copyOf(pFrame));
+	}
+
+	/**
+	 * Copy the current snapshot's frame for a writer to edit. The lock keeps
+	 * a reader from building a cache in the frame while it is copied.
+	 * 
+	 * @param pShare
+	 *            boolean share the basis because the writer won't edit it
+	 * @return FrameRealD
+	 */
+	private FrameRealD next(boolean pShare)
+	{
+		Snapshot tSnap = snapshot;
+		synchronized (tSnap)
+		{
+			return new FrameRealD(tSnap.frame, pShare);
+		}
+	}
+
+	/**
+	 * Find a monad in the basis of a frame.
+	 * 
+	 * @param pRF
+	 *            ConcurrentFrameRealD
+	 * @param pMonad
+	 *            MonadRealD
+	 * @return int position of the monad or -1
+	 */
+	public static int findMonad(ConcurrentFrameRealD pRF, MonadRealD pMonad)
+	{
+		return FrameRealD.findMonad(pRF.snapshot.frame, pMonad);
+	}
+
+	/**
+	 * Report on whether a monad is in the basis of a frame.
+	 * 
+	 * @param pRF
+	 *            ConcurrentFrameRealD
+	 * @param pMonad
+	 *            MonadRealD
+	 * @return boolean
+	 */
+	public static boolean hasMonad(ConcurrentFrameRealD pRF, MonadRealD pMonad)
+	{
+		return findMonad(pRF, pMonad) >= 0;
+	}
+
+	@Override
+	protected int basisFingerprint()
+	{
+		return snapshot.frame.basisFingerprint();
+	}
+
+	/**
+	 * Nothing to do. The monads this frame hands out are copies, so no edit
+	 * made to them reaches a published snapshot.
+	 */
+	@Override
+	public void coefficientsChanged()
+	{
+	}
+
+	/**
+	 * Return a copy of the reciprocal frame. The first call on a snapshot
+	 * computes it and later calls take no lock.
+	 * 
+	 * @return FrameRealD
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	@Override
+	public FrameRealD computeReciprocal() throws CladosFrameException
+	{
+		Snapshot tSnap = snapshot;
+		if (!tSnap.reciprocal())
+			throw new CladosFrameException(this, 
+					"Frame directions are degenerate so there is no reciprocal.");
+		return copyOf((FrameRealD) tSnap.frame.getReciprocal());
+	}
+
+	/**
+	 * Return the components of a monad along each direction of this frame.
+	 * No lock is taken.
+	 * 
+	 * @param pM
+	 *            MonadRealD in the default basis
+	 * @param pOut
+	 *            double[] receives one component per direction. May be null.
+	 * @return double[] the components
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	public double[] getComponents(MonadRealD pM, double[] pOut) throws CladosFrameException
+	{
+		Snapshot tSnap = snapshot;
+		if (!tSnap.reciprocal())
+			throw new CladosFrameException(this, 
+					"Frame directions are degenerate so there is no reciprocal.");
+		return tSnap.frame.getComponents(tSnap.index, pM, pOut);
+	}
+
+	@Override
+	public AlgebraAbstract getAlgebra()
+	{
+		return snapshot.frame.getAlgebra();
+	}
+
+	/**
+	 * Return a copy of the basis matrix. Editing it does not change this
+	 * frame.
+	 * 
+	 * @return BasisMatrixD
+	 */
+	@Override
+	public BasisMatrixD getBasisMatrix()
+	{
+		BasisMatrixD tMatrix = snapshot.frame.getBasisMatrix();
+		int tLength = tMatrix.getDirectionCount() * tMatrix.getBladeCount();
+		return new BasisMatrixD(tMatrix.getDirectionCount(), tMatrix.getBladeCount(), 
+						Arrays.copyOf(tMatrix.readData(), tLength));
+	}
+
+	/**
+	 * Return a copy of the basis. Editing it does not change this frame. Hand
+	 * an edited list back through setFBasis to publish it.
+	 * 
+	 * @return ArrayList of copied monads
+	 */
+	@Override
+	public ArrayList<MonadRealD> getFBasis()
+	{
+		return copyOf(snapshot.frame.getFBasis());
+	}
+
+	/**
+	 * Return a copy of the monad at the jth index.
+	 * 
+	 * @param pj
+	 *            int
+	 * @return MonadRealD
+	 */
+	public MonadRealD getFBasis(int pj)
+	{
+		return new MonadRealD(snapshot.frame.getFBasis(pj));
+	}
+
+	@Override
+	public int getFingerprint()
+	{
+		return snapshot.frame.getFingerprint();
+	}
+
+	@Override
+	public short getFrameOrder()
+	{
+		return snapshot.frame.getFrameOrder();
+	}
+
+	@Override
+	public String getName()
+	{
+		return snapshot.frame.getName();
+	}
+
+	/**
+	 * Return a copy of the monad with the given name.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return MonadRealD
+	 */
+	public MonadRealD getNameBasis(String pName)
+	{
+		return new MonadRealD(snapshot.frame.getNameBasis(pName));
+	}
+
+	@Override
+	protected MonadIndex getMonadIndex()
+	{
+		return snapshot.frame.getMonadIndex();
+	}
+
+	@Override
+	protected HashMap<String, Integer> getNameIndex()
+	{
+		return snapshot.frame.getNameIndex();
+	}
+
+	/**
+	 * Return a copy of the list of direction names. Hand an edited list back
+	 * through setNameList to publish it.
+	 * 
+	 * @return ArrayList
+	 */
+	@Override
+	public ArrayList<String> getNameList()
+	{
+		return new ArrayList<String>(snapshot.frame.getNameList());
+	}
+
+	/**
+	 * Return a copy of the reciprocal frame.
+	 * 
+	 * @return FrameRealD or null if the directions are degenerate
+	 */
+	@Override
+	public FrameAbstract getReciprocal()
+	{
+		Snapshot tSnap = snapshot;
+		if (!tSnap.reciprocal()) return null;
+		return copyOf((FrameRealD) tSnap.frame.getReciprocal());
+	}
+
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. The monad is named after this frame. No lock is taken.
+	 * 
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealD in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealD fromFrameCoordinates(double[] pCoeffs) throws CladosFrameException
+	{
+		return spanning().fromFrameCoordinates(pCoeffs);
+	}
+
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. No lock is taken.
+	 * 
+	 * @param pName
+	 *            String name of the new monad
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealD in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealD fromFrameCoordinates(String pName, double[] pCoeffs) throws CladosFrameException
+	{
+		return spanning().fromFrameCoordinates(pName, pCoeffs);
+	}
+
+	/**
+	 * Re-express a batch of packed frame coordinate vectors in default
+	 * coordinates. No lock is taken.
+	 * 
+	 * @param pIn
+	 *            double[] packed frame coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed default coordinates. May be
+	 *            null. Must not be pIn.
+	 * @return double[] the default coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] fromFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		return spanning().fromFrameCoordinates(pIn, pCount, pOut);
+	}
+
+	@Override
+	protected FrameTable getTable()
+	{
+		return snapshot.table();
+	}
+
+	@Override
+	protected FrameTransform getTransform()
+	{
+		return snapshot.transform();
+	}
+
+	@Override
+	public boolean isMonadIndexing()
+	{
+		return snapshot.frame.isMonadIndexing();
+	}
+
+	@Override
+	protected MonadRealD multiplyLeft(short pReferenceIndex, MonadRealD pM) throws CladosFrameException
+	{
+		Snapshot tSnap = snapshot;
+		if (tSnap.table() == null) return null;
+		return tSnap.frame.multiplyLeft(pReferenceIndex, pM);
+	}
+
+	@Override
+	protected MonadRealD multiplyRight(short pReferenceIndex, MonadRealD pM) throws CladosFrameException
+	{
+		Snapshot tSnap = snapshot;
+		if (tSnap.table() == null) return null;
+		return tSnap.frame.multiplyRight(pReferenceIndex, pM);
+	}
+
+	/**
+	 * Orthogonalize the basis on pM and publish the result.
+	 * 
+	 * @param pM
+	 *            MonadRealD the direction everything else is made
+	 *            orthogonal to
+	 */
+	public synchronized void orthogonalizeOn(MonadRealD pM)
+	{
+		FrameRealD tNext = next(false);
+		tNext.orthogonalizeOn(new MonadRealD(pM));
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Append copies of several monads and publish the result once.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD
+	 * @throws CladosFrameException 
+	 * 	A monad doesn't fit the frame. Nothing is published.
+	 */
+	public synchronized void appendAll(ArrayList<MonadRealD> pML) throws CladosFrameException
+	{
+		FrameRealD tNext = next(false);
+		tNext.appendAll(pML);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Append a copy of a monad and publish the result.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @throws CladosFrameException 
+	 * 	The monad doesn't fit the frame. Nothing is published.
+	 */
+	public synchronized void appendNamedMonad(MonadRealD pM) throws CladosFrameException
+	{
+		FrameRealD tNext = next(false);
+		tNext.appendNamedMonad(pM);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Remove several directions and publish the result once. Nothing is
+	 * published if no direction is removed.
+	 * 
+	 * @param pIndices
+	 *            int[]
+	 * @return int number of directions removed
+	 * @throws CladosFrameException 
+	 * 	An index does not name a direction. Nothing is published.
+	 */
+	@Override
+	public synchronized int removeAll(int[] pIndices) throws CladosFrameException
+	{
+		FrameRealD tNext = next(false);
+		int rDropped = tNext.removeAll(pIndices);
+		if (rDropped > 0) snapshot = publishable(tNext);
+		return rDropped;
+	}
+
+	/**
+	 * Keep only the named directions and publish the result once. Nothing is
+	 * published if every direction is kept.
+	 * 
+	 * @param pNames
+	 *            Set of direction names to keep
+	 * @return int number of directions removed
+	 */
+	public synchronized int retainNames(Set<String> pNames)
+	{
+		FrameRealD tNext = next(false);
+		int rDropped = tNext.retainNames(pNames);
+		if (rDropped > 0) snapshot = publishable(tNext);
+		return rDropped;
+	}
+
+	/**
+	 * Remove the monad at the given index and publish the result.
+	 * 
+	 * @param pthisone
+	 *            int
+	 * @throws CladosFrameException 
+	 * 	Happens when removal fails.
+	 */
+	public synchronized void removeNamedMonad(int pthisone) throws CladosFrameException
+	{
+		FrameRealD tNext = next(false);
+		tNext.removeNamedMonad(pthisone);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Remove a monad matching pM and publish the result.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @throws CladosFrameException 
+	 * 	Happens when the monad can't be found.
+	 */
+	public synchronized void removeRefMonad(MonadRealD pM) throws CladosFrameException
+	{
+		FrameRealD tNext = next(false);
+		tNext.removeRefMonad(pM);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Remove the monad at the given index and publish the result, reporting
+	 * failure instead of throwing. Nothing is copied on a miss.
+	 * 
+	 * @param pthisone
+	 *            int
+	 * @return boolean false if there is no monad at that index
+	 */
+	public synchronized boolean tryRemoveNamedMonad(int pthisone)
+	{
+		ArrayList<MonadRealD> tBasis = snapshot.frame.getFBasis();
+		if (tBasis == null || pthisone < 0 || pthisone >= tBasis.size()) return false;
+		FrameRealD tNext = next(false);
+		tNext.tryRemoveNamedMonad(pthisone);
+		snapshot = publishable(tNext);
+		return true;
+	}
+
+	/**
+	 * Remove a monad matching pM and publish the result, reporting failure
+	 * instead of throwing. Nothing is copied on a miss.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @return boolean false if no monad in the basis matches
+	 */
+	public synchronized boolean tryRemoveRefMonad(MonadRealD pM)
+	{
+		int tSpot = FrameRealD.findMonad(snapshot.frame, pM);
+		return tSpot >= 0 && tryRemoveNamedMonad(tSpot);
+	}
+
+	/**
+	 * Set the algebra and publish the result. The basis is kept, so it should
+	 * already belong to the new algebra.
+	 * 
+	 * @param pAlg
+	 *            AlgebraAbstract must be an AlgebraRealD
+	 */
+	@Override
+	public synchronized void setAlgebra(AlgebraAbstract pAlg)
+	{
+		FrameRealD tNext = copyOf(snapshot.frame);
+		tNext.setAlgebra(pAlg);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Replace the basis and publish the result. The monads are copied.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD
+	 */
+	public synchronized void setFBasis(ArrayList<MonadRealD> pML)
+	{
+		FrameRealD tNext = next(true);
+		tNext.setFBasis(copyOf(pML));
+		snapshot = publishable(tNext);
+	}
+
+	@Override
+	public synchronized void setMonadIndexing(boolean pIndex)
+	{
+		FrameRealD tNext = next(true);
+		tNext.setMonadIndexing(pIndex);
+		snapshot = publishable(tNext);
+	}
+
+	@Override
+	public synchronized void setName(String pName)
+	{
+		FrameRealD tNext = next(true);
+		tNext.setName(pName);
+		tNext.setReciprocal(null);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Replace the direction names and publish the result. The list is copied.
+	 * 
+	 * @param pStrings
+	 *            ArrayList of names
+	 */
+	@Override
+	public synchronized void setNameList(ArrayList<String> pStrings)
+	{
+		FrameRealD tNext = next(true);
+		tNext.setNameList((pStrings == null) ? null : new ArrayList<String>(pStrings));
+		tNext.setReciprocal(null);
+		snapshot = publishable(tNext);
+	}
+
+	/**
+	 * Return the coefficients of a default basis monad in frame coordinates.
+	 * No lock is taken.
+	 * 
+	 * @param pM
+	 *            MonadRealD in the default basis
+	 * @return double[] one frame coordinate per blade
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pM uses another algebra.
+	 */
+	public double[] toFrameCoordinates(MonadRealD pM) throws CladosFrameException
+	{
+		return spanning().toFrameCoordinates(pM);
+	}
+
+	/**
+	 * Re-express a batch of packed default coordinate vectors in frame
+	 * coordinates. No lock is taken.
+	 * 
+	 * @param pIn
+	 *            double[] packed default coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed frame coordinates. May be null.
+	 *            Must not be pIn.
+	 * @return double[] the frame coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] toFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		return spanning().toFrameCoordinates(pIn, pCount, pOut);
+	}
+
+	/**
+	 * Return the frame of the current snapshot with its reciprocal computed,
+	 * so reading the reciprocal from the frame builds nothing. It must not be
+	 * edited.
+	 * 
+	 * @return FrameRealD
+	 */
+	FrameRealD publishedWithReciprocal()
+	{
+		Snapshot tSnap = snapshot;
+		tSnap.reciprocal();
+		return tSnap.frame;
+	}
+
+	/**
+	 * Return the frame of the current snapshot if its directions span the
+	 * algebra. The snapshot remembers the answer, so a frame that doesn't
+	 * span is reported without trying to build its transform again.
+	 */
+	private FrameRealD spanning() throws CladosFrameException
+	{
+		Snapshot tSnap = snapshot;
+		if (tSnap.transform() == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		return tSnap.frame;
+	}
+
+	/**
+	 * Return the frame of the current snapshot. Code in this package reads
+	 * through it to skip the copies and to see one state throughout.
+	 * 
+	 * @return FrameRealD
+	 */
+	@Override
+	FrameRealD view()
+	{
+		return snapshot.frame;
+	}
+
+	/**
+	 * Return a plain FrameRealD copy of the current snapshot. The copy shares
+	 * nothing with this frame.
+	 * 
+	 * @return FrameRealD
+	 */
+	public FrameRealD toFrameRealD()
+	{
+		return copyOf(snapshot.frame);
+	}
+
+	/**
+	 * One published state of the frame. Its cheap caches are filled before the
+	 * volatile write that publishes it, so a reader that sees the snapshot
+	 * also sees them. The transform, table and reciprocal are built on first
+	 * use while holding the snapshot's lock. Each is announced through a
+	 * volatile flag written after it is built, so a reader that sees the flag
+	 * sees everything the build wrote into the frame.
+	 */
+	private static final class Snapshot
+	{
+		final FrameRealD		frame;
+
+		final ProductIndex		index;
+
+		private boolean			hasReciprocal;
+
+		private volatile boolean	reciprocalBuilt;
+
+		/**
+		 * The product table or null when the directions don't span.
+		 */
+		private FrameTable		table;
+
+		private volatile boolean	tableBuilt;
+
+		/**
+		 * The change of basis or null when the directions don't span. The
+		 * frame would try to build it again on every call, so readers check
+		 * this instead.
+		 */
+		private FrameTransform	transform;
+
+		private volatile boolean	transformBuilt;
+
+		Snapshot(FrameRealD pFrame, ProductIndex pIndex)
+		{
+			frame = pFrame;
+			index = pIndex;
+		}
+
+		/**
+		 * Return whether the directions have a reciprocal, computing it in
+		 * the frame the first time.
+		 */
+		boolean reciprocal()
+		{
+			if (!reciprocalBuilt)
+				synchronized (this)
+				{
+					if (!reciprocalBuilt)
+					{
+						try
+						{
+							frame.computeReciprocal();
+							hasReciprocal = true;
+						}
+						catch (CladosFrameException e)
+						{
+							hasReciprocal = false;
+						}
+						reciprocalBuilt = true;
+					}
+				}
+			return hasReciprocal;
+		}
+
+		/**
+		 * Return the product table, building it the first time.
+		 */
+		FrameTable table()
+		{
+			if (!tableBuilt)
+			{
+				FrameTransform tTransform = transform();
+				synchronized (this)
+				{
+					if (!tableBuilt)
+					{
+						table = (tTransform == null) ? null : frame.getTable();
+						tableBuilt = true;
+					}
+				}
+			}
+			return table;
+		}
+
+		/**
+		 * Return the change of basis, building it the first time.
+		 */
+		FrameTransform transform()
+		{
+			if (!transformBuilt)
+				synchronized (this)
+				{
+					if (!transformBuilt)
+					{
+						transform = frame.getTransform();
+						transformBuilt = true;
+					}
+				}
+			return transform;
+		}
+	}
+}
@@ -25,7 +25,9 @@
 package com.interworldtransport.cladosPhys;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import com.interworldtransport.cladosG.AlgebraAbstract;
+import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
 
 /**
  * The frame object holds all basis details that support the reference frame for
@@ -36,6 +38,85 @@ import com.interworldtransport.cladosG.AlgebraAbstract;
  */
 public abstract class FrameAbstract
 {
+	/**
+	 * Blade count at which frame-wide work is split across the common
+	 * fork-join pool when nothing else is configured. That is an algebra with
+	 * eight generators.
+	 */
+	public static final int		DEFAULT_PARALLEL_THRESHOLD	= 256;
+
+	/**
+	 * Blade count at which building product tables, inverting blade matrices
+	 * and orthogonalizing run in parallel. Smaller algebras stay sequential
+	 * because splitting the work costs more than it saves there. The starting
+	 * value can be given with the cladosPhys.parallelThreshold system
+	 * property.
+	 */
+	private static volatile int	parallelThreshold			= Integer.getInteger(
+					"cladosPhys.parallelThreshold", DEFAULT_PARALLEL_THRESHOLD);
+
+	/**
+	 * Return the blade count at which frame-wide work goes parallel.
+	 * 
+	 * @return int
+	 */
+	public static int getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/**
+	 * Report whether frame-wide work of this size should run in parallel. The
+	 * work is counted in coefficient updates, and it goes parallel when it is
+	 * at least a square blade matrix at the threshold.
+	 * 
+	 * @param pRows
+	 *            int number of independent rows
+	 * @param pLength
+	 *            int coefficients updated per row
+	 * @return boolean
+	 */
+	static boolean runsParallel(int pRows, int pLength)
+	{
+		long tLimit = parallelThreshold;
+		return (long) pRows * pLength >= tLimit * tLimit;
+	}
+
+	/**
+	 * Set the blade count at which frame-wide work goes parallel. Use
+	 * Integer.MAX_VALUE to keep everything sequential.
+	 * 
+	 * @param pBlades
+	 *            int blade count
+	 */
+	public static void setParallelThreshold(int pBlades)
+	{
+		parallelThreshold = pBlades;
+	}
+
+	/**
+	 * Drop the marked entries of a list in one pass. Survivors shift down
+	 * once and the backing array is trimmed once. Entries past the end of the
+	 * marks are kept.
+	 * 
+	 * @param pList
+	 *            ArrayList to edit
+	 * @param pDrop
+	 *            boolean[] true for each position to drop
+	 * @return int number of entries dropped
+	 */
+	protected static <T> int compact(ArrayList<T> pList, boolean[] pDrop)
+	{
+		int tSize = pList.size();
+		int tKeep = 0;
+		for (int k = 0; k < tSize; k++)
+			if (k >= pDrop.length || !pDrop[k]) 
+				pList.set(tKeep++, pList.get(k));
+		pList.subList(tKeep, tSize).clear();
+		pList.trimToSize();
+		return tSize - tKeep;
+	}
+
 	/**
 	 * Find a 'vector' name in the list of directions in this frame.
 	 * 
@@ -46,11 +127,12 @@ public abstract class FrameAbstract
 	 * @return int
 	 */
 	public static int findName(FrameAbstract pRF, String pName)
-	{	
-		for (String pM : pRF.getNameList())
-			if (pM.equals(pName)) 
-				return pRF.getNameList().indexOf(pM);
-		return -1;
+	{
+		long tStart = FrameMetrics.start();
+		Integer tSpot = pRF.getNameIndex().get(pName);
+		FrameMetrics.stop(FrameMetrics.Operation.FIND_NAME, tStart, pRF);
+		if (tSpot == null) return -1;
+		return tSpot.intValue();
 	}
 
 	/**
@@ -65,12 +147,13 @@ public abstract class FrameAbstract
 	 */
 	public static boolean hasName(FrameAbstract pRF, String pName)
 	{
-		return pRF.getNameList().contains(pName);
+		return pRF.getNameIndex().containsKey(pName);
 	}
 	
 	public static boolean isFilled(FrameAbstract pRF)
 	{
-		if (pRF.getAlgebra().getGProduct().getGradeCount() == pRF.getFBasis().size()+1)
+		FrameAbstract tRF = pRF.view();
+		if (tRF.getAlgebra().getGProduct().getGradeCount() == tRF.getFBasis().size()+1)
 			return true;
 		else
 			return false;
@@ -103,6 +186,20 @@ public abstract class FrameAbstract
 	 * 
 	 */
 	protected ArrayList<?>		fBasis;
+	/**
+	 * The fingerprint summarizes the algebra, order and basis content of the
+	 * frame. Frames that are equal always share it, so a mismatch rejects an
+	 * equality test without touching any monads. It is computed on request and
+	 * dropped whenever the basis, names or algebra change.
+	 */
+	private Integer				fingerprint;
+
+	/**
+	 * The monadIndexing flag asks descendants to search their basis through a
+	 * hash of monad content instead of testing every monad in turn.
+	 */
+	protected boolean			monadIndexing;
+
 	/**
 	 * The name of the frame is used in other places as a key. It should tell a
 	 * reader what the frame was meant for with a quick glance.
@@ -120,13 +217,118 @@ public abstract class FrameAbstract
 	 * relative to the outer products of the vectors in this list.
 	 */
 	protected ArrayList<String>	nameList;
+
+	/**
+	 * The nameIndex maps each name in the nameList to its position so lookups
+	 * by name don't have to walk the list. When a name appears more than once
+	 * the first position wins, just as a walk of the list would find it. The
+	 * index is dropped whenever the names or the basis change and rebuilt on
+	 * the next lookup.
+	 */
+	private HashMap<String, Integer>	nameIndex;
 	
 	/**
-	 * The reciprocal frame can be referenced from here if it is known. There is
-	 * no plan to construct one automatically from this frame.
+	 * The reciprocal frame can be referenced from here if it is known.
+	 * FrameRealD and FrameComplexD can construct one with computeReciprocal.
+	 * It is forgotten whenever the basis changes.
 	 */
 	protected FrameAbstract		reciprocal;
 
+	/**
+	 * Called after monads are appended to the end of the basis list, with
+	 * their names appended to the nameList when there is one. The name index
+	 * and the fingerprint are brought up to date instead of being dropped.
+	 * Descendants that can extend their own caches should override this and
+	 * call it on their parent too.
+	 * 
+	 * @param pCount
+	 *            int number of monads appended
+	 * @param pPrint
+	 *            int what the appended monads add to basisFingerprint
+	 */
+	protected void basisAppended(int pCount, int pPrint)
+	{
+		Integer tPrint = fingerprint;
+		if (tPrint != null)
+			fingerprint = Integer.valueOf(tPrint.intValue() + pPrint + 31 * pCount);
+		if (nameIndex != null && nameList != null)
+			for (int k = nameList.size() - pCount; k < nameList.size(); k++)
+				nameIndex.putIfAbsent(nameList.get(k), Integer.valueOf(k));
+	}
+
+	/**
+	 * Return the frame that holds this frame's state, for code in this
+	 * package that only reads it. Most frames hold their own. A
+	 * ConcurrentFrameRealD hands back its current snapshot, so reads through
+	 * the view skip the copies its public methods make and all come from one
+	 * state. The view must not be edited.
+	 * 
+	 * @return FrameAbstract
+	 */
+	FrameAbstract view()
+	{
+		return this;
+	}
+
+	/**
+	 * Take the fingerprint and name index of a frame this one is a copy of,
+	 * so the copy doesn't compute them again. The name index is copied since
+	 * basisAppended adds to it.
+	 * 
+	 * @param pFrom
+	 *            FrameAbstract with the same algebra, names and basis
+	 */
+	void carryCaches(FrameAbstract pFrom)
+	{
+		fingerprint = pFrom.fingerprint;
+		nameIndex = (pFrom.nameIndex == null) ? null 
+						: new HashMap<String, Integer>(pFrom.nameIndex);
+	}
+
+	/**
+	 * Called whenever the basis list is replaced or edited. Anything computed
+	 * from the basis is dropped here so it gets rebuilt on its next use.
+	 * Descendants that cache such things should override this and call it on
+	 * their parent too.
+	 */
+	protected void basisChanged()
+	{
+		nameIndex = null;
+		contentChanged();
+	}
+
+	/**
+	 * Called when the coefficients of the basis change while every direction
+	 * keeps its place and name. Only what was computed from coefficients is
+	 * dropped, so the name index survives. basisChanged calls this too.
+	 * Descendants that cache such things should override this and call it on
+	 * their parent too.
+	 */
+	protected void contentChanged()
+	{
+		fingerprint = null;
+	}
+
+	/**
+	 * Tell the frame that the coefficients of its basis were edited in place,
+	 * through the monads getFBasis hands out or through memory under a basis
+	 * matrix. The frame can't see such edits, so its fingerprint and anything
+	 * else computed from the coefficients stay stale until this is called.
+	 */
+	public void coefficientsChanged()
+	{
+		contentChanged();
+	}
+
+	/**
+	 * Return a hash of the basis monads that does not depend on their order in
+	 * the basis list. Each monad should contribute its name and its content,
+	 * since frame equality pairs monads by name.
+	 * 
+	 * @return int
+	 */
+	protected abstract int basisFingerprint();
+
 	public AlgebraAbstract getAlgebra()
 	{
 		return algebra;
@@ -135,13 +337,35 @@ public abstract class FrameAbstract
 	public abstract ArrayList<?> getFBasis();
 
 	/**
-	 * Return the order of this Frame
+	 * Return the fingerprint of this frame, computing it if needed. Equal
+	 * frames have equal fingerprints. Unequal frames usually don't.
+	 * 
+	 * @return int
+	 */
+	public int getFingerprint()
+	{
+		Integer tPrint = fingerprint;
+		if (tPrint == null)
+		{
+			int tHash = System.identityHashCode(algebra);
+			tHash = 31 * tHash + getFrameOrder();
+			tPrint = Integer.valueOf(31 * tHash + basisFingerprint());
+			fingerprint = tPrint;
+		}
+		return tPrint.intValue();
+	}
+
+	/**
+	 * Return the order of this Frame. That is the length of the nameList, or
+	 * the number of basis monads for a frame built without one.
 	 * 
 	 * @return short
 	 */
 	public short getFrameOrder()
 	{
-		return (short) nameList.size();
+		if (nameList != null) return (short) nameList.size();
+		ArrayList<?> tBasis = getFBasis();
+		return (short) ((tBasis == null) ? 0 : tBasis.size());
 	}
 
 	public String getName()
@@ -149,6 +373,32 @@ public abstract class FrameAbstract
 		return name;
 	}
 
+	/**
+	 * Return the name to position map for this frame, building it from the
+	 * nameList if needed.
+	 * 
+	 * @return HashMap
+	 */
+	protected HashMap<String, Integer> getNameIndex()
+	{
+		if (nameIndex == null)
+		{
+			int tSize = (nameList == null) ? 0 : nameList.size();
+			HashMap<String, Integer> tIndex = new HashMap<String, Integer>(tSize * 4 / 3 + 1);
+			for (int k = 0; k < tSize; k++)
+				tIndex.putIfAbsent(nameList.get(k), Integer.valueOf(k));
+			nameIndex = tIndex;
+		}
+		return nameIndex;
+	}
+
+	/**
+	 * Return the list of direction names. The list is handed over as is, so a
+	 * caller that edits it must hand it back through setNameList to keep name
+	 * lookups in step.
+	 * 
+	 * @return ArrayList
+	 */
 	public ArrayList<String> getNameList()
 	{
 		return nameList;
@@ -158,11 +408,82 @@ public abstract class FrameAbstract
 		return reciprocal;
 	}
 
+	/**
+	 * Report whether basis searches use the content hash index.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isMonadIndexing()
+	{
+		return monadIndexing;
+	}
+
 	//protected abstract void orthogonalizeOn(MonadAbstract pM);
 
+	/**
+	 * Remove several directions in one step. Every index is checked before
+	 * anything is removed. The basis and name lists are compacted once and
+	 * anything derived from the basis is rebuilt once, on its next use.
+	 * Repeated indices are removed once.
+	 * 
+	 * @param pIndices
+	 *            int[] positions of the directions to remove
+	 * @return int number of directions removed
+	 * @throws CladosFrameException
+	 * 	An index does not name a direction. Nothing is removed.
+	 */
+	public int removeAll(int[] pIndices) throws CladosFrameException
+	{
+		ArrayList<?> tBasis = getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		boolean[] tDrop = new boolean[tN];
+		for (int tSpot : pIndices)
+		{
+			if (tSpot < 0 || tSpot >= tN)
+				throw new CladosFrameException(this, "Specific Monad removal at ["
+								+ tSpot + "] didn't work.");
+			tDrop[tSpot] = true;
+		}
+		return removeMarked(tDrop);
+	}
+
+	/**
+	 * Remove the marked directions and their names, then drop everything
+	 * derived from the basis.
+	 * 
+	 * @param pDrop
+	 *            boolean[] true for each direction to remove
+	 * @return int number of directions removed
+	 */
+	protected int removeMarked(boolean[] pDrop)
+	{
+		ArrayList<?> tBasis = getFBasis();
+		if (tBasis == null) return 0;
+		int rDropped = compact(tBasis, pDrop);
+		if (rDropped == 0) return 0;
+		if (nameList != null) compact(nameList, pDrop);
+		basisChanged();
+		return rDropped;
+	}
+
 	public void setAlgebra(AlgebraAbstract pAlg)
 	{
 		algebra = pAlg;
+		fingerprint = null;
+	}
+
+	/**
+	 * Turn the content hash index for basis searches on or off. The index is
+	 * built on the first search and rebuilt after the basis changes. A basis
+	 * monad edited in place should be handed back through setFBasis so the
+	 * index sees its new coefficients.
+	 * 
+	 * @param pIndex
+	 *            boolean
+	 */
+	public void setMonadIndexing(boolean pIndex)
+	{
+		monadIndexing = pIndex;
 	}
 
 	public void setName(String pName)
@@ -173,6 +494,8 @@ public abstract class FrameAbstract
 	public void setNameList(ArrayList<String> pStrings)
 	{
 		nameList=pStrings;
+		nameIndex = null;
+		fingerprint = null;
 	}
 
 	protected void setReciprocal(FrameAbstract reciprocal) {
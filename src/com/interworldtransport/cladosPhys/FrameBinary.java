@@ -0,0 +1,608 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameBinary<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameBinary<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import com.interworldtransport.cladosG.*;
+
+/**
+ * Compact binary form of a frame. One record holds one frame of any of the
+ * four types and is laid out little-endian as follows.
+ * <ul>
+ * <li>int magic, short version, byte type, byte reserved, int record length
+ * in bytes. The length lets a reader skip or frame records on a channel.</li>
+ * <li>int blade count and int direction count. The blade count is checked
+ * against the resolved algebra, so it acts as the algebra signature.</li>
+ * <li>The algebra name, the frame name and then one name per direction. Each
+ * is an int byte count (-1 for null) followed by UTF-8 bytes.</li>
+ * <li>Padding up to a multiple of eight bytes from the record start.</li>
+ * <li>The coefficients packed a row per direction as float or double. Complex
+ * frames store every real part first and then every imaginary part, the
+ * same split their basis matrices use.</li>
+ * </ul>
+ * Frames read back are matrix-backed, so their monads are only made on
+ * demand.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameBinary
+{
+	/**
+	 * First four bytes of every record. They read "CLFR" in file order.
+	 */
+	public static final int		MAGIC		= 0x52464C43;
+
+	/**
+	 * Format version written by this class.
+	 */
+	public static final short	VERSION		= 1;
+
+	static final byte			REAL_F		= 0;
+
+	static final byte			REAL_D		= 1;
+
+	static final byte			COMPLEX_F	= 2;
+
+	static final byte			COMPLEX_D	= 3;
+
+	/**
+	 * Bytes before the blade count: magic, version, type, reserved, length.
+	 */
+	static final int			PREAMBLE	= 12;
+
+	/**
+	 * Most bytes a channel read sets aside for a record before any of them
+	 * arrive.
+	 */
+	private static final int	CHUNK		= 1 << 16;
+
+	private FrameBinary()
+	{
+	}
+
+	/**
+	 * Return the number of bytes the record for a frame takes.
+	 * 
+	 * @param pF
+	 *            FrameAbstract one of the four frame types
+	 * @return int
+	 */
+	public static int byteSize(FrameAbstract pF)
+	{
+		return new Parts(pF).size();
+	}
+
+	/**
+	 * Encode a frame into a new heap buffer, flipped and ready to read.
+	 * 
+	 * @param pF
+	 *            FrameAbstract one of the four frame types
+	 * @return ByteBuffer
+	 */
+	public static ByteBuffer encode(FrameAbstract pF)
+	{
+		long tStart = FrameMetrics.start();
+		Parts tParts = new Parts(pF);
+		ByteBuffer rOut = ByteBuffer.allocate(tParts.size());
+		tParts.write(rOut);
+		rOut.flip();
+		FrameMetrics.stop(FrameMetrics.Operation.BINARY_WRITE, tStart, pF);
+		return rOut;
+	}
+
+	/**
+	 * Read one record starting at the buffer's position and move the position
+	 * past it. The buffer's byte order is left alone.
+	 * 
+	 * @param pIn
+	 *            ByteBuffer
+	 * @param pResolver
+	 *            AlgebraResolver
+	 * @return FrameAbstract
+	 * @throws IOException
+	 *             The record is malformed or names an unknown algebra.
+	 */
+	public static FrameAbstract read(ByteBuffer pIn, AlgebraResolver pResolver) throws IOException
+	{
+		long tBegin = FrameMetrics.start();
+		ByteBuffer tIn = pIn.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int tStart = tIn.position();
+		Header tHead = new Header(tIn);
+		AlgebraAbstract tAlg = tHead.resolve(pResolver);
+		int tB = tHead.blades;
+		int tN = tHead.directions;
+		String tName = tHead.name;
+		ArrayList<String> tNames = tHead.names;
+
+		FrameAbstract rFrame;
+		try
+		{
+			switch (tHead.type)
+			{
+				case REAL_F:
+				{
+					float[] tData = new float[tN * tB];
+					tIn.asFloatBuffer().get(tData);
+					rFrame = new FrameRealF(tName, (AlgebraRealF) tAlg, new BasisMatrixF(tN, tB, tData), tNames);
+					break;
+				}
+				case REAL_D:
+				{
+					double[] tData = new double[tN * tB];
+					tIn.asDoubleBuffer().get(tData);
+					rFrame = new FrameRealD(tName, (AlgebraRealD) tAlg, new BasisMatrixD(tN, tB, tData), tNames);
+					break;
+				}
+				case COMPLEX_F:
+				{
+					float[] tRe = new float[tN * tB];
+					float[] tIm = new float[tN * tB];
+					tIn.asFloatBuffer().get(tRe).get(tIm);
+					rFrame = new FrameComplexF(tName, (AlgebraComplexF) tAlg, 
+									new BasisMatrixComplexF(tN, tB, tRe, tIm), tNames);
+					break;
+				}
+				case COMPLEX_D:
+				{
+					double[] tRe = new double[tN * tB];
+					double[] tIm = new double[tN * tB];
+					tIn.asDoubleBuffer().get(tRe).get(tIm);
+					rFrame = new FrameComplexD(tName, (AlgebraComplexD) tAlg, 
+									new BasisMatrixComplexD(tN, tB, tRe, tIm), tNames);
+					break;
+				}
+				default:
+					throw new IOException("Unknown frame type " + tHead.type);
+			}
+		}
+		catch (ClassCastException e)
+		{
+			throw new IOException("Algebra " + tHead.algebraName + " does not suit frame type " + tHead.type);
+		}
+		pIn.position(tStart + tHead.length);
+		FrameMetrics.stop(FrameMetrics.Operation.BINARY_READ, tBegin, rFrame);
+		return rFrame;
+	}
+
+	/**
+	 * Read one record from a channel.
+	 * 
+	 * @param pIn
+	 *            ReadableByteChannel
+	 * @param pResolver
+	 *            AlgebraResolver
+	 * @return FrameAbstract or null if the channel ends before a record starts
+	 * @throws IOException
+	 *             The record is malformed, truncated or names an unknown
+	 *             algebra.
+	 */
+	public static FrameAbstract read(ReadableByteChannel pIn, AlgebraResolver pResolver) throws IOException
+	{
+		ByteBuffer tHead = ByteBuffer.allocate(PREAMBLE).order(ByteOrder.LITTLE_ENDIAN);
+		if (!fill(pIn, tHead))
+		{
+			if (tHead.position() == 0) return null;
+			throw new EOFException("Truncated frame record");
+		}
+		int tLength = tHead.getInt(8);
+		if (tHead.getInt(0) != MAGIC || tLength < PREAMBLE) 
+			throw new IOException("Not a frame record");
+
+		// The length is only believed as far as bytes arrive to back it, so
+		// the buffer starts small and doubles as it fills.
+		ByteBuffer tRecord = ByteBuffer.allocate(Math.min(tLength, CHUNK));
+		tHead.flip();
+		tRecord.put(tHead);
+		while (true)
+		{
+			if (!fill(pIn, tRecord)) throw new EOFException("Truncated frame record");
+			if (tRecord.capacity() == tLength) break;
+			ByteBuffer tMore = ByteBuffer.allocate((int) Math.min(tLength, 2L * tRecord.capacity()));
+			tRecord.flip();
+			tMore.put(tRecord);
+			tRecord = tMore;
+		}
+		tRecord.flip();
+		return read(tRecord, pResolver);
+	}
+
+	/**
+	 * Write the record for a frame at the buffer's position and move the
+	 * position past it. The buffer's byte order is left alone.
+	 * 
+	 * @param pF
+	 *            FrameAbstract one of the four frame types
+	 * @param pOut
+	 *            ByteBuffer with at least byteSize(pF) bytes remaining
+	 */
+	public static void write(FrameAbstract pF, ByteBuffer pOut)
+	{
+		long tStart = FrameMetrics.start();
+		Parts tParts = new Parts(pF);
+		ByteBuffer tOut = pOut.duplicate();
+		tParts.write(tOut);
+		pOut.position(tOut.position());
+		FrameMetrics.stop(FrameMetrics.Operation.BINARY_WRITE, tStart, pF);
+	}
+
+	/**
+	 * Write the record for a frame to a channel.
+	 * 
+	 * @param pF
+	 *            FrameAbstract one of the four frame types
+	 * @param pOut
+	 *            WritableByteChannel
+	 * @throws IOException
+	 *             from the channel
+	 */
+	public static void write(FrameAbstract pF, WritableByteChannel pOut) throws IOException
+	{
+		ByteBuffer tRecord = encode(pF);
+		while (tRecord.hasRemaining())
+			pOut.write(tRecord);
+	}
+
+	/**
+	 * Round a record offset up to a multiple of eight.
+	 */
+	static int align(int pOffset)
+	{
+		return (pOffset + 7) & ~7;
+	}
+
+	/**
+	 * Read from a channel until the buffer is full.
+	 * 
+	 * @return false if the channel ended first
+	 */
+	private static boolean fill(ReadableByteChannel pIn, ByteBuffer pBuffer) throws IOException
+	{
+		while (pBuffer.hasRemaining())
+			if (pIn.read(pBuffer) < 0) return false;
+		return true;
+	}
+
+	static String getString(ByteBuffer pIn) throws IOException
+	{
+		if (pIn.remaining() < 4) throw new EOFException("Truncated frame record");
+		int tLength = pIn.getInt();
+		if (tLength < 0) return null;
+		if (tLength > pIn.remaining()) throw new EOFException("Truncated frame record");
+		byte[] tBytes = new byte[tLength];
+		pIn.get(tBytes);
+		return new String(tBytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Everything in a record ahead of its coefficients.
+	 */
+	static final class Header
+	{
+		final String			algebraName;
+
+		final int				blades;
+
+		/**
+		 * Offset of the coefficients from the record start.
+		 */
+		final int				coefficients;
+
+		final int				directions;
+
+		final int				length;
+
+		final String			name;
+
+		final ArrayList<String>	names;
+
+		final byte				type;
+
+		/**
+		 * Read the header of the record at the buffer's position and leave the
+		 * position on its first coefficient. The buffer must be little-endian.
+		 * 
+		 * @param pIn
+		 *            ByteBuffer
+		 * @throws IOException
+		 *             The record is malformed or too short for its
+		 *             coefficients.
+		 */
+		Header(ByteBuffer pIn) throws IOException
+		{
+			int tStart = pIn.position();
+			if (pIn.remaining() < PREAMBLE) throw new EOFException("Truncated frame record");
+			if (pIn.getInt() != MAGIC) throw new IOException("Not a frame record");
+			short tVersion = pIn.getShort();
+			if (tVersion != VERSION) throw new IOException("Unsupported frame record version " + tVersion);
+			type = pIn.get();
+			pIn.get();
+			length = pIn.getInt();
+			if (length < PREAMBLE || pIn.remaining() < length - PREAMBLE) 
+				throw new EOFException("Truncated frame record");
+
+			blades = pIn.getInt();
+			directions = pIn.getInt();
+			if (directions < 0 || blades < 0) throw new IOException("Not a frame record");
+			// Every name takes at least its four byte count and every
+			// direction a row of coefficients, so neither count can claim
+			// more than the record holds.
+			if (directions > (length - PREAMBLE) / 4
+							|| (long) parts() * width() * directions * blades > length)
+				throw new IOException("Frame record is shorter than its directions");
+
+			// The strings are read with the buffer cut off at the record end.
+			int tLimit = pIn.limit();
+			pIn.limit(tStart + length);
+			try
+			{
+				algebraName = getString(pIn);
+				name = getString(pIn);
+				names = new ArrayList<String>();
+				for (int i = 0; i < directions; i++)
+					names.add(getString(pIn));
+			}
+			finally
+			{
+				pIn.limit(tLimit);
+			}
+			coefficients = align(pIn.position() - tStart);
+			pIn.position(tStart + coefficients);
+
+			if (coefficients + (long) parts() * width() * directions * blades > length)
+				throw new IOException("Frame record is shorter than its coefficients");
+		}
+
+		/**
+		 * Number of coefficient blocks: two for complex frames, one otherwise.
+		 */
+		int parts()
+		{
+			return (type == COMPLEX_F || type == COMPLEX_D) ? 2 : 1;
+		}
+
+		/**
+		 * Look up the algebra the record names and check its blade count.
+		 * 
+		 * @param pResolver
+		 *            AlgebraResolver
+		 * @return AlgebraAbstract
+		 * @throws IOException
+		 *             The algebra is unknown or has the wrong size.
+		 */
+		AlgebraAbstract resolve(AlgebraResolver pResolver) throws IOException
+		{
+			AlgebraAbstract rAlg = pResolver.resolve(algebraName);
+			if (rAlg == null) throw new IOException("Unknown algebra " + algebraName);
+			if (rAlg.getGBasis().getBladeCount() != blades)
+				throw new IOException("Algebra " + algebraName + " does not have " + blades + " blades");
+			return rAlg;
+		}
+
+		/**
+		 * Bytes per coefficient.
+		 */
+		int width()
+		{
+			return (type == REAL_F || type == COMPLEX_F) ? 4 : 8;
+		}
+	}
+
+	/**
+	 * The pieces of a frame that go into its record.
+	 */
+	private static final class Parts
+	{
+		final byte[]			algebraName;
+
+		final int				blades;
+
+		final int				directions;
+
+		final double[]			dImg;
+
+		final double[]			dReal;
+
+		final float[]			fImg;
+
+		final float[]			fReal;
+
+		final byte[]			name;
+
+		final byte[][]			names;
+
+		final byte				type;
+
+		Parts(FrameAbstract pF)
+		{
+			// Read one published state, not a mix of two.
+			pF = pF.view();
+			AlgebraAbstract tAlg = pF.getAlgebra();
+			blades = tAlg.getGBasis().getBladeCount();
+			double[] tDR = null, tDI = null;
+			float[] tFR = null, tFI = null;
+			int tN = 0;
+			if (pF instanceof FrameRealF)
+			{
+				type = REAL_F;
+				BasisMatrixF tM = ((FrameRealF) pF).getBasisMatrix();
+				if (tM != null)
+				{
+					tN = tM.getDirectionCount();
+					tFR = tM.getData();
+				}
+			}
+			else if (pF instanceof FrameRealD)
+			{
+				type = REAL_D;
+				BasisMatrixD tM = ((FrameRealD) pF).getBasisMatrix();
+				if (tM != null)
+				{
+					tN = tM.getDirectionCount();
+					tDR = tM.getData();
+				}
+			}
+			else if (pF instanceof FrameComplexF)
+			{
+				type = COMPLEX_F;
+				BasisMatrixComplexF tM = ((FrameComplexF) pF).getBasisMatrix();
+				if (tM != null)
+				{
+					tN = tM.getDirectionCount();
+					tFR = tM.getReal();
+					tFI = tM.getImg();
+				}
+			}
+			else if (pF instanceof FrameComplexD)
+			{
+				type = COMPLEX_D;
+				BasisMatrixComplexD tM = ((FrameComplexD) pF).getBasisMatrix();
+				if (tM != null)
+				{
+					tN = tM.getDirectionCount();
+					tDR = tM.getReal();
+					tDI = tM.getImg();
+				}
+			}
+			else
+				throw new IllegalArgumentException("No binary form for " + pF.getClass().getName());
+			directions = tN;
+			dReal = tDR;
+			dImg = tDI;
+			fReal = tFR;
+			fImg = tFI;
+
+			algebraName = bytes(tAlg.getAlgebraName());
+			name = bytes(pF.getName());
+			names = new byte[tN][];
+			ArrayList<String> tNames = pF.getNameList();
+			boolean tListed = tNames != null && tNames.size() == tN;
+			for (int i = 0; i < tN; i++)
+				names[i] = bytes(tListed ? tNames.get(i) : nameOf(pF, i));
+		}
+
+		private static byte[] bytes(String pText)
+		{
+			return (pText == null) ? null : pText.getBytes(StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * Name of a direction taken from its monad when the frame has no
+		 * usable name list.
+		 */
+		private static String nameOf(FrameAbstract pF, int pj)
+		{
+			Object tM = pF.getFBasis().get(pj);
+			if (tM instanceof MonadRealF) return ((MonadRealF) tM).getName();
+			if (tM instanceof MonadRealD) return ((MonadRealD) tM).getName();
+			if (tM instanceof MonadComplexF) return ((MonadComplexF) tM).getName();
+			if (tM instanceof MonadComplexD) return ((MonadComplexD) tM).getName();
+			return null;
+		}
+
+		/**
+		 * Offset of the coefficients from the record start.
+		 */
+		int coefficientOffset()
+		{
+			int tSize = PREAMBLE + 8 + stringSize(algebraName) + stringSize(name);
+			for (byte[] tName : names)
+				tSize += stringSize(tName);
+			return align(tSize);
+		}
+
+		int size()
+		{
+			int tWidth = (type == REAL_F || type == COMPLEX_F) ? 4 : 8;
+			int tParts = (type == COMPLEX_F || type == COMPLEX_D) ? 2 : 1;
+			return coefficientOffset() + tParts * tWidth * directions * blades;
+		}
+
+		private static int stringSize(byte[] pText)
+		{
+			return 4 + ((pText == null) ? 0 : pText.length);
+		}
+
+		private static void putString(ByteBuffer pOut, byte[] pText)
+		{
+			if (pText == null)
+				pOut.putInt(-1);
+			else
+			{
+				pOut.putInt(pText.length);
+				pOut.put(pText);
+			}
+		}
+
+		void write(ByteBuffer pOut)
+		{
+			ByteBuffer tOut = pOut.order(ByteOrder.LITTLE_ENDIAN);
+			int tStart = tOut.position();
+			tOut.putInt(MAGIC);
+			tOut.putShort(VERSION);
+			tOut.put(type);
+			tOut.put((byte) 0);
+			tOut.putInt(size());
+			tOut.putInt(blades);
+			tOut.putInt(directions);
+			putString(tOut, algebraName);
+			putString(tOut, name);
+			for (byte[] tName : names)
+				putString(tOut, tName);
+			while (tOut.position() < tStart + coefficientOffset())
+				tOut.put((byte) 0);
+
+			int tCount = directions * blades;
+			if (fReal != null)
+			{
+				tOut.asFloatBuffer().put(fReal, 0, tCount);
+				tOut.position(tOut.position() + 4 * tCount);
+				if (fImg != null)
+				{
+					tOut.asFloatBuffer().put(fImg, 0, tCount);
+					tOut.position(tOut.position() + 4 * tCount);
+				}
+			}
+			else if (dReal != null)
+			{
+				tOut.asDoubleBuffer().put(dReal, 0, tCount);
+				tOut.position(tOut.position() + 8 * tCount);
+				if (dImg != null)
+				{
+					tOut.asDoubleBuffer().put(dImg, 0, tCount);
+					tOut.position(tOut.position() + 8 * tCount);
+				}
+			}
+		}
+	}
+}
@@ -24,7 +24,14 @@
  */
 package com.interworldtransport.cladosPhys;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+import com.interworldtransport.cladosF.ComplexD;
 import com.interworldtransport.cladosG.*;
 import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
 
@@ -37,6 +44,31 @@ import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
  */
 public class FrameComplexD extends FrameAbstract 
 {
+	/**
+	 * Relative size below which a direction's square is treated as zero while
+	 * orthogonalizing. Such a direction is null and nothing is projected on it.
+	 */
+	private static final double	ORTHO_TOLERANCE	= 1.0e-12d;
+
+	/**
+	 * Return a hash of the algebra and coefficients of a monad. Monads that
+	 * pass isGEqual with each other always share this hash.
+	 * 
+	 * @param pM
+	 *            MonadComplexD
+	 * @return int
+	 */
+	static int contentHash(MonadComplexD pM)
+	{
+		int tHash = System.identityHashCode(pM.getAlgebra());
+		for (ComplexD tC : pM.getCoeff())
+		{
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getReal());
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getImg());
+		}
+		return tHash;
+	}
+
 	/**
 	 * Return an integer pointing to the part of the nyad that covers the
 	 * algebra named in the parameter. Coverage is true if a monad can be found
@@ -49,10 +81,29 @@ public class FrameComplexD extends FrameAbstract
 	 * @return int
 	 */
 	public static int findMonad(FrameComplexD pRF, MonadComplexD pMonad)
+	{
+		long tStart = FrameMetrics.start();
+		int rSpot = searchBasis(pRF, pMonad);
+		FrameMetrics.stop(FrameMetrics.Operation.FIND_MONAD, tStart, pRF);
+		return rSpot;
+	}
+
+	/**
+	 * The search behind findMonad.
+	 */
+	private static int searchBasis(FrameComplexD pRF, MonadComplexD pMonad)
 	{
 		ArrayList<MonadComplexD> testFBasis=pRF.getFBasis();
-		for (MonadComplexD pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return testFBasis.indexOf(pM);
+		if (pRF.isMonadIndexing())
+		{
+			MonadIndex tIndex = pRF.getMonadIndex();
+			int tHash = contentHash(pMonad);
+			for (int k = tIndex.first(tHash); k >= 0; k = tIndex.next(k, tHash))
+				if (testFBasis.get(k).isGEqual(pMonad)) return k;
+			return -1;
+		}
+		for (int k = 0; k < testFBasis.size(); k++)
+			if (testFBasis.get(k).isGEqual(pMonad)) return k;
 		return -1;
 	}
 
@@ -69,14 +120,23 @@ public class FrameComplexD extends FrameAbstract
 	 */
 	public static boolean hasMonad(FrameComplexD pRF, MonadComplexD pMonad)
 	{
-		ArrayList<MonadComplexD> testFBasis=pRF.getFBasis();
-		for (MonadComplexD pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return true;
-		return false;
+		return findMonad(pRF, pMonad) >= 0;
 	}
 
 	public static boolean isREqual(FrameComplexD pRF1, FrameComplexD pRF2)
 	{
+		long tStart = FrameMetrics.start();
+		boolean rSame = compareFrames(pRF1, pRF2);
+		FrameMetrics.stop(FrameMetrics.Operation.EQUALITY, tStart, pRF1);
+		return rSame;
+	}
+
+	/**
+	 * The comparison behind isREqual.
+	 */
+	private static boolean compareFrames(FrameComplexD pRF1, FrameComplexD pRF2)
+	{
+		if (pRF1 == pRF2) return true;
 
 		// Check to see if the Algebras match
 		if (pRF1.getAlgebra() != pRF2.getAlgebra()) return false;
@@ -85,25 +145,22 @@ public class FrameComplexD extends FrameAbstract
 		// if they are not.
 		if (pRF1.getFrameOrder() != pRF2.getFrameOrder()) return false;
 
-		// Now check the monad lists.
-		boolean check = false;
+		// Equal frames always share a fingerprint, so a mismatch settles it
+		// without looking at any monads.
+		if (pRF1.getFingerprint() != pRF2.getFingerprint()) return false;
+		if (pRF1.getFBasis().size() != pRF2.getFBasis().size()) return false;
+
+		// Now check the monad lists, pairing them up by name.
+		HashMap<String, MonadComplexD> tByName = new HashMap<String, MonadComplexD>(
+						pRF2.getFBasis().size() * 4 / 3 + 1);
+		for (MonadComplexD tSpot2 : pRF2.getFBasis())
+			tByName.putIfAbsent(tSpot2.getName(), tSpot2);
 		for (MonadComplexD tSpot : pRF1.getFBasis())
 		{
-			check = false;
-			String tName1 = tSpot.getName();
-			for (MonadComplexD tSpot2 : pRF2.getFBasis())
-			{
-				if (tName1.equals(tSpot2.getName()))
-				{
-					check = true;
-					if (!tSpot.isGEqual(tSpot2)) return false;
-					break;
-				}
-			}
-			// if check is true a match was found (by monad name)
-			// if check is false, we have a dangling monad (by monad name),
+			MonadComplexD tSpot2 = tByName.get(tSpot.getName());
+			// if there is no match we have a dangling monad (by monad name),
 			// so they can't be equal.
-			if (!check) return false;
+			if (tSpot2 == null || !tSpot.isGEqual(tSpot2)) return false;
 		}
 		// To get this far, all Monads in one list must pass the equality
 		// test for their counterparts (by name) in the other list.
@@ -111,25 +168,69 @@ public class FrameComplexD extends FrameAbstract
 	}
 	
 	/**
-	 * Display XML string that represents the Frame
+	 * Copy the coefficients of a monad into primitive arrays.
+	 * 
+	 * @param pM
+	 *            MonadComplexD
+	 * @param pRe
+	 *            double[] receives the real part of each blade
+	 * @param pIm
+	 *            double[] receives the imaginary part of each blade
+	 * @param pOff
+	 *            int position in pRe and pIm of the first blade
+	 */
+	static void readCoefficients(MonadComplexD pM, double[] pRe, double[] pIm, int pOff)
+	{
+		ComplexD[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+		{
+			pRe[pOff + k] = tC[k].getReal();
+			pIm[pOff + k] = tC[k].getImg();
+		}
+	}
+
+	/**
+	 * Copy primitive coefficients into the existing coefficients of a monad.
+	 * 
+	 * @param pRe
+	 *            double[] holds the real part of each blade
+	 * @param pIm
+	 *            double[] holds the imaginary part of each blade
+	 * @param pOff
+	 *            int position in pRe and pIm of the first blade
 	 * @param pM
-	 * 		FrameRealF This is the Frame to be converted to XML.
+	 *            MonadComplexD
+	 */
+	static void writeCoefficients(double[] pRe, double[] pIm, int pOff, MonadComplexD pM)
+	{
+		ComplexD[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+		{
+			tC[k].setReal(pRe[pOff + k]);
+			tC[k].setImg(pIm[pOff + k]);
+		}
+	}
+
+	/**
+	 * Display XML string that represents the Frame. FrameXMLWriter streams the
+	 * same XML to a Writer without building the whole string.
+	 * 
+	 * @param pM
+	 * 		FrameComplexD This is the Frame to be converted to XML.
 	 * @return String
 	 */
 	public static String toXMLString(FrameComplexD pM)
 	{
-		StringBuffer rB = new StringBuffer("<Frame name=\"" + pM.getName()
-						+ "\" ");
-		rB.append("algebra=\"" + pM.getAlgebra().getAlgebraName() + "\" ");
-		rB.append(">\n");
-
-		rB.append(AlgebraComplexD.toXMLString((AlgebraComplexD)pM.getAlgebra()));
-		
-		for (int i=0; i==pM.getFBasis().size(); i++)
+		StringWriter rB = new StringWriter();
+		try
+		{
+			new FrameXMLWriter(rB).write(pM);
+		}
+		catch (IOException e)
 		{
-			rB.append(MonadComplexD.toXMLString(pM.getFBasis(i)));
+			// A StringWriter never throws.
+			throw new UncheckedIOException(e);
 		}
-		rB.append("</Frame>\n");
 		return rB.toString();
 	}
 
@@ -154,10 +255,43 @@ public class FrameComplexD extends FrameAbstract
 	public ArrayList<MonadComplexD>	fBasis;
 	
 	/**
-	 * The reciprocal frame can be referenced from here if it is known. There is
-	 * no plan to construct one automatically from this frame.
+	 * The real and imaginary parts of the inverse of the Gram matrix of scalar
+	 * products between directions. It is kept by computeReciprocal so an
+	 * appended direction can border it instead of inverting a new Gram matrix.
 	 */
-	protected FrameComplexD			reciprocal;
+	private double[][]				gramInverse;
+
+	/**
+	 * The basis packed into primitive real and imaginary matrices. Kernels
+	 * read this instead of the monads. It is built from the monads on first
+	 * use and dropped whenever the basis changes. A frame built from a matrix
+	 * starts with this and no monads at all.
+	 */
+	private BasisMatrixComplexD			matrix;
+
+	/**
+	 * The content hash index over the basis monads. It is only built when
+	 * monad indexing is turned on and is dropped whenever the basis changes.
+	 */
+	private MonadIndex				monadIndex;
+
+	/**
+	 * Scratch rows reused by orthogonalizeOn so repeated calls don't allocate.
+	 */
+	private double[][]				orthoScratch;
+
+	/**
+	 * The product table of this frame expressed in frame coordinates. It is
+	 * built on first use and dropped whenever the basis changes.
+	 */
+	private FrameTableComplex		table;
+
+	/**
+	 * The real and imaginary parts of the reciprocal directions, packed a row
+	 * per direction. They are filled in by computeReciprocal, extended when a
+	 * direction is appended and dropped whenever the basis changes otherwise.
+	 */
+	private double[][]				recipBasis;
 	
 	/**
 	 * Frame constructor with an empty basis list.
@@ -192,52 +326,409 @@ public class FrameComplexD extends FrameAbstract
 		setAlgebra(pAlg);
 		fBasis = new ArrayList<MonadComplexD>(pML);
 	}
+
+	/**
+	 * Frame Constructor around a basis matrix. The monads for the directions
+	 * are not made until something asks for them, and they take their names
+	 * from the name list.
+	 * 
+	 * @param pName
+	 *            String
+	 * @param pAlg
+	 *            AlgebraComplexD
+	 * @param pMatrix
+	 *            BasisMatrixComplexD a row per direction
+	 * @param pNames
+	 *            ArrayList of direction names. May be null.
+	 */
+	public FrameComplexD(String pName, AlgebraComplexD pAlg, BasisMatrixComplexD pMatrix, ArrayList<String> pNames)
+	{
+		setName(pName);
+		setAlgebra(pAlg);
+		setNameList(pNames);
+		matrix = pMatrix;
+	}
 	
 	/**
-	 * Add another Monad to the list of monads in this frame. This method does
-	 * not create a new copy of the Monad offered as a parameter. The Frame DOES
-	 * wind up referencing the passed Monad.
+	 * Append copies of several monads in one step. Every monad is checked as
+	 * appendNamedMonad checks it before any is added. The basis grows once
+	 * and what was derived from it is extended once for the whole batch. The
+	 * copies take this frame's name as their frame name, and their names are
+	 * added to the name list when the frame has one.
 	 * 
-	 * Not sure why the method returns the Frame after the appending operation.
+	 * @param pML
+	 *            ArrayList of MonadComplexD to append
+	 * @throws CladosFrameException
+	 * 	A monad has a different algebra or another frame, or the frame would
+	 * 	hold more directions than the algebra has generators. Nothing is
+	 * 	appended.
+	 */
+	public void appendAll(ArrayList<MonadComplexD> pML) throws CladosFrameException
+	{
+		ArrayList<MonadComplexD> tBasis = getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		if (tN + pML.size() + 1 > getAlgebra().getGProduct().getGradeCount())
+			throw new CladosFrameException(this, 
+							"Frame can't hold " + pML.size() + " more directions.");
+		for (MonadComplexD tM : pML)
+			checkMember(tM);
+		if (pML.isEmpty()) return;
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadComplexD>(pML.size());
+		tBasis.ensureCapacity(tN + pML.size());
+		if (nameList != null) nameList.ensureCapacity(nameList.size() + pML.size());
+		int tPrint = 0;
+		for (MonadComplexD tM : pML)
+		{
+			MonadComplexD tCopy = new MonadComplexD(tM);
+			tCopy.setFrameName(getName());
+			tBasis.add(tCopy);
+			if (nameList != null) nameList.add(tM.getName());
+			tPrint += 31 * tCopy.getName().hashCode() + contentHash(tCopy);
+		}
+		fBasis = tBasis;
+		basisAppended(pML.size(), tPrint);
+	}
+
+	/**
+	 * Append a copy of a monad to the end of the basis. The copy takes this
+	 * frame's name as its frame name, as the monads a matrix-backed frame
+	 * makes do. Its name is added to the name list when the frame has one.
+	 * <p>
+	 * There are a few things to check before the offered Monad is appended,
+	 * and none of them costs more for a larger frame.
+	 * 1)	Is it sharing the same algebra as the frame? No? Reject.
+	 * 2)	Is it arriving with a frame other than the default or this one? Yes? Reject.
+	 * 3)	Is the fBasis already full? Yes? Reject.
+	 * <p>
+	 * What was derived from the basis is extended rather than rebuilt. The
+	 * basis matrix gains a row, the name and monad indexes gain an entry and
+	 * the fingerprint gains the new monad's share. A known reciprocal is
+	 * bordered with the new direction. The inverse Gram matrix grows by a row
+	 * and column through a rank-one update and the reciprocal directions follow
+	 * it, so no Gram matrix is built or inverted again. The product table
+	 * needs directions that span the algebra, and a frame with room for
+	 * another direction doesn't, so it has nothing to extend.
 	 * 
 	 * @param pM
-	 *            MonadComplexD this is the referenced monad for the Frame.
-	 * @throws CladosFrameException 
-	 * 	Monads in a Frame must satisfy ReferenceMatch
+	 *            MonadComplexD to append
+	 * @throws CladosFrameException
+	 * 	The monad has a different algebra or another frame, or the frame
+	 * 	already holds as many directions as the algebra has generators.
 	 */
-	/*
 	public void appendNamedMonad(MonadComplexD pM) throws CladosFrameException
 	{
-		// This method works if the foot of pM matches the foot of this frame
-		// and the algebra of pM matches the one for this frame.
+		checkMember(pM);
+		ArrayList<MonadComplexD> tBasis = getFBasis();
+		if (tBasis != null && isFilled(this))
+			throw new CladosFrameException(this, "Frame generator basis is already filled");
 
-		// A check should be made to ensure pM is OK to append.
-		// The footPoint objects must match.
-		if (!pM.getAlgebra().equals(getAlgebra()))
-			throw new CladosFrameException(this,
-							"Monads in a Frame should have algebras match");
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadComplexD>();
+		MonadComplexD tCopy = new MonadComplexD(pM);
+		tCopy.setFrameName(getName());
+		tBasis.add(tCopy);
+		if (nameList != null) nameList.add(pM.getName());
+		fBasis = tBasis;
+		basisAppended(1, 31 * tCopy.getName().hashCode() + contentHash(tCopy));
+	}
 
-		// Add Monad to the ArrayList
-		fBasis.ensureCapacity(fBasis.size() + 1);
+	/**
+	 * Reject a monad that can't join this frame because it has a different
+	 * algebra or is expressed in some frame other than the default or this one.
+	 */
+	private void checkMember(MonadComplexD pM) throws CladosFrameException
+	{
+		if (pM.getAlgebra() != getAlgebra())
+			throw new CladosFrameException(this, "Monads in a Frame must have algebras match");
+		if (pM.getFrameName() != null && !pM.getFrameName().equals(getName()))
+			throw new CladosFrameException(this, "Monads in a Frame must use default frame for themselves");
+	}
+
+	@Override
+	protected int basisFingerprint()
+	{
+		int tHash = 0;
+		if (getFBasis() != null)
+			for (MonadComplexD tM : getFBasis())
+				tHash += 31 * tM.getName().hashCode() + contentHash(tM);
+		return tHash;
+	}
+
+	@Override
+	protected void basisAppended(int pCount, int pPrint)
+	{
+		super.basisAppended(pCount, pPrint);
+		int tFrom = fBasis.size() - pCount;
+		if (monadIndex != null)
+		{
+			int[] tHashes = new int[pCount];
+			for (int k = 0; k < pCount; k++)
+				tHashes[k] = contentHash(fBasis.get(tFrom + k));
+			monadIndex = monadIndex.append(tHashes);
+		}
+		setReciprocal(null);
+		table = null;
+		if (matrix == null) return;
+
+		matrix = matrix.append(fBasis, tFrom);
+		for (int n = tFrom; n < fBasis.size() && recipBasis != null; n++)
+			extendReciprocal(matrix.getReal(), matrix.getImg(), n);
+	}
+
+	@Override
+	protected void basisChanged()
+	{
+		super.basisChanged();
+		matrix = null;
+	}
+
+	/**
+	 * Tell the frame the coefficients of its basis monads were edited in
+	 * place. Everything computed from them is dropped, and the matrix is
+	 * packed again from the monads on its next use. A matrix-only frame keeps
+	 * its matrix.
+	 */
+	@Override
+	public void coefficientsChanged()
+	{
+		super.coefficientsChanged();
+		if (fBasis != null) matrix = null;
+	}
 
-		//pM.setFrameName(this.name); 	//Seems like a circular reference to me.
-		//pM.frame = this;				//Circular reference? Frame monads should be in default basis
-				
-		pM.setFrameName(null);
-		pM.frame = null;
-		fBasis.add(new MonadComplexD(pM));
+	@Override
+	protected void contentChanged()
+	{
+		super.contentChanged();
+		gramInverse = null;
+		monadIndex = null;
+		recipBasis = null;
+		setReciprocal(null);
+		table = null;
 	}
-*/
+
+	/**
+	 * Construct the reciprocal of this frame and remember it. Reciprocal
+	 * direction i is the one whose product with direction j has a scalar part
+	 * of one when i and j match and zero when they don't.
+	 * <p>
+	 * The Gram matrix of scalar products between directions is built and
+	 * inverted once. The scalar product is bilinear over the complex numbers,
+	 * so no conjugation is involved. Each reciprocal direction is then a sum
+	 * over this frame's directions weighted by a row of that inverse. The
+	 * result is kept through setReciprocal and handed back on later calls
+	 * until the basis changes.
+	 * 
+	 * @return FrameComplexD
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	public FrameComplexD computeReciprocal() throws CladosFrameException
+	{
+		if (recipBasis != null)
+		{
+			if (getReciprocal() == null) 
+				setReciprocal(reciprocalFrame());
+			return (FrameComplexD) getReciprocal();
+		}
+
+		long tStart = FrameMetrics.start();
+		try
+		{
+			ProductIndex tIndex = ProductIndex.of(getAlgebra());
+			int tB = tIndex.blades;
+			BasisMatrixComplexD tMatrix = getBasisMatrix();
+			int tN = tMatrix.getDirectionCount();
+			double[] tRe = tMatrix.getReal();
+			double[] tIm = tMatrix.getImg();
+
+			double[] tGramRe = new double[tN * tN];
+			double[] tGramIm = new double[tN * tN];
+			double[] tG = new double[2];
+			for (int i = 0; i < tN; i++)
+				for (int j = i; j < tN; j++)
+				{
+					tIndex.scalarProduct(tRe, tIm, i * tB, tRe, tIm, j * tB, tG);
+					tGramRe[i * tN + j] = tG[0];
+					tGramRe[j * tN + i] = tG[0];
+					tGramIm[i * tN + j] = tG[1];
+					tGramIm[j * tN + i] = tG[1];
+				}
+			double[][] tInverse = FrameMath.invert(tGramRe, tGramIm, tN, ORTHO_TOLERANCE);
+			if (tInverse == null)
+				throw new CladosFrameException(this, 
+						"Frame directions are degenerate so there is no reciprocal.");
+
+			double[] tRecipRe = new double[tN * tB];
+			double[] tRecipIm = new double[tN * tB];
+			for (int i = 0; i < tN; i++)
+				for (int j = 0; j < tN; j++)
+				{
+					double tWR = tInverse[0][i * tN + j];
+					double tWI = tInverse[1][i * tN + j];
+					if (tWR == 0.0d && tWI == 0.0d) continue;
+					for (int k = 0; k < tB; k++)
+					{
+						int tTo = i * tB + k;
+						int tFrom = j * tB + k;
+						tRecipRe[tTo] = Math.fma(tWR, tRe[tFrom], Math.fma(-tWI, tIm[tFrom], tRecipRe[tTo]));
+						tRecipIm[tTo] = Math.fma(tWR, tIm[tFrom], Math.fma(tWI, tRe[tFrom], tRecipIm[tTo]));
+					}
+				}
+			gramInverse = tInverse;
+			recipBasis = new double[][] { tRecipRe, tRecipIm };
+
+			FrameComplexD tFrame = reciprocalFrame();
+			setReciprocal(tFrame);
+			return tFrame;
+		}
+		finally
+		{
+			FrameMetrics.stop(FrameMetrics.Operation.RECIPROCAL, tStart, this);
+		}
+	}
+
+	/**
+	 * Border the cached Gram inverse and reciprocal directions of the first
+	 * pN rows of pRe and pIm with row pN. The new reciprocal
+	 * direction is the part of the new direction the old ones don't reach,
+	 * divided by the Schur complement, and each old reciprocal direction
+	 * gives up its share of it. Both caches are dropped when the new
+	 * direction is degenerate with the old ones.
+	 */
+	private void extendReciprocal(double[] pRe, double[] pIm, int pN)
+	{
+		ProductIndex tIndex = ProductIndex.of(getAlgebra());
+		int tB = tIndex.blades;
+		int tLast = pN * tB;
+
+		double[] tColRe = new double[pN];
+		double[] tColIm = new double[pN];
+		double[] tG = new double[2];
+		for (int j = 0; j < pN; j++)
+		{
+			tIndex.scalarProduct(pRe, pIm, j * tB, pRe, pIm, tLast, tG);
+			tColRe[j] = tG[0];
+			tColIm[j] = tG[1];
+		}
+		tIndex.scalarProduct(pRe, pIm, tLast, pRe, pIm, tLast, tG);
+		double[] tURe = new double[pN];
+		double[] tUIm = new double[pN];
+		double[][] tInverse = FrameMath.border(gramInverse[0], gramInverse[1], pN, 
+						tColRe, tColIm, tG[0], tG[1], tURe, tUIm, ORTHO_TOLERANCE);
+		if (tInverse == null)
+		{
+			gramInverse = null;
+			recipBasis = null;
+			return;
+		}
+
+		int tCorner = pN * (pN + 1) + pN;
+		double tRRe = tInverse[0][tCorner];
+		double tRIm = tInverse[1][tCorner];
+		double[] tRecipRe = Arrays.copyOf(recipBasis[0], (pN + 1) * tB);
+		double[] tRecipIm = Arrays.copyOf(recipBasis[1], (pN + 1) * tB);
+		for (int k = 0; k < tB; k++)
+		{
+			double tSumRe = pRe[tLast + k];
+			double tSumIm = pIm[tLast + k];
+			for (int j = 0; j < pN; j++)
+			{
+				int tFrom = j * tB + k;
+				tSumRe = Math.fma(-tURe[j], pRe[tFrom], Math.fma(tUIm[j], pIm[tFrom], tSumRe));
+				tSumIm = Math.fma(-tURe[j], pIm[tFrom], Math.fma(-tUIm[j], pRe[tFrom], tSumIm));
+			}
+			tRecipRe[tLast + k] = tSumRe * tRRe - tSumIm * tRIm;
+			tRecipIm[tLast + k] = tSumRe * tRIm + tSumIm * tRRe;
+		}
+		for (int i = 0; i < pN; i++)
+			for (int k = 0; k < tB; k++)
+			{
+				int tTo = i * tB + k;
+				double tNRe = tRecipRe[tLast + k];
+				double tNIm = tRecipIm[tLast + k];
+				tRecipRe[tTo] = Math.fma(-tURe[i], tNRe, Math.fma(tUIm[i], tNIm, tRecipRe[tTo]));
+				tRecipIm[tTo] = Math.fma(-tURe[i], tNIm, Math.fma(-tUIm[i], tNRe, tRecipIm[tTo]));
+			}
+		gramInverse = tInverse;
+		recipBasis = new double[][] { tRecipRe, tRecipIm };
+	}
+
+	/**
+	 * Return the basis packed as primitive matrices, building them from the
+	 * monads if needed. A basis monad edited in place should be handed back
+	 * through setFBasis so the matrix sees its new coefficients.
+	 * 
+	 * @return BasisMatrixComplexD or null if there is no basis
+	 */
+	public BasisMatrixComplexD getBasisMatrix()
+	{
+		if (matrix == null && fBasis != null)
+			matrix = BasisMatrixComplexD.of(fBasis, getAlgebra().getGBasis().getBladeCount());
+		return matrix;
+	}
+
+	/**
+	 * Return the components of a monad along each direction of this frame.
+	 * Component i is the scalar part of pM times reciprocal direction i, so
+	 * once the reciprocal is known each component costs one dot product.
+	 * 
+	 * @param pM
+	 *            MonadComplexD in the default basis
+	 * @param pOut
+	 *            double[] receives the real then imaginary part of each
+	 *            component. May be null.
+	 * @return double[] the components
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	public double[] getComponents(MonadComplexD pM, double[] pOut) throws CladosFrameException
+	{
+		if (recipBasis == null) computeReciprocal();
+		ProductIndex tIndex = ProductIndex.of(getAlgebra());
+		int tB = tIndex.blades;
+		int tN = recipBasis[0].length / tB;
+		double[] tXRe = new double[tB];
+		double[] tXIm = new double[tB];
+		readCoefficients(pM, tXRe, tXIm, 0);
+		double[] rOut = (pOut == null) ? new double[2 * tN] : pOut;
+		double[] tC = new double[2];
+		for (int i = 0; i < tN; i++)
+		{
+			tIndex.scalarProduct(tXRe, tXIm, 0, recipBasis[0], recipBasis[1], i * tB, tC);
+			rOut[2 * i] = tC[0];
+			rOut[2 * i + 1] = tC[1];
+		}
+		return rOut;
+	}
+
 	/**
 	 * Return the array of Monads used as the frame's basis. 
 	 * This basically just hands the whole thing over for another object to mangle.
 	 * DANGER
+	 * <p>
+	 * The frame does not see coefficients edited in place through these
+	 * monads. Call coefficientsChanged after such edits, or the fingerprint
+	 * and everything else computed from the old coefficients stay in use.
 	 * 
 	 * @return ArrayList (of Monads)
 	 */
 	@Override
 	public ArrayList<MonadComplexD> getFBasis()
 	{
+		if (fBasis == null && matrix != null)
+		{
+			int tN = matrix.getDirectionCount();
+			ArrayList<MonadComplexD> tList = new ArrayList<MonadComplexD>(tN);
+			for (int i = 0; i < tN; i++)
+			{
+				String tName = (nameList != null && i < nameList.size()) 
+								? nameList.get(i) : getName() + i;
+				tList.add(matrix.toMonad(i, tName, (AlgebraComplexD) getAlgebra(), getName()));
+			}
+			fBasis = tList;
+		}
 		return fBasis;
 	}
 
@@ -252,7 +743,25 @@ public class FrameComplexD extends FrameAbstract
 	 */
 	public MonadComplexD getFBasis(int pj)
 	{
-		return fBasis.get(pj);
+		return getFBasis().get(pj);
+	}
+
+	/**
+	 * Return the content hash index over the basis, building it if needed.
+	 * 
+	 * @return MonadIndex
+	 */
+	protected MonadIndex getMonadIndex()
+	{
+		if (monadIndex == null)
+		{
+			ArrayList<MonadComplexD> tBasis = getFBasis();
+			int[] tHashes = new int[tBasis.size()];
+			for (int k = 0; k < tHashes.length; k++)
+				tHashes[k] = contentHash(tBasis.get(k));
+			monadIndex = new MonadIndex(tHashes);
+		}
+		return monadIndex;
 	}
 
 	/**
@@ -268,7 +777,26 @@ public class FrameComplexD extends FrameAbstract
 	public MonadComplexD getNameBasis(String pName)
 	{
 		int tSpot = FrameAbstract.findName(this, pName);
-		return fBasis.get(tSpot);
+		return getFBasis().get(tSpot);
+	}
+
+	/**
+	 * Return the product table for this frame, building it if needed.
+	 * 
+	 * @return FrameTableComplex or null if the directions do not span the
+	 *         algebra
+	 */
+	protected FrameTableComplex getTable()
+	{
+		if (table == null && getBasisMatrix() != null)
+		{
+			long tStart = FrameMetrics.start();
+			BasisMatrixComplexD tMatrix = getBasisMatrix();
+			table = FrameTableComplex.build(ProductIndex.of(getAlgebra()), 
+							tMatrix.getReal(), tMatrix.getImg(), tMatrix.getDirectionCount());
+			FrameMetrics.stop(FrameMetrics.Operation.TABLE_BUILD, tStart, this);
+		}
+		return table;
 	}
 
 	/**
@@ -277,17 +805,36 @@ public class FrameComplexD extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadComplexD
-	 * @return MonadComplexD
+	 * @return MonadComplexD or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadComplexD multiplyLeft(short pReferenceIndex, MonadComplexD pM)
+	protected MonadComplexD multiplyLeft(short pReferenceIndex, MonadComplexD pM) throws CladosFrameException
 	{
-		return null;
+		FrameTableComplex tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		int tB = tTable.blades;
+		double[] tInRe = new double[tB];
+		double[] tInIm = new double[tB];
+		double[] tOutRe = new double[tB];
+		double[] tOutIm = new double[tB];
+		readCoefficients(pM, tInRe, tInIm, 0);
+		tTable.multiplyLeft(pReferenceIndex, tInRe, tInIm, tOutRe, tOutIm);
+		
+		MonadComplexD tProd = new MonadComplexD(pM);
+		writeCoefficients(tOutRe, tOutIm, 0, tProd);
+		return tProd;
 	}
 	
 	/**
@@ -296,24 +843,105 @@ public class FrameComplexD extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadComplexD
-	 * @return MonadComplexD
+	 * @return MonadComplexD or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadComplexD multiplyRight(short pReferenceIndex, MonadRealF pM)
+	protected MonadComplexD multiplyRight(short pReferenceIndex, MonadComplexD pM) throws CladosFrameException
 	{
-		return null;
+		FrameTableComplex tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		int tB = tTable.blades;
+		double[] tInRe = new double[tB];
+		double[] tInIm = new double[tB];
+		double[] tOutRe = new double[tB];
+		double[] tOutIm = new double[tB];
+		readCoefficients(pM, tInRe, tInIm, 0);
+		tTable.multiplyRight(pReferenceIndex, tInRe, tInIm, tOutRe, tOutIm);
+		
+		MonadComplexD tProd = new MonadComplexD(pM);
+		writeCoefficients(tOutRe, tOutIm, 0, tProd);
+		return tProd;
 	}
 
-	//@Override
-	//protected void orthogonalizeOn(MonadAbstract pM)
-	//{
+	/**
+	 * Make the directions of this frame orthogonal to pM and to each other with
+	 * modified Gram-Schmidt. If pM is one of the basis monads it is taken first
+	 * and left alone. Otherwise pM leads and every direction is made
+	 * orthogonal to it as well. Either way pM itself is never changed.
+	 * <p>
+	 * The scalar product is bilinear over the complex numbers. Directions are
+	 * not normalized, since the metric need not be positive. Their
+	 * coefficients are rewritten in place through reused scratch rows, so no
+	 * monads are created. The basis matrix is rewritten alongside them rather
+	 * than dropped and rebuilt.
+	 * 
+	 * @param pM
+	 *            MonadComplexD the direction to orthogonalize on
+	 */
+	public void orthogonalizeOn(MonadComplexD pM)
+	{
+		BasisMatrixComplexD tMatrix = getBasisMatrix();
+		ArrayList<MonadComplexD> tBasis = getFBasis();
+		int tB = tMatrix.getBladeCount();
+		int tN = tMatrix.getDirectionCount();
+		int tAnchor = findMonad(this, pM);
+		int tRows = (tAnchor < 0) ? tN + 1 : tN;
+		if (orthoScratch == null || orthoScratch[0].length < tRows * tB)
+			orthoScratch = new double[2][tRows * tB];
+		double[] tRe = orthoScratch[0];
+		double[] tIm = orthoScratch[1];
+
+		System.arraycopy(tMatrix.getReal(), 0, tRe, 0, tN * tB);
+		System.arraycopy(tMatrix.getImg(), 0, tIm, 0, tN * tB);
+		if (tAnchor < 0)
+		{
+			readCoefficients(pM, tRe, tIm, tN * tB);
+			tAnchor = tN;
+		}
+		FrameMath.orthogonalize(ProductIndex.of(getAlgebra()), tRe, tIm, tRows, tAnchor, ORTHO_TOLERANCE);
+		for (int i = 0; i < tN; i++)
+			if (i != tAnchor)
+			{
+				writeCoefficients(tRe, tIm, i * tB, tBasis.get(i));
+				tMatrix.setRow(i, tRe, tIm, i * tB);
+			}
+		contentChanged();
+	}
 
-	//}
+	/**
+	 * Build the reciprocal frame from the cached reciprocal directions. Each
+	 * reciprocal monad starts as a copy of the matching basis monad, so it
+	 * keeps that monad's name and algebra.
+	 */
+	private FrameComplexD reciprocalFrame()
+	{
+		int tB = getAlgebra().getGBasis().getBladeCount();
+		int tN = recipBasis[0].length / tB;
+		ArrayList<MonadComplexD> tList = new ArrayList<MonadComplexD>(tN);
+		for (int i = 0; i < tN; i++)
+		{
+			MonadComplexD tM = new MonadComplexD(getFBasis().get(i));
+			writeCoefficients(recipBasis[0], recipBasis[1], i * tB, tM);
+			tList.add(tM);
+		}
+		FrameComplexD rFrame = new FrameComplexD(getName() + "Reciprocal", 
+						(AlgebraComplexD) getAlgebra(), tList);
+		if (nameList != null) 
+			rFrame.setNameList(new ArrayList<String>(nameList));
+		return rFrame;
+	}
 
 	/**
 	 * Remove a Monad on the list of monads in this nyad.
@@ -325,20 +953,9 @@ public class FrameComplexD extends FrameAbstract
 	 */
 	protected void removeNamedMonad(int pthisone) throws CladosFrameException
 	{
-		MonadComplexD test = null;
-		try
-		{
-			test = fBasis.remove(pthisone);
-		}
-		catch (IndexOutOfBoundsException e)
-		{
+		if (!tryRemoveNamedMonad(pthisone))
 			throw new CladosFrameException(this, "Specific Monad removal at ["
 							+ pthisone + "] didn't work.");
-		}
-		finally
-		{
-			if (test != null) fBasis.trimToSize();
-		}
 	}
 
 	/**
@@ -351,14 +968,68 @@ public class FrameComplexD extends FrameAbstract
 	 */
 	protected void removeRefMonad(MonadComplexD pM) throws CladosFrameException
 	{
-		int testfind = findMonad(this, pM);
-		if (testfind >= 0)
-			removeNamedMonad(testfind);
-		else
+		if (!tryRemoveRefMonad(pM))
 			throw new CladosFrameException(this,
 							"Can't find the Monad to remove.");
 	}
 
+	/**
+	 * Remove the monad at an index, reporting failure instead of throwing.
+	 * Loops that prune many directions should use this so a miss costs no
+	 * exception.
+	 * 
+	 * @param pthisone
+	 *            int
+	 * @return boolean false if there is no monad at that index
+	 */
+	protected boolean tryRemoveNamedMonad(int pthisone)
+	{
+		ArrayList<MonadComplexD> tBasis = getFBasis();
+		if (tBasis == null || pthisone < 0 || pthisone >= tBasis.size()) return false;
+		tBasis.remove(pthisone);
+		tBasis.trimToSize();
+		if (nameList != null && pthisone < nameList.size())
+			nameList.remove(pthisone);
+		basisChanged();
+		return true;
+	}
+
+	/**
+	 * Remove a monad matching pM, reporting failure instead of throwing.
+	 * 
+	 * @param pM
+	 *            MonadComplexD
+	 * @return boolean false if no monad in the basis matches
+	 */
+	protected boolean tryRemoveRefMonad(MonadComplexD pM)
+	{
+		int tSpot = findMonad(this, pM);
+		return tSpot >= 0 && tryRemoveNamedMonad(tSpot);
+	}
+
+	/**
+	 * Keep only the directions whose names are in a set and remove the rest
+	 * in one step. A direction goes by its entry in the name list, or by its
+	 * monad's name where the list doesn't reach.
+	 * 
+	 * @param pNames
+	 *            Set of direction names to keep
+	 * @return int number of directions removed
+	 */
+	public int retainNames(Set<String> pNames)
+	{
+		ArrayList<MonadComplexD> tBasis = getFBasis();
+		if (tBasis == null) return 0;
+		boolean[] tDrop = new boolean[tBasis.size()];
+		for (int k = 0; k < tDrop.length; k++)
+		{
+			String tName = (nameList != null && k < nameList.size()) 
+							? nameList.get(k) : tBasis.get(k).getName();
+			tDrop[k] = !pNames.contains(tName);
+		}
+		return removeMarked(tDrop);
+	}
+
 	/**
 	 * Set the Monad List array of this FrameComplexD.
 	 * 
@@ -371,6 +1042,7 @@ public class FrameComplexD extends FrameAbstract
 			fBasis = null;
 		else
 			fBasis = pML;
+		basisChanged();
 
 	}
 }
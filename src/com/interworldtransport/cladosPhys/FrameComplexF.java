@@ -24,7 +24,13 @@
  */
 package com.interworldtransport.cladosPhys;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+import com.interworldtransport.cladosF.ComplexF;
 import com.interworldtransport.cladosG.*;
 import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
 
@@ -37,6 +43,31 @@ import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
  */
 public class FrameComplexF extends FrameAbstract 
 {
+	/**
+	 * Relative size below which a direction's square is treated as zero while
+	 * orthogonalizing. Such a direction is null and nothing is projected on it.
+	 */
+	private static final double	ORTHO_TOLERANCE	= 1.0e-6d;
+
+	/**
+	 * Return a hash of the algebra and coefficients of a monad. Monads that
+	 * pass isGEqual with each other always share this hash.
+	 * 
+	 * @param pM
+	 *            MonadComplexF
+	 * @return int
+	 */
+	static int contentHash(MonadComplexF pM)
+	{
+		int tHash = System.identityHashCode(pM.getAlgebra());
+		for (ComplexF tC : pM.getCoeff())
+		{
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getReal());
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getImg());
+		}
+		return tHash;
+	}
+
 	/**
 	 * Return an integer pointing to the part of the nyad that covers the
 	 * algebra named in the parameter. Coverage is true if a monad can be found
@@ -49,10 +80,29 @@ public class FrameComplexF extends FrameAbstract
 	 * @return int
 	 */
 	public static int findMonad(FrameComplexF pRF, MonadComplexF pMonad)
+	{
+		long tStart = FrameMetrics.start();
+		int rSpot = searchBasis(pRF, pMonad);
+		FrameMetrics.stop(FrameMetrics.Operation.FIND_MONAD, tStart, pRF);
+		return rSpot;
+	}
+
+	/**
+	 * The search behind findMonad.
+	 */
+	private static int searchBasis(FrameComplexF pRF, MonadComplexF pMonad)
 	{
 		ArrayList<MonadComplexF> testFBasis=pRF.getFBasis();
-		for (MonadComplexF pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return pRF.fBasis.indexOf(pM);
+		if (pRF.isMonadIndexing())
+		{
+			MonadIndex tIndex = pRF.getMonadIndex();
+			int tHash = contentHash(pMonad);
+			for (int k = tIndex.first(tHash); k >= 0; k = tIndex.next(k, tHash))
+				if (testFBasis.get(k).isGEqual(pMonad)) return k;
+			return -1;
+		}
+		for (int k = 0; k < testFBasis.size(); k++)
+			if (testFBasis.get(k).isGEqual(pMonad)) return k;
 		return -1;
 	}
 
@@ -69,14 +119,23 @@ public class FrameComplexF extends FrameAbstract
 	 */
 	public static boolean hasMonad(FrameComplexF pRF, MonadComplexF pMonad)
 	{
-		ArrayList<MonadComplexF> testFBasis=pRF.getFBasis();
-		for (MonadComplexF pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return true;
-		return false;
+		return findMonad(pRF, pMonad) >= 0;
 	}
 
 	public static boolean isREqual(FrameComplexF pRF1, FrameComplexF pRF2)
 	{
+		long tStart = FrameMetrics.start();
+		boolean rSame = compareFrames(pRF1, pRF2);
+		FrameMetrics.stop(FrameMetrics.Operation.EQUALITY, tStart, pRF1);
+		return rSame;
+	}
+
+	/**
+	 * The comparison behind isREqual.
+	 */
+	private static boolean compareFrames(FrameComplexF pRF1, FrameComplexF pRF2)
+	{
+		if (pRF1 == pRF2) return true;
 
 		// Check to see if the Algebras match
 		if (pRF1.getAlgebra() != pRF2.getAlgebra()) return false;
@@ -85,25 +144,22 @@ public class FrameComplexF extends FrameAbstract
 		// if they are not.
 		if (pRF1.getFrameOrder() != pRF2.getFrameOrder()) return false;
 
-		// Now check the monad lists.
-		boolean check = false;
+		// Equal frames always share a fingerprint, so a mismatch settles it
+		// without looking at any monads.
+		if (pRF1.getFingerprint() != pRF2.getFingerprint()) return false;
+		if (pRF1.getFBasis().size() != pRF2.getFBasis().size()) return false;
+
+		// Now check the monad lists, pairing them up by name.
+		HashMap<String, MonadComplexF> tByName = new HashMap<String, MonadComplexF>(
+						pRF2.getFBasis().size() * 4 / 3 + 1);
+		for (MonadComplexF tSpot2 : pRF2.getFBasis())
+			tByName.putIfAbsent(tSpot2.getName(), tSpot2);
 		for (MonadComplexF tSpot : pRF1.getFBasis())
 		{
-			check = false;
-			String tName1 = tSpot.getName();
-			for (MonadComplexF tSpot2 : pRF2.getFBasis())
-			{
-				if (tName1.equals(tSpot2.getName()))
-				{
-					check = true;
-					if (!tSpot.isGEqual(tSpot2)) return false;
-					break;
-				}
-			}
-			// if check is true a match was found (by monad name)
-			// if check is false, we have a dangling monad (by monad name),
+			MonadComplexF tSpot2 = tByName.get(tSpot.getName());
+			// if there is no match we have a dangling monad (by monad name),
 			// so they can't be equal.
-			if (!check) return false;
+			if (tSpot2 == null || !tSpot.isGEqual(tSpot2)) return false;
 		}
 		// To get this far, all Monads in one list must pass the equality
 		// test for their counterparts (by name) in the other list.
@@ -111,25 +167,69 @@ public class FrameComplexF extends FrameAbstract
 	}
 
 	/**
-	 * Display XML string that represents the Frame
+	 * Copy the coefficients of a monad into primitive arrays.
+	 * 
+	 * @param pM
+	 *            MonadComplexF
+	 * @param pRe
+	 *            double[] receives the real part of each blade
+	 * @param pIm
+	 *            double[] receives the imaginary part of each blade
+	 * @param pOff
+	 *            int position in pRe and pIm of the first blade
+	 */
+	static void readCoefficients(MonadComplexF pM, double[] pRe, double[] pIm, int pOff)
+	{
+		ComplexF[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+		{
+			pRe[pOff + k] = tC[k].getReal();
+			pIm[pOff + k] = tC[k].getImg();
+		}
+	}
+
+	/**
+	 * Copy primitive coefficients into the existing coefficients of a monad.
+	 * 
+	 * @param pRe
+	 *            double[] holds the real part of each blade
+	 * @param pIm
+	 *            double[] holds the imaginary part of each blade
+	 * @param pOff
+	 *            int position in pRe and pIm of the first blade
+	 * @param pM
+	 *            MonadComplexF
+	 */
+	static void writeCoefficients(double[] pRe, double[] pIm, int pOff, MonadComplexF pM)
+	{
+		ComplexF[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+		{
+			tC[k].setReal((float) pRe[pOff + k]);
+			tC[k].setImg((float) pIm[pOff + k]);
+		}
+	}
+
+	/**
+	 * Display XML string that represents the Frame. FrameXMLWriter streams the
+	 * same XML to a Writer without building the whole string.
+	 * 
 	 * @param pM
-	 * 		FrameRealF This is the Frame to be converted to XML.
+	 * 		FrameComplexF This is the Frame to be converted to XML.
 	 * @return String
 	 */
 	public static String toXMLString(FrameComplexF pM)
 	{
-		StringBuffer rB = new StringBuffer("<Frame name=\"" + pM.getName()
-						+ "\" ");
-		rB.append("algebra=\"" + pM.getAlgebra().getAlgebraName() + "\" ");
-		rB.append(">\n");
-
-		rB.append(AlgebraComplexF.toXMLString((AlgebraComplexF)pM.getAlgebra()));
-		
-		for (int i=0; i==pM.getFBasis().size(); i++)
+		StringWriter rB = new StringWriter();
+		try
 		{
-			rB.append(MonadComplexF.toXMLString(pM.getFBasis(i)));
+			new FrameXMLWriter(rB).write(pM);
+		}
+		catch (IOException e)
+		{
+			// A StringWriter never throws.
+			throw new UncheckedIOException(e);
 		}
-		rB.append("</Frame>\n");
 		return rB.toString();
 	}
 	
@@ -158,6 +258,31 @@ public class FrameComplexF extends FrameAbstract
 	 * no plan to construct one automatically from this frame.
 	 */
 	protected FrameComplexF			reciprocal;
+
+	/**
+	 * The basis packed into primitive real and imaginary matrices. Kernels
+	 * read this instead of the monads. It is built from the monads on first
+	 * use and dropped whenever the basis changes. A frame built from a matrix
+	 * starts with this and no monads at all.
+	 */
+	private BasisMatrixComplexF			matrix;
+
+	/**
+	 * The content hash index over the basis monads. It is only built when
+	 * monad indexing is turned on and is dropped whenever the basis changes.
+	 */
+	private MonadIndex				monadIndex;
+
+	/**
+	 * Scratch rows reused by orthogonalizeOn so repeated calls don't allocate.
+	 */
+	private double[][]				orthoScratch;
+
+	/**
+	 * The product table of this frame expressed in frame coordinates. It is
+	 * built on first use and dropped whenever the basis changes.
+	 */
+	private FrameTableComplex		table;
 	
 	/**
 	 * Frame constructor with an empty basis list.
@@ -194,49 +319,216 @@ public class FrameComplexF extends FrameAbstract
 	}
 
 	/**
-	 * Add another Monad to the list of monads in this frame. This method does
-	 * not create a new copy of the Monad offered as a parameter. The Frame DOES
-	 * wind up referencing the passed Monad.
+	 * Frame Constructor around a basis matrix. The monads for the directions
+	 * are not made until something asks for them, and they take their names
+	 * from the name list.
+	 * 
+	 * @param pName
+	 *            String
+	 * @param pAlg
+	 *            AlgebraComplexF
+	 * @param pMatrix
+	 *            BasisMatrixComplexF a row per direction
+	 * @param pNames
+	 *            ArrayList of direction names. May be null.
+	 */
+	public FrameComplexF(String pName, AlgebraComplexF pAlg, BasisMatrixComplexF pMatrix, ArrayList<String> pNames)
+	{
+		setName(pName);
+		setAlgebra(pAlg);
+		setNameList(pNames);
+		matrix = pMatrix;
+	}
+
+	/**
+	 * Append copies of several monads in one step. Every monad is checked as
+	 * appendNamedMonad checks it before any is added. The basis grows once
+	 * and what was derived from it is extended once for the whole batch. The
+	 * copies take this frame's name as their frame name, and their names are
+	 * added to the name list when the frame has one.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadComplexF to append
+	 * @throws CladosFrameException
+	 * 	A monad has a different algebra or another frame, or the frame would
+	 * 	hold more directions than the algebra has generators. Nothing is
+	 * 	appended.
+	 */
+	public void appendAll(ArrayList<MonadComplexF> pML) throws CladosFrameException
+	{
+		ArrayList<MonadComplexF> tBasis = getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		if (tN + pML.size() + 1 > getAlgebra().getGProduct().getGradeCount())
+			throw new CladosFrameException(this, 
+							"Frame can't hold " + pML.size() + " more directions.");
+		for (MonadComplexF tM : pML)
+			checkMember(tM);
+		if (pML.isEmpty()) return;
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadComplexF>(pML.size());
+		tBasis.ensureCapacity(tN + pML.size());
+		if (nameList != null) nameList.ensureCapacity(nameList.size() + pML.size());
+		int tPrint = 0;
+		for (MonadComplexF tM : pML)
+		{
+			MonadComplexF tCopy = new MonadComplexF(tM);
+			tCopy.setFrameName(getName());
+			tBasis.add(tCopy);
+			if (nameList != null) nameList.add(tM.getName());
+			tPrint += 31 * tCopy.getName().hashCode() + contentHash(tCopy);
+		}
+		fBasis = tBasis;
+		basisAppended(pML.size(), tPrint);
+	}
+
+	/**
+	 * Append a copy of a monad to the end of the basis. The copy takes this
+	 * frame's name as its frame name, as the monads a matrix-backed frame
+	 * makes do. Its name is added to the name list when the frame has one.
+	 * <p>
+	 * There are a few things to check before the offered Monad is appended,
+	 * and none of them costs more for a larger frame.
+	 * 1)	Is it sharing the same algebra as the frame? No? Reject.
+	 * 2)	Is it arriving with a frame other than the default or this one? Yes? Reject.
+	 * 3)	Is the fBasis already full? Yes? Reject.
+	 * <p>
+	 * What was derived from the basis is extended rather than rebuilt. The
+	 * basis matrix gains a row, the name and monad indexes gain an entry and
+	 * the fingerprint gains the new monad's share. The product table
+	 * needs directions that span the algebra, and a frame with room for
+	 * another direction doesn't, so it has nothing to extend.
 	 * 
 	 * @param pM
-	 *            MonadComplexF this is the referenced monad for the Frame.
-	 * @throws CladosFrameException 
-	 * 	Monads in a Frame must satisfy ReferenceMatch
+	 *            MonadComplexF to append
+	 * @throws CladosFrameException
+	 * 	The monad has a different algebra or another frame, or the frame
+	 * 	already holds as many directions as the algebra has generators.
 	 */
-	/*
 	public void appendNamedMonad(MonadComplexF pM) throws CladosFrameException
 	{
-		// This method works if the foot of pM matches the foot of this frame
-		// and the algebra of pM matches the one for this frame.
+		checkMember(pM);
+		ArrayList<MonadComplexF> tBasis = getFBasis();
+		if (tBasis != null && isFilled(this))
+			throw new CladosFrameException(this, "Frame generator basis is already filled");
 
-		// A check should be made to ensure pM is OK to append.
-		// The footPoint objects must match.
-		if (!pM.getAlgebra().equals(getAlgebra()))
-			throw new CladosFrameException(this,
-							"Monads in a Frame should have algebras match");
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadComplexF>();
+		MonadComplexF tCopy = new MonadComplexF(pM);
+		tCopy.setFrameName(getName());
+		tBasis.add(tCopy);
+		if (nameList != null) nameList.add(pM.getName());
+		fBasis = tBasis;
+		basisAppended(1, 31 * tCopy.getName().hashCode() + contentHash(tCopy));
+	}
+
+	/**
+	 * Reject a monad that can't join this frame because it has a different
+	 * algebra or is expressed in some frame other than the default or this one.
+	 */
+	private void checkMember(MonadComplexF pM) throws CladosFrameException
+	{
+		if (pM.getAlgebra() != getAlgebra())
+			throw new CladosFrameException(this, "Monads in a Frame must have algebras match");
+		if (pM.getFrameName() != null && !pM.getFrameName().equals(getName()))
+			throw new CladosFrameException(this, "Monads in a Frame must use default frame for themselves");
+	}
 
-		// Add Monad to the ArrayList
-		fBasis.ensureCapacity(fBasis.size() + 1);
+	@Override
+	protected int basisFingerprint()
+	{
+		int tHash = 0;
+		if (getFBasis() != null)
+			for (MonadComplexF tM : getFBasis())
+				tHash += 31 * tM.getName().hashCode() + contentHash(tM);
+		return tHash;
+	}
+
+	@Override
+	protected void basisAppended(int pCount, int pPrint)
+	{
+		super.basisAppended(pCount, pPrint);
+		int tFrom = fBasis.size() - pCount;
+		if (monadIndex != null)
+		{
+			int[] tHashes = new int[pCount];
+			for (int k = 0; k < pCount; k++)
+				tHashes[k] = contentHash(fBasis.get(tFrom + k));
+			monadIndex = monadIndex.append(tHashes);
+		}
+		if (matrix != null)
+			matrix = matrix.append(fBasis, tFrom);
+		table = null;
+	}
+
+	@Override
+	protected void basisChanged()
+	{
+		super.basisChanged();
+		matrix = null;
+	}
 
-		//pM.setFrameName(this.name); 	//Seems like a circular reference to me.
-		//pM.frame = this;				//Circular reference? Frame monads should be in default basis
-				
-		pM.setFrameName(null);
-		pM.frame = null;
-		fBasis.add(new MonadComplexF(pM));
+	/**
+	 * Tell the frame the coefficients of its basis monads were edited in
+	 * place. Everything computed from them is dropped, and the matrix is
+	 * packed again from the monads on its next use. A matrix-only frame keeps
+	 * its matrix.
+	 */
+	@Override
+	public void coefficientsChanged()
+	{
+		super.coefficientsChanged();
+		if (fBasis != null) matrix = null;
+	}
+
+	@Override
+	protected void contentChanged()
+	{
+		super.contentChanged();
+		monadIndex = null;
+		table = null;
+	}
+
+	/**
+	 * Return the basis packed as primitive matrices, building them from the
+	 * monads if needed. A basis monad edited in place should be handed back
+	 * through setFBasis so the matrix sees its new coefficients.
+	 * 
+	 * @return BasisMatrixComplexF or null if there is no basis
+	 */
+	public BasisMatrixComplexF getBasisMatrix()
+	{
+		if (matrix == null && fBasis != null)
+			matrix = BasisMatrixComplexF.of(fBasis, getAlgebra().getGBasis().getBladeCount());
+		return matrix;
 	}
-	*/
 
 	/**
 	 * Return the array of Monads used as the frame's basis. 
 	 * This basically just hands the whole thing over for another object to mangle.
 	 * DANGER
+	 * <p>
+	 * The frame does not see coefficients edited in place through these
+	 * monads. Call coefficientsChanged after such edits, or the fingerprint
+	 * and everything else computed from the old coefficients stay in use.
 	 * 
 	 * @return ArrayList (of Monads)
 	 */
 	@Override
 	public ArrayList<MonadComplexF> getFBasis()
 	{
+		if (fBasis == null && matrix != null)
+		{
+			int tN = matrix.getDirectionCount();
+			ArrayList<MonadComplexF> tList = new ArrayList<MonadComplexF>(tN);
+			for (int i = 0; i < tN; i++)
+			{
+				String tName = (nameList != null && i < nameList.size()) 
+								? nameList.get(i) : getName() + i;
+				tList.add(matrix.toMonad(i, tName, (AlgebraComplexF) getAlgebra(), getName()));
+			}
+			fBasis = tList;
+		}
 		return fBasis;
 	}
 
@@ -251,7 +543,25 @@ public class FrameComplexF extends FrameAbstract
 	 */
 	public MonadComplexF getFBasis(int pj)
 	{
-		return fBasis.get(pj);
+		return getFBasis().get(pj);
+	}
+
+	/**
+	 * Return the content hash index over the basis, building it if needed.
+	 * 
+	 * @return MonadIndex
+	 */
+	protected MonadIndex getMonadIndex()
+	{
+		if (monadIndex == null)
+		{
+			ArrayList<MonadComplexF> tBasis = getFBasis();
+			int[] tHashes = new int[tBasis.size()];
+			for (int k = 0; k < tHashes.length; k++)
+				tHashes[k] = contentHash(tBasis.get(k));
+			monadIndex = new MonadIndex(tHashes);
+		}
+		return monadIndex;
 	}
 
 	/**
@@ -267,7 +577,27 @@ public class FrameComplexF extends FrameAbstract
 	public MonadComplexF getNameBasis(String pName)
 	{
 		int tSpot = FrameAbstract.findName(this, pName);
-		return fBasis.get(tSpot);
+		return getFBasis().get(tSpot);
+	}
+
+	/**
+	 * Return the product table for this frame, building it if needed.
+	 * 
+	 * @return FrameTableComplex or null if the directions do not span the
+	 *         algebra
+	 */
+	protected FrameTableComplex getTable()
+	{
+		if (table == null && getBasisMatrix() != null)
+		{
+			long tStart = FrameMetrics.start();
+			BasisMatrixComplexF tMatrix = getBasisMatrix();
+			double[][] tParts = tMatrix.toDouble();
+			table = FrameTableComplex.build(ProductIndex.of(getAlgebra()), 
+							tParts[0], tParts[1], tMatrix.getDirectionCount());
+			FrameMetrics.stop(FrameMetrics.Operation.TABLE_BUILD, tStart, this);
+		}
+		return table;
 	}
 
 	/**
@@ -276,17 +606,36 @@ public class FrameComplexF extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadComplexF
-	 * @return MonadComplexF
+	 * @return MonadComplexF or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadComplexF multiplyLeft(short pReferenceIndex, MonadComplexF pM)
+	protected MonadComplexF multiplyLeft(short pReferenceIndex, MonadComplexF pM) throws CladosFrameException
 	{
-		return null;
+		FrameTableComplex tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		int tB = tTable.blades;
+		double[] tInRe = new double[tB];
+		double[] tInIm = new double[tB];
+		double[] tOutRe = new double[tB];
+		double[] tOutIm = new double[tB];
+		readCoefficients(pM, tInRe, tInIm, 0);
+		tTable.multiplyLeft(pReferenceIndex, tInRe, tInIm, tOutRe, tOutIm);
+		
+		MonadComplexF tProd = new MonadComplexF(pM);
+		writeCoefficients(tOutRe, tOutIm, 0, tProd);
+		return tProd;
 	}
 
 	/**
@@ -295,24 +644,87 @@ public class FrameComplexF extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadComplexF
-	 * @return MonadComplexF
+	 * @return MonadComplexF or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadComplexF multiplyRight(short pReferenceIndex, MonadRealF pM)
+	protected MonadComplexF multiplyRight(short pReferenceIndex, MonadComplexF pM) throws CladosFrameException
 	{
-		return null;
+		FrameTableComplex tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		int tB = tTable.blades;
+		double[] tInRe = new double[tB];
+		double[] tInIm = new double[tB];
+		double[] tOutRe = new double[tB];
+		double[] tOutIm = new double[tB];
+		readCoefficients(pM, tInRe, tInIm, 0);
+		tTable.multiplyRight(pReferenceIndex, tInRe, tInIm, tOutRe, tOutIm);
+		
+		MonadComplexF tProd = new MonadComplexF(pM);
+		writeCoefficients(tOutRe, tOutIm, 0, tProd);
+		return tProd;
 	}
 	
-	//@Override
-	//protected void orthogonalizeOn(MonadAbstract pM)
-	//{
+	/**
+	 * Make the directions of this frame orthogonal to pM and to each other with
+	 * modified Gram-Schmidt. If pM is one of the basis monads it is taken first
+	 * and left alone. Otherwise pM leads and every direction is made
+	 * orthogonal to it as well. Either way pM itself is never changed.
+	 * <p>
+	 * The scalar product is bilinear over the complex numbers. Directions are
+	 * not normalized, since the metric need not be positive. Their
+	 * coefficients are rewritten in place through reused scratch rows, so no
+	 * monads are created. The basis matrix is rewritten alongside them rather
+	 * than dropped and rebuilt.
+	 * 
+	 * @param pM
+	 *            MonadComplexF the direction to orthogonalize on
+	 */
+	public void orthogonalizeOn(MonadComplexF pM)
+	{
+		BasisMatrixComplexF tMatrix = getBasisMatrix();
+		ArrayList<MonadComplexF> tBasis = getFBasis();
+		int tB = tMatrix.getBladeCount();
+		int tN = tMatrix.getDirectionCount();
+		int tAnchor = findMonad(this, pM);
+		int tRows = (tAnchor < 0) ? tN + 1 : tN;
+		if (orthoScratch == null || orthoScratch[0].length < tRows * tB)
+			orthoScratch = new double[2][tRows * tB];
+		double[] tRe = orthoScratch[0];
+		double[] tIm = orthoScratch[1];
 
-	//}
+		float[] tMatRe = tMatrix.getReal();
+		float[] tMatIm = tMatrix.getImg();
+		for (int k = 0; k < tN * tB; k++)
+		{
+			tRe[k] = tMatRe[k];
+			tIm[k] = tMatIm[k];
+		}
+		if (tAnchor < 0)
+		{
+			readCoefficients(pM, tRe, tIm, tN * tB);
+			tAnchor = tN;
+		}
+		FrameMath.orthogonalize(ProductIndex.of(getAlgebra()), tRe, tIm, tRows, tAnchor, ORTHO_TOLERANCE);
+		for (int i = 0; i < tN; i++)
+			if (i != tAnchor)
+			{
+				writeCoefficients(tRe, tIm, i * tB, tBasis.get(i));
+				tMatrix.setRow(i, tRe, tIm, i * tB);
+			}
+		contentChanged();
+	}
 
 	/**
 	 * Remove a Monad on the list of monads in this nyad.
@@ -324,20 +736,9 @@ public class FrameComplexF extends FrameAbstract
 	 */
 	protected void removeNamedMonad(int pthisone) throws CladosFrameException
 	{
-		MonadComplexF test = null;
-		try
-		{
-			test = fBasis.remove(pthisone);
-		}
-		catch (IndexOutOfBoundsException e)
-		{
+		if (!tryRemoveNamedMonad(pthisone))
 			throw new CladosFrameException(this, "Specific Monad removal at ["
 							+ pthisone + "] didn't work.");
-		}
-		finally
-		{
-			if (test != null) fBasis.trimToSize();
-		}
 	}
 
 	/**
@@ -350,14 +751,68 @@ public class FrameComplexF extends FrameAbstract
 	 */
 	protected void removeRefMonad(MonadComplexF pM) throws CladosFrameException
 	{
-		int testfind = findMonad(this, pM);
-		if (testfind >= 0)
-			removeNamedMonad(testfind);
-		else
+		if (!tryRemoveRefMonad(pM))
 			throw new CladosFrameException(this,
 							"Can't find the Monad to remove.");
 	}
 
+	/**
+	 * Remove the monad at an index, reporting failure instead of throwing.
+	 * Loops that prune many directions should use this so a miss costs no
+	 * exception.
+	 * 
+	 * @param pthisone
+	 *            int
+	 * @return boolean false if there is no monad at that index
+	 */
+	protected boolean tryRemoveNamedMonad(int pthisone)
+	{
+		ArrayList<MonadComplexF> tBasis = getFBasis();
+		if (tBasis == null || pthisone < 0 || pthisone >= tBasis.size()) return false;
+		tBasis.remove(pthisone);
+		tBasis.trimToSize();
+		if (nameList != null && pthisone < nameList.size())
+			nameList.remove(pthisone);
+		basisChanged();
+		return true;
+	}
+
+	/**
+	 * Remove a monad matching pM, reporting failure instead of throwing.
+	 * 
+	 * @param pM
+	 *            MonadComplexF
+	 * @return boolean false if no monad in the basis matches
+	 */
+	protected boolean tryRemoveRefMonad(MonadComplexF pM)
+	{
+		int tSpot = findMonad(this, pM);
+		return tSpot >= 0 && tryRemoveNamedMonad(tSpot);
+	}
+
+	/**
+	 * Keep only the directions whose names are in a set and remove the rest
+	 * in one step. A direction goes by its entry in the name list, or by its
+	 * monad's name where the list doesn't reach.
+	 * 
+	 * @param pNames
+	 *            Set of direction names to keep
+	 * @return int number of directions removed
+	 */
+	public int retainNames(Set<String> pNames)
+	{
+		ArrayList<MonadComplexF> tBasis = getFBasis();
+		if (tBasis == null) return 0;
+		boolean[] tDrop = new boolean[tBasis.size()];
+		for (int k = 0; k < tDrop.length; k++)
+		{
+			String tName = (nameList != null && k < nameList.size()) 
+							? nameList.get(k) : tBasis.get(k).getName();
+			tDrop[k] = !pNames.contains(tName);
+		}
+		return removeMarked(tDrop);
+	}
+
 	/**
 	 * Set the Monad List array of this FrameComplexF.
 	 * 
@@ -370,6 +825,7 @@ public class FrameComplexF extends FrameAbstract
 			fBasis = null;
 		else
 			fBasis = pML;
+		basisChanged();
 
 	}
 }
@@ -0,0 +1,95 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameEvent<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameEvent<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event for one expensive frame operation. FrameMetrics
+ * emits it after the operation ends, so the elapsed time is a field rather
+ * than the event's own duration. Stack traces are left out to keep the
+ * event cheap.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+@Name("com.interworldtransport.cladosPhys.FrameOperation")
+@Label("Frame Operation")
+@Category({ "Clados", "Frames" })
+@Description("A product table, transform or reciprocal build, or an XML export or import")
+@StackTrace(false)
+final class FrameEvent extends Event
+{
+	/**
+	 * Commit an event if a recording wants them.
+	 * 
+	 * @param pOp
+	 *            FrameMetrics.Operation
+	 * @param pElapsed
+	 *            long nanoseconds
+	 * @param pF
+	 *            FrameAbstract the operation worked on. May be null.
+	 */
+	static void emit(FrameMetrics.Operation pOp, long pElapsed, FrameAbstract pF)
+	{
+		FrameEvent tEvent = new FrameEvent();
+		if (!tEvent.isEnabled()) return;
+		tEvent.operation = pOp.name();
+		tEvent.elapsed = pElapsed;
+		if (pF != null)
+		{
+			tEvent.frame = pF.getName();
+			tEvent.frameType = pF.getClass().getSimpleName();
+			if (pF.getAlgebra() != null) tEvent.blades = pF.getAlgebra().getGBasis().getBladeCount();
+			if (pF.getNameList() != null) tEvent.directions = pF.getNameList().size();
+		}
+		tEvent.commit();
+	}
+
+	@Label("Operation")
+	String	operation;
+
+	@Label("Elapsed")
+	@Timespan(Timespan.NANOSECONDS)
+	long	elapsed;
+
+	@Label("Frame")
+	String	frame;
+
+	@Label("Frame Type")
+	String	frameType;
+
+	@Label("Blades")
+	int		blades;
+
+	@Label("Directions")
+	int		directions;
+}
@@ -0,0 +1,186 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameKernel<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameKernel<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+/**
+ * The frame kernel holds the inner loops that apply a frame's primitive
+ * tables: matrix-vector products, batch transforms and the weighted dot
+ * products behind projections. One kernel is chosen when the class loads.
+ * <p>
+ * The scalar kernel is always available. A kernel built on the incubating
+ * JDK Vector API is compiled from a separate source tree and picked up
+ * reflectively when it is on the class path and the JVM was started with
+ * --add-modules jdk.incubator.vector. Setting the system property
+ * cladosPhys.kernel to "scalar" keeps the scalar kernel regardless.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+abstract class FrameKernel
+{
+	/**
+	 * Name of the system property that selects the kernel.
+	 */
+	static final String			PROPERTY	= "cladosPhys.kernel";
+
+	/**
+	 * The kernel every frame uses.
+	 */
+	static final FrameKernel	KERNEL		= load();
+
+	/**
+	 * Return the scalar kernel.
+	 *
+	 * @return FrameKernel
+	 */
+	static FrameKernel scalar()
+	{
+		return Scalar.INSTANCE;
+	}
+
+	private static FrameKernel load()
+	{
+		if ("scalar".equalsIgnoreCase(System.getProperty(PROPERTY)))
+			return Scalar.INSTANCE;
+		try
+		{
+			Class<?> tClass = Class.forName("com.interworldtransport.cladosPhys.VectorKernel");
+			FrameKernel tKernel = (FrameKernel) tClass.getDeclaredConstructor().newInstance();
+			// Touch the vector classes now so a missing module shows up here
+			// and not in the middle of a product.
+			double[] tOne = { 1.0d };
+			double[] tOut = new double[1];
+			tKernel.multiply(tOne, 0, 1, tOne, tOut);
+			return tKernel;
+		}
+		catch (ReflectiveOperationException | LinkageError | RuntimeException e)
+		{
+			return Scalar.INSTANCE;
+		}
+	}
+
+	/**
+	 * Short name of the kernel for logs and diagnostics.
+	 *
+	 * @return String
+	 */
+	abstract String getName();
+
+	/**
+	 * Matrix-vector product pOut = pA * pX for a square row-major matrix
+	 * starting at offset pAOff.
+	 *
+	 * @param pA
+	 *            double[] matrix storage
+	 * @param pAOff
+	 *            int offset of the matrix in pA
+	 * @param pN
+	 *            int matrix size
+	 * @param pX
+	 *            double[] input vector
+	 * @param pOut
+	 *            double[] output vector. Must not be pX.
+	 */
+	abstract void multiply(double[] pA, int pAOff, int pN, double[] pX, double[] pOut);
+
+	/**
+	 * Matrix product over a batch of packed vectors with the matrix stored
+	 * column-major.
+	 *
+	 * @param pCols
+	 *            double[] square matrix stored column-major
+	 * @param pN
+	 *            int matrix size
+	 * @param pIn
+	 *            double[] packed input vectors of pN entries each
+	 * @param pInOff
+	 *            int offset of the first input vector
+	 * @param pCount
+	 *            int number of vectors
+	 * @param pOut
+	 *            double[] packed output vectors. Must not overlap pIn.
+	 * @param pOutOff
+	 *            int offset of the first output vector
+	 */
+	abstract void multiplyBatch(double[] pCols, int pN, 
+								double[] pIn, int pInOff, int pCount,
+								double[] pOut, int pOutOff);
+
+	/**
+	 * Weighted dot product sum(pW[k] * pA[pAOff+k] * pB[pBOff+k]).
+	 *
+	 * @param pW
+	 *            double[] weights starting at zero
+	 * @param pA
+	 *            double[] left vector
+	 * @param pAOff
+	 *            int offset of the left vector
+	 * @param pB
+	 *            double[] right vector
+	 * @param pBOff
+	 *            int offset of the right vector
+	 * @param pN
+	 *            int vector length
+	 * @return double
+	 */
+	abstract double dot(double[] pW, double[] pA, int pAOff, double[] pB, int pBOff, int pN);
+
+	/**
+	 * The scalar kernel. It runs the plain loops in FrameMath.
+	 */
+	private static final class Scalar extends FrameKernel
+	{
+		static final Scalar	INSTANCE	= new Scalar();
+
+		@Override
+		String getName()
+		{
+			return "scalar";
+		}
+
+		@Override
+		void multiply(double[] pA, int pAOff, int pN, double[] pX, double[] pOut)
+		{
+			FrameMath.multiply(pA, pAOff, pN, pX, pOut);
+		}
+
+		@Override
+		void multiplyBatch(	double[] pCols, int pN, 
+							double[] pIn, int pInOff, int pCount,
+							double[] pOut, int pOutOff)
+		{
+			FrameMath.multiplyBatch(pCols, pN, pIn, pInOff, pCount, pOut, pOutOff);
+		}
+
+		@Override
+		double dot(double[] pW, double[] pA, int pAOff, double[] pB, int pBOff, int pN)
+		{
+			double tSum = 0.0d;
+			for (int k = 0; k < pN; k++)
+				tSum = Math.fma(pW[k] * pA[pAOff + k], pB[pBOff + k], tSum);
+			return tSum;
+		}
+	}
+}
@@ -0,0 +1,518 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameMath<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameMath<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Dense matrix routines shared by the frames. Matrices are square, stored
+ * row-major in a single primitive array.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class FrameMath
+{
+	/**
+	 * Scratch for the real and imaginary parts of one scalar product, kept per
+	 * thread so row updates running in parallel don't allocate.
+	 */
+	private static final ThreadLocal<double[]>	PAIR	= ThreadLocal.withInitial(() -> new double[2]);
+
+	/**
+	 * Relative pivot size below which a blade matrix counts as singular.
+	 */
+	static final double	PIVOT_TOLERANCE	= 1.0e-12d;
+
+	/**
+	 * Invert a square matrix with Gauss-Jordan elimination and partial
+	 * pivoting. The input is left untouched. A pivot no larger than
+	 * pTolerance times the largest entry of the matrix counts as zero, so a
+	 * nearly singular matrix is reported instead of giving a huge inverse.
+	 *
+	 * @param pA
+	 *            double[] matrix to invert
+	 * @param pN
+	 *            int matrix size
+	 * @param pTolerance
+	 *            double relative size below which a pivot counts as zero
+	 * @return double[] the inverse or null if the matrix is singular
+	 */
+	static double[] invert(double[] pA, int pN, double pTolerance)
+	{
+		double tLargest = 0.0d;
+		for (int k = 0; k < pN * pN; k++)
+			tLargest = Math.max(tLargest, Math.abs(pA[k]));
+		double tSmallest = pTolerance * tLargest;
+		double[] tA = pA.clone();
+		double[] tInv = new double[pN * pN];
+		for (int k = 0; k < pN; k++)
+			tInv[k * pN + k] = 1.0d;
+
+		for (int c = 0; c < pN; c++)
+		{
+			int tPivot = c;
+			double tBest = Math.abs(tA[c * pN + c]);
+			for (int r = c + 1; r < pN; r++)
+				if (Math.abs(tA[r * pN + c]) > tBest)
+				{
+					tBest = Math.abs(tA[r * pN + c]);
+					tPivot = r;
+				}
+			if (tBest <= tSmallest) return null;
+			if (tPivot != c)
+			{
+				swapRows(tA, pN, c, tPivot);
+				swapRows(tInv, pN, c, tPivot);
+			}
+
+			double tScale = 1.0d / tA[c * pN + c];
+			for (int k = 0; k < pN; k++)
+			{
+				tA[c * pN + k] *= tScale;
+				tInv[c * pN + k] *= tScale;
+			}
+			int tC = c;
+			rows(0, pN, pN).forEach(r -> {
+				if (r == tC) return;
+				double tF = tA[r * pN + tC];
+				if (tF == 0.0d) return;
+				for (int k = 0; k < pN; k++)
+				{
+					tA[r * pN + k] = Math.fma(-tF, tA[tC * pN + k], tA[r * pN + k]);
+					tInv[r * pN + k] = Math.fma(-tF, tInv[tC * pN + k], tInv[r * pN + k]);
+				}
+			});
+		}
+		return tInv;
+	}
+
+	/**
+	 * Invert a square complex matrix held as separate real and imaginary parts.
+	 * The matrix A+iB is inverted through its real form [[A,-B],[B,A]], whose
+	 * inverse has the same shape and carries the real and imaginary parts of
+	 * the complex inverse.
+	 *
+	 * @param pRe
+	 *            double[] real part of the matrix
+	 * @param pIm
+	 *            double[] imaginary part of the matrix
+	 * @param pN
+	 *            int matrix size
+	 * @param pTolerance
+	 *            double relative size below which a pivot counts as zero
+	 * @return double[][] real and imaginary parts of the inverse or null if the
+	 *         matrix is singular
+	 */
+	static double[][] invert(double[] pRe, double[] pIm, int pN, double pTolerance)
+	{
+		int tN2 = 2 * pN;
+		double[] tReal = new double[tN2 * tN2];
+		for (int r = 0; r < pN; r++)
+			for (int c = 0; c < pN; c++)
+			{
+				double tRe = pRe[r * pN + c];
+				double tIm = pIm[r * pN + c];
+				tReal[r * tN2 + c] = tRe;
+				tReal[r * tN2 + c + pN] = -tIm;
+				tReal[(r + pN) * tN2 + c] = tIm;
+				tReal[(r + pN) * tN2 + c + pN] = tRe;
+			}
+		double[] tInv = invert(tReal, tN2, pTolerance);
+		if (tInv == null) return null;
+
+		double[][] rInv = new double[2][pN * pN];
+		for (int r = 0; r < pN; r++)
+			for (int c = 0; c < pN; c++)
+			{
+				rInv[0][r * pN + c] = tInv[r * tN2 + c];
+				rInv[1][r * pN + c] = tInv[(r + pN) * tN2 + c];
+			}
+		return rInv;
+	}
+
+	/**
+	 * Border the inverse of a symmetric matrix G with one more row and column.
+	 * The new column is b and the new diagonal entry is c. With u = inv(G) b
+	 * and the Schur complement s = c - b.u, the bordered inverse is
+	 * [[inv(G) + u u / s, -u / s], [-u / s, 1 / s]]. That is a rank-one update
+	 * of the old inverse, so it costs the square of the size instead of the
+	 * cube a fresh inversion would.
+	 *
+	 * @param pInv
+	 *            double[] inverse of the old matrix
+	 * @param pN
+	 *            int old matrix size
+	 * @param pB
+	 *            double[] the new column
+	 * @param pC
+	 *            double the new diagonal entry
+	 * @param pU
+	 *            double[] receives u
+	 * @param pTolerance
+	 *            double relative size below which s counts as zero
+	 * @return double[] the bordered inverse or null if it would be singular
+	 */
+	static double[] border(	double[] pInv, int pN, double[] pB, double pC, 
+							double[] pU, double pTolerance)
+	{
+		multiply(pInv, 0, pN, pB, pU);
+		double tBU = 0.0d;
+		for (int k = 0; k < pN; k++)
+			tBU = Math.fma(pB[k], pU[k], tBU);
+		double tS = pC - tBU;
+		if (Math.abs(tS) <= pTolerance * Math.max(Math.abs(pC), Math.abs(tBU)))
+			return null;
+
+		double tR = 1.0d / tS;
+		int tM = pN + 1;
+		double[] rInv = new double[tM * tM];
+		for (int i = 0; i < pN; i++)
+		{
+			double tW = pU[i] * tR;
+			for (int j = 0; j < pN; j++)
+				rInv[i * tM + j] = Math.fma(tW, pU[j], pInv[i * pN + j]);
+			rInv[i * tM + pN] = -tW;
+			rInv[pN * tM + i] = -tW;
+		}
+		rInv[pN * tM + pN] = tR;
+		return rInv;
+	}
+
+	/**
+	 * Border the inverse of a complex symmetric matrix held as separate real
+	 * and imaginary parts. This is the complex form of the real border, with
+	 * the same products and no conjugation.
+	 *
+	 * @param pInvRe
+	 *            double[] real part of the old inverse
+	 * @param pInvIm
+	 *            double[] imaginary part of the old inverse
+	 * @param pN
+	 *            int old matrix size
+	 * @param pBRe
+	 *            double[] real part of the new column
+	 * @param pBIm
+	 *            double[] imaginary part of the new column
+	 * @param pCRe
+	 *            double real part of the new diagonal entry
+	 * @param pCIm
+	 *            double imaginary part of the new diagonal entry
+	 * @param pURe
+	 *            double[] receives the real part of u
+	 * @param pUIm
+	 *            double[] receives the imaginary part of u
+	 * @param pTolerance
+	 *            double relative size below which s counts as zero
+	 * @return double[][] real and imaginary parts of the bordered inverse or
+	 *         null if it would be singular
+	 */
+	static double[][] border(	double[] pInvRe, double[] pInvIm, int pN,
+								double[] pBRe, double[] pBIm, double pCRe, double pCIm,
+								double[] pURe, double[] pUIm, double pTolerance)
+	{
+		multiply(pInvRe, pInvIm, 0, pN, pBRe, pBIm, pURe, pUIm);
+		double tBURe = 0.0d;
+		double tBUIm = 0.0d;
+		for (int k = 0; k < pN; k++)
+		{
+			tBURe = Math.fma(pBRe[k], pURe[k], Math.fma(-pBIm[k], pUIm[k], tBURe));
+			tBUIm = Math.fma(pBRe[k], pUIm[k], Math.fma(pBIm[k], pURe[k], tBUIm));
+		}
+		double tSRe = pCRe - tBURe;
+		double tSIm = pCIm - tBUIm;
+		double tS2 = tSRe * tSRe + tSIm * tSIm;
+		double tLimit = pTolerance * Math.max(Math.hypot(pCRe, pCIm), Math.hypot(tBURe, tBUIm));
+		if (Math.sqrt(tS2) <= tLimit)
+			return null;
+
+		double tRRe = tSRe / tS2;
+		double tRIm = -tSIm / tS2;
+		int tM = pN + 1;
+		double[][] rInv = new double[2][tM * tM];
+		for (int i = 0; i < pN; i++)
+		{
+			double tWRe = pURe[i] * tRRe - pUIm[i] * tRIm;
+			double tWIm = pURe[i] * tRIm + pUIm[i] * tRRe;
+			for (int j = 0; j < pN; j++)
+			{
+				rInv[0][i * tM + j] = pInvRe[i * pN + j] + tWRe * pURe[j] - tWIm * pUIm[j];
+				rInv[1][i * tM + j] = pInvIm[i * pN + j] + tWRe * pUIm[j] + tWIm * pURe[j];
+			}
+			rInv[0][i * tM + pN] = -tWRe;
+			rInv[1][i * tM + pN] = -tWIm;
+			rInv[0][pN * tM + i] = -tWRe;
+			rInv[1][pN * tM + i] = -tWIm;
+		}
+		rInv[0][pN * tM + pN] = tRRe;
+		rInv[1][pN * tM + pN] = tRIm;
+		return rInv;
+	}
+
+	/**
+	 * Matrix-vector product pOut = pA * pX for a square row-major matrix
+	 * starting at offset pAOff.
+	 *
+	 * @param pA
+	 *            double[] matrix storage
+	 * @param pAOff
+	 *            int offset of the matrix in pA
+	 * @param pN
+	 *            int matrix size
+	 * @param pX
+	 *            double[] input vector
+	 * @param pOut
+	 *            double[] output vector
+	 */
+	static void multiply(double[] pA, int pAOff, int pN, double[] pX, double[] pOut)
+	{
+		for (int r = 0; r < pN; r++)
+		{
+			int tRow = pAOff + r * pN;
+			double tSum = 0.0d;
+			for (int c = 0; c < pN; c++)
+				tSum = Math.fma(pA[tRow + c], pX[c], tSum);
+			pOut[r] = tSum;
+		}
+	}
+
+	/**
+	 * Matrix product over a batch of packed vectors. The matrix is stored
+	 * column-major, so every vector is accumulated as a run of scaled columns
+	 * and the inner loop walks the matrix and the output with unit stride.
+	 * That is the shape the JIT turns into vector instructions.
+	 *
+	 * @param pCols
+	 *            double[] square matrix stored column-major
+	 * @param pN
+	 *            int matrix size
+	 * @param pIn
+	 *            double[] packed input vectors of pN entries each
+	 * @param pInOff
+	 *            int offset of the first input vector
+	 * @param pCount
+	 *            int number of vectors
+	 * @param pOut
+	 *            double[] packed output vectors. Must not overlap pIn.
+	 * @param pOutOff
+	 *            int offset of the first output vector
+	 */
+	static void multiplyBatch(	double[] pCols, int pN, 
+								double[] pIn, int pInOff, int pCount,
+								double[] pOut, int pOutOff)
+	{
+		for (int v = 0; v < pCount; v++)
+		{
+			int tIn = pInOff + v * pN;
+			int tOut = pOutOff + v * pN;
+			Arrays.fill(pOut, tOut, tOut + pN, 0.0d);
+			for (int c = 0; c < pN; c++)
+			{
+				double tX = pIn[tIn + c];
+				if (tX == 0.0d) continue;
+				int tCol = c * pN;
+				for (int r = 0; r < pN; r++)
+					pOut[tOut + r] = Math.fma(tX, pCols[tCol + r], pOut[tOut + r]);
+			}
+		}
+	}
+
+	/**
+	 * Complex matrix-vector product for a square row-major matrix held as
+	 * separate real and imaginary parts starting at offset pAOff.
+	 *
+	 * @param pARe
+	 *            double[] real part of the matrix storage
+	 * @param pAIm
+	 *            double[] imaginary part of the matrix storage
+	 * @param pAOff
+	 *            int offset of the matrix
+	 * @param pN
+	 *            int matrix size
+	 * @param pXRe
+	 *            double[] real part of the input vector
+	 * @param pXIm
+	 *            double[] imaginary part of the input vector
+	 * @param pOutRe
+	 *            double[] real part of the output vector
+	 * @param pOutIm
+	 *            double[] imaginary part of the output vector
+	 */
+	static void multiply(	double[] pARe, double[] pAIm, int pAOff, int pN,
+							double[] pXRe, double[] pXIm,
+							double[] pOutRe, double[] pOutIm)
+	{
+		for (int r = 0; r < pN; r++)
+		{
+			int tRow = pAOff + r * pN;
+			double tRe = 0.0d;
+			double tIm = 0.0d;
+			for (int c = 0; c < pN; c++)
+			{
+				double tAR = pARe[tRow + c];
+				double tAI = pAIm[tRow + c];
+				tRe = Math.fma(tAR, pXRe[c], Math.fma(-tAI, pXIm[c], tRe));
+				tIm = Math.fma(tAR, pXIm[c], Math.fma(tAI, pXRe[c], tIm));
+			}
+			pOutRe[r] = tRe;
+			pOutIm[r] = tIm;
+		}
+	}
+
+	/**
+	 * Modified Gram-Schmidt over packed rows. The anchor row is taken first and
+	 * left untouched. The remaining rows follow in order, and as each one is
+	 * settled its projection is removed from every row still to come. Rows
+	 * are not normalized, since the metric need not be positive. A row whose
+	 * square is negligible next to its size is a null direction and is not
+	 * projected out.
+	 *
+	 * @param pIndex
+	 *            ProductIndex supplying the metric
+	 * @param pRows
+	 *            double[] packed rows, edited in place
+	 * @param pCount
+	 *            int number of rows
+	 * @param pAnchor
+	 *            int row taken first
+	 * @param pTolerance
+	 *            double relative size below which a square counts as zero
+	 */
+	static void orthogonalize(	ProductIndex pIndex, double[] pRows, int pCount,
+								int pAnchor, double pTolerance)
+	{
+		int tB = pIndex.blades;
+		for (int s = 0; s < pCount; s++)
+		{
+			int tU = rowInOrder(s, pAnchor) * tB;
+			double tUU = pIndex.scalarProduct(pRows, tU, pRows, tU);
+			if (Math.abs(tUU) <= pTolerance * sizeOf(pRows, tU, tB)) continue;
+
+			rows(s + 1, pCount, tB).forEach(t -> {
+				int tV = rowInOrder(t, pAnchor) * tB;
+				double tC = pIndex.scalarProduct(pRows, tV, pRows, tU) / tUU;
+				if (tC == 0.0d) return;
+				for (int k = 0; k < tB; k++)
+					pRows[tV + k] = Math.fma(-tC, pRows[tU + k], pRows[tV + k]);
+			});
+		}
+	}
+
+	/**
+	 * Modified Gram-Schmidt over packed complex rows. This matches the real
+	 * version except the projection weights are complex. The scalar product
+	 * is bilinear, so nothing is conjugated.
+	 *
+	 * @param pIndex
+	 *            ProductIndex supplying the metric
+	 * @param pRe
+	 *            double[] real parts of the packed rows, edited in place
+	 * @param pIm
+	 *            double[] imaginary parts of the packed rows, edited in place
+	 * @param pCount
+	 *            int number of rows
+	 * @param pAnchor
+	 *            int row taken first
+	 * @param pTolerance
+	 *            double relative size below which a square counts as zero
+	 */
+	static void orthogonalize(	ProductIndex pIndex, double[] pRe, double[] pIm,
+								int pCount, int pAnchor, double pTolerance)
+	{
+		int tB = pIndex.blades;
+		double[] tUU = new double[2];
+		for (int s = 0; s < pCount; s++)
+		{
+			int tU = rowInOrder(s, pAnchor) * tB;
+			pIndex.scalarProduct(pRe, pIm, tU, pRe, pIm, tU, tUU);
+			double tMod = tUU[0] * tUU[0] + tUU[1] * tUU[1];
+			double tSize = sizeOf(pRe, tU, tB) + sizeOf(pIm, tU, tB);
+			if (Math.sqrt(tMod) <= pTolerance * tSize) continue;
+
+			double tUR = tUU[0];
+			double tUI = tUU[1];
+			rows(s + 1, pCount, tB).forEach(t -> {
+				int tV = rowInOrder(t, pAnchor) * tB;
+				double[] tVU = PAIR.get();
+				pIndex.scalarProduct(pRe, pIm, tV, pRe, pIm, tU, tVU);
+				double tCR = (tVU[0] * tUR + tVU[1] * tUI) / tMod;
+				double tCI = (tVU[1] * tUR - tVU[0] * tUI) / tMod;
+				if (tCR == 0.0d && tCI == 0.0d) return;
+				for (int k = 0; k < tB; k++)
+				{
+					double tR = pRe[tU + k];
+					double tI = pIm[tU + k];
+					pRe[tV + k] = Math.fma(-tCR, tR, Math.fma(tCI, tI, pRe[tV + k]));
+					pIm[tV + k] = Math.fma(-tCR, tI, Math.fma(-tCI, tR, pIm[tV + k]));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Position of the row handled at step pStep when the anchor row goes first
+	 * and the others keep their order.
+	 */
+	private static int rowInOrder(int pStep, int pAnchor)
+	{
+		if (pStep == 0) return pAnchor;
+		return (pStep - 1 < pAnchor) ? pStep - 1 : pStep;
+	}
+
+	/**
+	 * Stream of independent row indices. It runs in parallel when the rows
+	 * hold as much work, counted as rows times row length, as a square blade
+	 * matrix at the frames' parallel threshold. A handful of long rows stays
+	 * sequential, since each would be too small a task to be worth forking.
+	 */
+	static IntStream rows(int pFrom, int pTo, int pLength)
+	{
+		IntStream tRows = IntStream.range(pFrom, pTo);
+		return FrameAbstract.runsParallel(pTo - pFrom, pLength) ? tRows.parallel() : tRows;
+	}
+
+	/**
+	 * Sum of squares of a row, used as its size when judging whether its
+	 * metric square is negligible.
+	 */
+	private static double sizeOf(double[] pRows, int pOff, int pLength)
+	{
+		double tSum = 0.0d;
+		for (int k = 0; k < pLength; k++)
+			tSum = Math.fma(pRows[pOff + k], pRows[pOff + k], tSum);
+		return tSum;
+	}
+
+	private static void swapRows(double[] pA, int pN, int pR1, int pR2)
+	{
+		for (int k = 0; k < pN; k++)
+		{
+			double tSwap = pA[pR1 * pN + k];
+			pA[pR1 * pN + k] = pA[pR2 * pN + k];
+			pA[pR2 * pN + k] = tSwap;
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameMetrics<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameMetrics<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the frame operations worth watching
+ * in production: lookups, equality tests, table and transform builds,
+ * reciprocals and the XML and binary forms. The expensive operations also
+ * emit a FrameEvent to JDK Flight Recorder when a recording asks for it.
+ * <p>
+ * Metrics are off unless the cladosPhys.metrics system property is true or
+ * setEnabled turns them on. While off, an instrumented operation pays one
+ * volatile read. While on, it pays two nanoTime calls and a few LongAdder
+ * increments, which stay cheap under contention.
+ * <p>
+ * Each histogram has 65 buckets. Bucket 0 counts calls that took no
+ * measurable time and bucket k counts calls that took from 2^(k-1) up to
+ * 2^k nanoseconds.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameMetrics
+{
+	/**
+	 * The operations that are measured. Traced ones also go to Flight
+	 * Recorder.
+	 */
+	public enum Operation
+	{
+		FIND_NAME(false), FIND_MONAD(false), EQUALITY(false), 
+		TABLE_BUILD(true), TRANSFORM_BUILD(true), RECIPROCAL(true), 
+		XML_WRITE(true), XML_READ(true), BINARY_WRITE(false), BINARY_READ(false);
+
+		private final boolean traced;
+
+		private Operation(boolean pTraced)
+		{
+			traced = pTraced;
+		}
+
+		/**
+		 * Report whether this operation emits Flight Recorder events.
+		 * 
+		 * @return boolean
+		 */
+		public boolean isTraced()
+		{
+			return traced;
+		}
+	}
+
+	/**
+	 * Number of histogram buckets per operation.
+	 */
+	public static final int				BUCKETS	= 65;
+
+	/**
+	 * Start time handed out while metrics are off.
+	 */
+	static final long					OFF		= Long.MIN_VALUE;
+
+	private static final LongAdder[]	counts	= adders(Operation.values().length);
+
+	private static volatile boolean		enabled	= Boolean.getBoolean("cladosPhys.metrics");
+
+	private static final LongAdder[][]	histograms;
+
+	private static final LongAdder[]	nanos	= adders(Operation.values().length);
+
+	static
+	{
+		histograms = new LongAdder[Operation.values().length][];
+		for (int k = 0; k < histograms.length; k++)
+			histograms[k] = adders(BUCKETS);
+	}
+
+	/**
+	 * Return the number of calls recorded for an operation.
+	 * 
+	 * @param pOp
+	 *            Operation
+	 * @return long
+	 */
+	public static long getCount(Operation pOp)
+	{
+		return counts[pOp.ordinal()].sum();
+	}
+
+	/**
+	 * Return the latency histogram of an operation.
+	 * 
+	 * @param pOp
+	 *            Operation
+	 * @return long[] BUCKETS counts
+	 */
+	public static long[] getHistogram(Operation pOp)
+	{
+		LongAdder[] tBuckets = histograms[pOp.ordinal()];
+		long[] rOut = new long[BUCKETS];
+		for (int k = 0; k < BUCKETS; k++)
+			rOut[k] = tBuckets[k].sum();
+		return rOut;
+	}
+
+	/**
+	 * Return an upper bound on a latency percentile of an operation, read
+	 * from its histogram. The bound is within a factor of two.
+	 * 
+	 * @param pOp
+	 *            Operation
+	 * @param pPercent
+	 *            double between 0 and 100
+	 * @return long nanoseconds, or 0 if nothing is recorded
+	 */
+	public static long getPercentile(Operation pOp, double pPercent)
+	{
+		long[] tBuckets = getHistogram(pOp);
+		long tTotal = 0;
+		for (long tCount : tBuckets)
+			tTotal += tCount;
+		long tRank = (long) Math.ceil(tTotal * pPercent / 100.0d);
+		long tSeen = 0;
+		for (int k = 0; k < BUCKETS; k++)
+		{
+			tSeen += tBuckets[k];
+			if (tSeen >= tRank && tSeen > 0) 
+				return (k == 0) ? 0 : (k == 64) ? Long.MAX_VALUE : 1L << k;
+		}
+		return 0;
+	}
+
+	/**
+	 * Return the total time recorded for an operation.
+	 * 
+	 * @param pOp
+	 *            Operation
+	 * @return long nanoseconds
+	 */
+	public static long getTotalNanos(Operation pOp)
+	{
+		return nanos[pOp.ordinal()].sum();
+	}
+
+	/**
+	 * Report whether metrics are being recorded.
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Clear every counter and histogram.
+	 */
+	public static void reset()
+	{
+		for (int k = 0; k < counts.length; k++)
+		{
+			counts[k].reset();
+			nanos[k].reset();
+			for (LongAdder tBucket : histograms[k])
+				tBucket.reset();
+		}
+	}
+
+	/**
+	 * Turn metrics on or off. Calls already under way when metrics are turned
+	 * off are still recorded.
+	 * 
+	 * @param pEnabled
+	 *            boolean
+	 */
+	public static void setEnabled(boolean pEnabled)
+	{
+		enabled = pEnabled;
+	}
+
+	/**
+	 * Mark the start of an operation.
+	 * 
+	 * @return long start time to hand to stop, or OFF
+	 */
+	static long start()
+	{
+		return enabled ? System.nanoTime() : OFF;
+	}
+
+	/**
+	 * Record an operation that began at pStart.
+	 * 
+	 * @param pOp
+	 *            Operation
+	 * @param pStart
+	 *            long from start
+	 * @param pF
+	 *            FrameAbstract the operation worked on. May be null.
+	 */
+	static void stop(Operation pOp, long pStart, FrameAbstract pF)
+	{
+		if (pStart == OFF) return;
+		long tElapsed = Math.max(0L, System.nanoTime() - pStart);
+		int tOp = pOp.ordinal();
+		counts[tOp].increment();
+		nanos[tOp].add(tElapsed);
+		histograms[tOp][64 - Long.numberOfLeadingZeros(tElapsed)].increment();
+		if (pOp.traced) FrameEvent.emit(pOp, tElapsed, pF);
+	}
+
+	private static LongAdder[] adders(int pCount)
+	{
+		LongAdder[] rOut = new LongAdder[pCount];
+		for (int k = 0; k < pCount; k++)
+			rOut[k] = new LongAdder();
+		return rOut;
+	}
+
+	private FrameMetrics()
+	{
+	}
+}
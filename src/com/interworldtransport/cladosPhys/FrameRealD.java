@@ -24,7 +24,14 @@
  */
 package com.interworldtransport.cladosPhys;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+import com.interworldtransport.cladosF.RealD;
 import com.interworldtransport.cladosG.*;
 import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
 
@@ -37,6 +44,28 @@ import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
  */
 public class FrameRealD extends FrameAbstract 
 {
+	/**
+	 * Relative size below which a direction's square is treated as zero while
+	 * orthogonalizing. Such a direction is null and nothing is projected on it.
+	 */
+	private static final double	ORTHO_TOLERANCE	= 1.0e-12d;
+
+	/**
+	 * Return a hash of the algebra and coefficients of a monad. Monads that
+	 * pass isGEqual with each other always share this hash.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @return int
+	 */
+	static int contentHash(MonadRealD pM)
+	{
+		int tHash = System.identityHashCode(pM.getAlgebra());
+		for (RealD tC : pM.getCoeff())
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getReal());
+		return tHash;
+	}
+
 	/**
 	 * Return an integer pointing to the part of the nyad that covers the
 	 * algebra named in the parameter. Coverage is true if a monad can be found
@@ -50,9 +79,29 @@ public class FrameRealD extends FrameAbstract
 	 */
 	public static int findMonad(FrameRealD pRF, MonadRealD pMonad)
 	{
-		ArrayList<MonadRealD> testFBasis=pRF.getFBasis();
-		for (MonadRealD pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return pRF.fBasis.indexOf(pM);
+		long tStart = FrameMetrics.start();
+		int rSpot = searchBasis(pRF, pMonad);
+		FrameMetrics.stop(FrameMetrics.Operation.FIND_MONAD, tStart, pRF);
+		return rSpot;
+	}
+
+	/**
+	 * The search behind findMonad.
+	 */
+	private static int searchBasis(FrameRealD pRF, MonadRealD pMonad)
+	{
+		FrameRealD tRF = pRF.view();
+		ArrayList<MonadRealD> testFBasis=tRF.getFBasis();
+		if (tRF.isMonadIndexing())
+		{
+			MonadIndex tIndex = tRF.getMonadIndex();
+			int tHash = contentHash(pMonad);
+			for (int k = tIndex.first(tHash); k >= 0; k = tIndex.next(k, tHash))
+				if (testFBasis.get(k).isGEqual(pMonad)) return k;
+			return -1;
+		}
+		for (int k = 0; k < testFBasis.size(); k++)
+			if (testFBasis.get(k).isGEqual(pMonad)) return k;
 		return -1;
 	}
 
@@ -69,14 +118,25 @@ public class FrameRealD extends FrameAbstract
 	 */
 	public static boolean hasMonad(FrameRealD pRF, MonadRealD pMonad)
 	{
-		ArrayList<MonadRealD> testFBasis=pRF.getFBasis();
-		for (MonadRealD pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return true;
-		return false;
+		return findMonad(pRF, pMonad) >= 0;
 	}
 
 	public static boolean isREqual(FrameRealD pRF1, FrameRealD pRF2)
 	{
+		long tStart = FrameMetrics.start();
+		boolean rSame = compareFrames(pRF1, pRF2);
+		FrameMetrics.stop(FrameMetrics.Operation.EQUALITY, tStart, pRF1);
+		return rSame;
+	}
+
+	/**
+	 * The comparison behind isREqual.
+	 */
+	private static boolean compareFrames(FrameRealD pRF1, FrameRealD pRF2)
+	{
+		if (pRF1 == pRF2) return true;
+		pRF1 = pRF1.view();
+		pRF2 = pRF2.view();
 
 		// Check to see if the Algebras match
 		if (pRF1.getAlgebra() != pRF2.getAlgebra()) return false;
@@ -85,25 +145,22 @@ public class FrameRealD extends FrameAbstract
 		// if they are not.
 		if (pRF1.getFrameOrder() != pRF2.getFrameOrder()) return false;
 
-		// Now check the monad lists.
-		boolean check = false;
+		// Equal frames always share a fingerprint, so a mismatch settles it
+		// without looking at any monads.
+		if (pRF1.getFingerprint() != pRF2.getFingerprint()) return false;
+		if (pRF1.getFBasis().size() != pRF2.getFBasis().size()) return false;
+
+		// Now check the monad lists, pairing them up by name.
+		HashMap<String, MonadRealD> tByName = new HashMap<String, MonadRealD>(
+						pRF2.getFBasis().size() * 4 / 3 + 1);
+		for (MonadRealD tSpot2 : pRF2.getFBasis())
+			tByName.putIfAbsent(tSpot2.getName(), tSpot2);
 		for (MonadRealD tSpot : pRF1.getFBasis())
 		{
-			check = false;
-			String tName1 = tSpot.getName();
-			for (MonadRealD tSpot2 : pRF2.getFBasis())
-			{
-				if (tName1.equals(tSpot2.getName()))
-				{
-					check = true;
-					if (!tSpot.isGEqual(tSpot2)) return false;
-					break;
-				}
-			}
-			// if check is true a match was found (by monad name)
-			// if check is false, we have a dangling monad (by monad name),
+			MonadRealD tSpot2 = tByName.get(tSpot.getName());
+			// if there is no match we have a dangling monad (by monad name),
 			// so they can't be equal.
-			if (!check) return false;
+			if (tSpot2 == null || !tSpot.isGEqual(tSpot2)) return false;
 		}
 		// To get this far, all Monads in one list must pass the equality
 		// test for their counterparts (by name) in the other list.
@@ -111,25 +168,61 @@ public class FrameRealD extends FrameAbstract
 	}
 
 	/**
-	 * Display XML string that represents the Frame
+	 * Copy the coefficients of a monad into a primitive array.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @param pOut
+	 *            double[] receives one entry per blade
+	 * @param pOff
+	 *            int position in pOut of the first blade
+	 * @return double[] pOut
+	 */
+	static double[] readCoefficients(MonadRealD pM, double[] pOut, int pOff)
+	{
+		RealD[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+			pOut[pOff + k] = tC[k].getReal();
+		return pOut;
+	}
+
+	/**
+	 * Copy primitive coefficients into the existing coefficients of a monad.
+	 * 
+	 * @param pIn
+	 *            double[] holds one entry per blade
+	 * @param pOff
+	 *            int position in pIn of the first blade
+	 * @param pM
+	 *            MonadRealD
+	 */
+	static void writeCoefficients(double[] pIn, int pOff, MonadRealD pM)
+	{
+		RealD[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+			tC[k].setReal(pIn[pOff + k]);
+	}
+
+	/**
+	 * Display XML string that represents the Frame. FrameXMLWriter streams the
+	 * same XML to a Writer without building the whole string.
+	 * 
 	 * @param pM
 	 * 		FrameRealD This is the Frame to be converted to XML.
 	 * @return String
 	 */
 	public static String toXMLString(FrameRealD pM)
 	{
-		StringBuffer rB = new StringBuffer("<Frame name=\"" + pM.getName()
-						+ "\" ");
-		rB.append("algebra=\"" + pM.getAlgebra().getAlgebraName() + "\" ");
-		rB.append(">\n");
-		
-		rB.append(AlgebraRealD.toXMLString((AlgebraRealD)pM.getAlgebra()));
-
-		for (int i=0; i==pM.getFBasis().size(); i++)
+		StringWriter rB = new StringWriter();
+		try
 		{
-			rB.append(MonadRealD.toXMLString(pM.getFBasis(i)));
+			new FrameXMLWriter(rB).write(pM);
+		}
+		catch (IOException e)
+		{
+			// A StringWriter never throws.
+			throw new UncheckedIOException(e);
 		}
-		rB.append("</Frame>\n");
 		return rB.toString();
 	}
 	
@@ -154,11 +247,58 @@ public class FrameRealD extends FrameAbstract
 	protected ArrayList<MonadRealD>	fBasis;
 	
 	/**
-	 * The reciprocal frame can be referenced from here if it is known. There is
-	 * no plan to construct one automatically from this frame.
+	 * The inverse of the Gram matrix of scalar products between directions.
+	 * It is kept by computeReciprocal so an appended direction can border it
+	 * instead of inverting a new Gram matrix.
+	 */
+	private double[]				gramInverse;
+
+	/**
+	 * The basis packed into one primitive matrix. Kernels read this instead of
+	 * the monads. It is built from the monads on first use and dropped
+	 * whenever the basis changes. A frame built from a matrix starts with
+	 * this and no monads at all.
+	 */
+	private BasisMatrixD				matrix;
+
+	/**
+	 * The content hash index over the basis monads. It is only built when
+	 * monad indexing is turned on and is dropped whenever the basis changes.
+	 */
+	private MonadIndex				monadIndex;
+
+	/**
+	 * Scratch rows reused by orthogonalizeOn so repeated calls don't allocate.
+	 */
+	private double[]				orthoScratch;
+
+	/**
+	 * The reciprocal directions packed a row per direction. They are filled in
+	 * by computeReciprocal, extended when a direction is appended and dropped
+	 * whenever the basis changes otherwise.
+	 */
+	private double[]				recipBasis;
+
+	/**
+	 * The product table of this frame expressed in frame coordinates. It is
+	 * built on first use and dropped whenever the basis changes.
+	 */
+	private FrameTable				table;
+
+	/**
+	 * The change of basis between default and frame coordinates. It is built
+	 * on first use and dropped whenever the basis changes.
 	 */
-	protected FrameRealD			reciprocal;
+	private FrameTransform			transform;
 	
+	/**
+	 * Constructor for descendants that keep their state somewhere else.
+	 * Nothing is set.
+	 */
+	protected FrameRealD()
+	{
+	}
+
 	/**
 	 * Frame constructor with an empty basis list.
 	 * 
@@ -195,48 +335,548 @@ public class FrameRealD extends FrameAbstract
 	}
 
 	/**
-	 * Add another Monad to the list of monads in this frame. This method does
-	 * not create a new copy of the Monad offered as a parameter. The Frame DOES
-	 * wind up referencing the passed Monad..
+	 * Frame Constructor around a basis matrix. The monads for the directions
+	 * are not made until something asks for them, and they take their names
+	 * from the name list.
+	 * 
+	 * @param pName
+	 *            String
+	 * @param pAlg
+	 *            AlgebraRealD
+	 * @param pMatrix
+	 *            BasisMatrixD a row per direction
+	 * @param pNames
+	 *            ArrayList of direction names. May be null.
+	 */
+	public FrameRealD(String pName, AlgebraRealD pAlg, BasisMatrixD pMatrix, ArrayList<String> pNames)
+	{
+		setName(pName);
+		setAlgebra(pAlg);
+		setNameList(pNames);
+		matrix = pMatrix;
+	}
+
+	@Override
+	FrameRealD view()
+	{
+		return this;
+	}
+
+	/**
+	 * Copy constructor for ConcurrentFrameRealD. Everything derived from the
+	 * basis comes along, so the copy doesn't build it again. The caches that
+	 * are replaced rather than edited are shared. With pShare the basis
+	 * monads, name list and matrix are shared too, which is only safe when
+	 * neither frame edits them. Otherwise they are copied.
+	 * 
+	 * @param pFrame
+	 *            FrameRealD to copy
+	 * @param pShare
+	 *            boolean share the basis instead of copying it
+	 */
+	FrameRealD(FrameRealD pFrame, boolean pShare)
+	{
+		setName(pFrame.getName());
+		setAlgebra(pFrame.getAlgebra());
+		monadIndexing = pFrame.monadIndexing;
+		if (pShare)
+		{
+			fBasis = pFrame.fBasis;
+			nameList = pFrame.nameList;
+			matrix = pFrame.matrix;
+		}
+		else
+		{
+			if (pFrame.fBasis != null)
+			{
+				fBasis = new ArrayList<MonadRealD>(pFrame.fBasis.size());
+				for (MonadRealD tM : pFrame.fBasis)
+					fBasis.add(new MonadRealD(tM));
+			}
+			if (pFrame.nameList != null) 
+				nameList = new ArrayList<String>(pFrame.nameList);
+			if (pFrame.matrix != null) 
+				matrix = pFrame.matrix.copy();
+		}
+		carryCaches(pFrame);
+		gramInverse = pFrame.gramInverse;
+		monadIndex = pFrame.monadIndex;
+		recipBasis = pFrame.recipBasis;
+		table = pFrame.table;
+		transform = pFrame.transform;
+		setReciprocal(pFrame.getReciprocal());
+	}
+
+	/**
+	 * Append copies of several monads in one step. Every monad is checked as
+	 * appendNamedMonad checks it before any is added. The basis grows once
+	 * and what was derived from it is extended once for the whole batch. The
+	 * copies take this frame's name as their frame name, and their names are
+	 * added to the name list when the frame has one.
+	 * 
+	 * @param pML
+	 *            ArrayList of MonadRealD to append
+	 * @throws CladosFrameException
+	 * 	A monad has a different algebra or another frame, or the frame would
+	 * 	hold more directions than the algebra has generators. Nothing is
+	 * 	appended.
+	 */
+	public void appendAll(ArrayList<MonadRealD> pML) throws CladosFrameException
+	{
+		ArrayList<MonadRealD> tBasis = getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		if (tN + pML.size() + 1 > getAlgebra().getGProduct().getGradeCount())
+			throw new CladosFrameException(this, 
+							"Frame can't hold " + pML.size() + " more directions.");
+		for (MonadRealD tM : pML)
+			checkMember(tM);
+		if (pML.isEmpty()) return;
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadRealD>(pML.size());
+		tBasis.ensureCapacity(tN + pML.size());
+		if (nameList != null) nameList.ensureCapacity(nameList.size() + pML.size());
+		int tPrint = 0;
+		for (MonadRealD tM : pML)
+		{
+			MonadRealD tCopy = new MonadRealD(tM);
+			tCopy.setFrameName(getName());
+			tBasis.add(tCopy);
+			if (nameList != null) nameList.add(tM.getName());
+			tPrint += 31 * tCopy.getName().hashCode() + contentHash(tCopy);
+		}
+		fBasis = tBasis;
+		basisAppended(pML.size(), tPrint);
+	}
+
+	/**
+	 * Append a copy of a monad to the end of the basis. The copy takes this
+	 * frame's name as its frame name, as the monads a matrix-backed frame
+	 * makes do. Its name is added to the name list when the frame has one.
+	 * <p>
+	 * There are a few things to check before the offered Monad is appended,
+	 * and none of them costs more for a larger frame.
+	 * 1)	Is it sharing the same algebra as the frame? No? Reject.
+	 * 2)	Is it arriving with a frame other than the default or this one? Yes? Reject.
+	 * 3)	Is the fBasis already full? Yes? Reject.
+	 * <p>
+	 * What was derived from the basis is extended rather than rebuilt. The
+	 * basis matrix gains a row, the name and monad indexes gain an entry and
+	 * the fingerprint gains the new monad's share. A known reciprocal is
+	 * bordered with the new direction. The inverse Gram matrix grows by a row
+	 * and column through a rank-one update and the reciprocal directions follow
+	 * it, so no Gram matrix is built or inverted again. The product table and
+	 * transform need directions that span the algebra, and a frame with room
+	 * for another direction doesn't, so neither has anything to extend.
 	 * 
 	 * @param pM
-	 *            MonadRealD this is the referenced monad for the Frame.
-	 * @throws CladosFrameException 
-	 * 	Monads in a Frame must satisfy ReferenceMatch
+	 *            MonadRealD to append
+	 * @throws CladosFrameException
+	 * 	The monad has a different algebra or another frame, or the frame
+	 * 	already holds as many directions as the algebra has generators.
 	 */
-	/*
 	public void appendNamedMonad(MonadRealD pM) throws CladosFrameException
 	{
-		// This method works if the foot of pM matches the foot of this frame
-		// and the algebra of pM matches the one for this frame.
+		checkMember(pM);
+		ArrayList<MonadRealD> tBasis = getFBasis();
+		if (tBasis != null && isFilled(this))
+			throw new CladosFrameException(this, "Frame generator basis is already filled");
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadRealD>();
+		MonadRealD tCopy = new MonadRealD(pM);
+		tCopy.setFrameName(getName());
+		tBasis.add(tCopy);
+		if (nameList != null) nameList.add(pM.getName());
+		fBasis = tBasis;
+		basisAppended(1, 31 * tCopy.getName().hashCode() + contentHash(tCopy));
+	}
+
+	/**
+	 * Reject a monad that can't join this frame because it has a different
+	 * algebra or is expressed in some frame other than the default or this one.
+	 */
+	private void checkMember(MonadRealD pM) throws CladosFrameException
+	{
+		if (pM.getAlgebra() != getAlgebra())
+			throw new CladosFrameException(this, "Monads in a Frame must have algebras match");
+		if (pM.getFrameName() != null && !pM.getFrameName().equals(getName()))
+			throw new CladosFrameException(this, "Monads in a Frame must use default frame for themselves");
+	}
+
+	@Override
+	protected int basisFingerprint()
+	{
+		int tHash = 0;
+		if (getFBasis() != null)
+			for (MonadRealD tM : getFBasis())
+				tHash += 31 * tM.getName().hashCode() + contentHash(tM);
+		return tHash;
+	}
+
+	@Override
+	protected void basisAppended(int pCount, int pPrint)
+	{
+		super.basisAppended(pCount, pPrint);
+		int tFrom = fBasis.size() - pCount;
+		if (monadIndex != null)
+		{
+			int[] tHashes = new int[pCount];
+			for (int k = 0; k < pCount; k++)
+				tHashes[k] = contentHash(fBasis.get(tFrom + k));
+			monadIndex = monadIndex.append(tHashes);
+		}
+		setReciprocal(null);
+		table = null;
+		transform = null;
+		if (matrix == null) return;
+
+		matrix = matrix.append(fBasis, tFrom);
+		if (recipBasis == null) return;
+		double[] tBasis = matrix.readData();
+		for (int n = tFrom; n < fBasis.size() && recipBasis != null; n++)
+			extendReciprocal(tBasis, n);
+	}
+
+	@Override
+	protected void basisChanged()
+	{
+		super.basisChanged();
+		matrix = null;
+	}
+
+	@Override
+	protected void contentChanged()
+	{
+		super.contentChanged();
+		gramInverse = null;
+		monadIndex = null;
+		recipBasis = null;
+		setReciprocal(null);
+		table = null;
+		transform = null;
+	}
+
+	/**
+	 * Tell the frame the coefficients of its basis were edited in place.
+	 * Everything computed from them is dropped. A matrix over a buffer is
+	 * where the coefficients live, as when someone else writes the memory
+	 * under it, so it is kept and basis monads already made are brought up
+	 * to date from it. Otherwise the monads from getFBasis are where edits
+	 * land, so the matrix is dropped and packed again from them on its next
+	 * use. A matrix-only frame keeps its matrix, so edits made through its
+	 * getData array stand.
+	 */
+	@Override
+	public void coefficientsChanged()
+	{
+		super.coefficientsChanged();
+		BasisMatrixD tMatrix = matrix;
+		ArrayList<MonadRealD> tBasis = fBasis;
+		if (tMatrix == null) return;
+
+		if (tMatrix.getBuffer() == null)
+		{
+			if (tBasis != null) matrix = null;
+			return;
+		}
+		tMatrix.bufferChanged();
+		if (tBasis == null) return;
+
+		double[] tRow = new double[tMatrix.getBladeCount()];
+		for (int i = 0; i < tBasis.size(); i++)
+			writeCoefficients(tMatrix.getRow(i, tRow), 0, tBasis.get(i));
+	}
+
+	/**
+	 * Construct the reciprocal of this frame and remember it. Reciprocal
+	 * direction i is the one whose product with direction j has a scalar part
+	 * of one when i and j match and zero when they don't.
+	 * <p>
+	 * The Gram matrix of scalar products between directions is built and
+	 * inverted once. Each reciprocal direction is then a sum over this frame's
+	 * directions weighted by a row of that inverse. The result is kept through
+	 * setReciprocal and handed back on later calls until the basis changes.
+	 * 
+	 * @return FrameRealD
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	public FrameRealD computeReciprocal() throws CladosFrameException
+	{
+		if (recipBasis != null)
+		{
+			if (getReciprocal() == null) 
+				setReciprocal(reciprocalFrame());
+			return (FrameRealD) getReciprocal();
+		}
+
+		long tStart = FrameMetrics.start();
+		try
+		{
+			ProductIndex tIndex = ProductIndex.of(getAlgebra());
+			BasisMatrixD tMatrix = getBasisMatrix();
+			int tB = tIndex.blades;
+			int tN = tMatrix.getDirectionCount();
+			double[] tBasis = tMatrix.readData();
+
+			double[] tGram = new double[tN * tN];
+			for (int i = 0; i < tN; i++)
+				for (int j = i; j < tN; j++)
+				{
+					double tG = tIndex.scalarProduct(tBasis, i * tB, tBasis, j * tB);
+					tGram[i * tN + j] = tG;
+					tGram[j * tN + i] = tG;
+				}
+			double[] tInverse = FrameMath.invert(tGram, tN, ORTHO_TOLERANCE);
+			if (tInverse == null)
+				throw new CladosFrameException(this, 
+						"Frame directions are degenerate so there is no reciprocal.");
+
+			double[] tRecip = new double[tN * tB];
+			for (int i = 0; i < tN; i++)
+				for (int j = 0; j < tN; j++)
+				{
+					double tW = tInverse[i * tN + j];
+					if (tW == 0.0d) continue;
+					for (int k = 0; k < tB; k++)
+						tRecip[i * tB + k] = Math.fma(tW, tBasis[j * tB + k], tRecip[i * tB + k]);
+				}
+			gramInverse = tInverse;
+			recipBasis = tRecip;
+
+			FrameRealD tFrame = reciprocalFrame();
+			setReciprocal(tFrame);
+			return tFrame;
+		}
+		finally
+		{
+			FrameMetrics.stop(FrameMetrics.Operation.RECIPROCAL, tStart, this);
+		}
+	}
+
+	/**
+	 * Border the cached Gram inverse and reciprocal directions of the first
+	 * pN rows of pBasis with row pN. The new reciprocal
+	 * direction is the part of the new direction the old ones don't reach,
+	 * scaled by one over the Schur complement, and each old reciprocal
+	 * direction gives up its share of it. Both caches are dropped when the
+	 * new direction is degenerate with the old ones.
+	 */
+	private void extendReciprocal(double[] pBasis, int pN)
+	{
+		ProductIndex tIndex = ProductIndex.of(getAlgebra());
+		int tB = tIndex.blades;
+		int tLast = pN * tB;
+
+		double[] tCol = new double[pN];
+		for (int j = 0; j < pN; j++)
+			tCol[j] = tIndex.scalarProduct(pBasis, j * tB, pBasis, tLast);
+		double[] tU = new double[pN];
+		double[] tInverse = FrameMath.border(gramInverse, pN, tCol, 
+						tIndex.scalarProduct(pBasis, tLast, pBasis, tLast), tU, ORTHO_TOLERANCE);
+		if (tInverse == null)
+		{
+			gramInverse = null;
+			recipBasis = null;
+			return;
+		}
+
+		double tR = tInverse[pN * (pN + 1) + pN];
+		double[] tRecip = Arrays.copyOf(recipBasis, (pN + 1) * tB);
+		for (int k = 0; k < tB; k++)
+		{
+			double tSum = pBasis[tLast + k];
+			for (int j = 0; j < pN; j++)
+				tSum = Math.fma(-tU[j], pBasis[j * tB + k], tSum);
+			tRecip[tLast + k] = tSum * tR;
+		}
+		for (int i = 0; i < pN; i++)
+			for (int k = 0; k < tB; k++)
+				tRecip[i * tB + k] = Math.fma(-tU[i], tRecip[tLast + k], tRecip[i * tB + k]);
+		gramInverse = tInverse;
+		recipBasis = tRecip;
+	}
+
+	/**
+	 * Re-express a batch of packed frame coordinate vectors in default
+	 * coordinates. Vector v occupies one entry per blade starting at
+	 * v * blades. The whole batch is one pass over the cached transform, so
+	 * there is no per-monad overhead.
+	 * 
+	 * @param pIn
+	 *            double[] packed frame coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed default coordinates. May be
+	 *            null. Must not be pIn.
+	 * @return double[] the default coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] fromFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = batchTransform(pIn, pCount, pOut);
+		double[] rOut = (pOut == null) ? new double[pCount * tTransform.blades] : pOut;
+		tTransform.toDefault(pIn, 0, pCount, rOut, 0);
+		return rOut;
+	}
 
-		// A check should be made to ensure pM is OK to append.
-		// The footPoint objects must match.
-		if (!pM.getAlgebra().equals(getAlgebra()))
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. The monad is named after this frame.
+	 * 
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealD in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealD fromFrameCoordinates(double[] pCoeffs) throws CladosFrameException
+	{
+		return fromFrameCoordinates(getName(), pCoeffs);
+	}
+
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. The transform is cached by the frame, so this is one
+	 * matrix-vector product.
+	 * 
+	 * @param pName
+	 *            String name of the new monad
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealD in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealD fromFrameCoordinates(String pName, double[] pCoeffs) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
 			throw new CladosFrameException(this,
-							"Monads in a Frame should have algebras match");
+							"Frame directions do not span the algebra.");
+		if (pCoeffs.length != tTransform.blades)
+			throw new CladosFrameException(this,
+							"Frame coordinates need one entry per blade.");
+		
+		double[] tOut = new double[tTransform.blades];
+		tTransform.toDefault(pCoeffs, tOut);
+		
+		AlgebraRealD tAlg = (AlgebraRealD) getAlgebra();
+		RealD[] tC = new RealD[tOut.length];
+		for (int k = 0; k < tOut.length; k++)
+		{
+			tC[k] = new RealD(tAlg.getProtoNumber());
+			tC[k].setReal(tOut[k]);
+		}
+		return new MonadRealD(pName, tAlg, null, tC);
+	}
 
-		// Add Monad to the ArrayList
-		fBasis.ensureCapacity(fBasis.size() + 1);
+	/**
+	 * Check the arrays handed to a batch transform and return the transform.
+	 * 
+	 * @param pIn
+	 *            double[] packed input
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] packed output. May be null.
+	 * @return FrameTransform
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	private FrameTransform batchTransform(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		int tSize = pCount * tTransform.blades;
+		if (pCount < 0 || pIn.length < tSize || (pOut != null && pOut.length < tSize))
+			throw new CladosFrameException(this,
+							"Batch arrays need one entry per blade per vector.");
+		if (pOut == pIn)
+			throw new CladosFrameException(this,
+							"Batch output must not be the input array.");
+		return tTransform;
+	}
+
+	/**
+	 * Return the basis packed as a primitive matrix, building it from the
+	 * monads if needed. A basis monad edited in place should be handed back
+	 * through setFBasis so the matrix sees its new coefficients.
+	 * 
+	 * @return BasisMatrixD or null if there is no basis
+	 */
+	public BasisMatrixD getBasisMatrix()
+	{
+		if (matrix == null && fBasis != null)
+			matrix = BasisMatrixD.of(fBasis, getAlgebra().getGBasis().getBladeCount());
+		return matrix;
+	}
 
-		//pM.setFrameName(this.name); 	//Seems like a circular reference to me.
-		//pM.frame = this;				//Circular reference? Frame monads should be in default basis
-				
-		pM.setFrameName(null);
-		pM.frame = null;
-		fBasis.add(new MonadRealD(pM));
+	/**
+	 * Return the components of a monad along each direction of this frame.
+	 * Component i is the scalar part of pM times reciprocal direction i, so
+	 * once the reciprocal is known each component costs one dot product.
+	 * 
+	 * @param pM
+	 *            MonadRealD in the default basis
+	 * @param pOut
+	 *            double[] receives one component per direction. May be null.
+	 * @return double[] the components
+	 * @throws CladosFrameException
+	 * 	The directions are degenerate, so there is no reciprocal.
+	 */
+	public double[] getComponents(MonadRealD pM, double[] pOut) throws CladosFrameException
+	{
+		return getComponents(ProductIndex.of(getAlgebra()), pM, pOut);
+	}
+
+	/**
+	 * Return the components of a monad using a product index the caller
+	 * already holds.
+	 */
+	double[] getComponents(ProductIndex pIndex, MonadRealD pM, double[] pOut) throws CladosFrameException
+	{
+		if (recipBasis == null) computeReciprocal();
+		int tB = pIndex.blades;
+		int tN = recipBasis.length / tB;
+		double[] tX = readCoefficients(pM, new double[tB], 0);
+		double[] rOut = (pOut == null) ? new double[tN] : pOut;
+		for (int i = 0; i < tN; i++)
+			rOut[i] = pIndex.scalarProduct(tX, 0, recipBasis, i * tB);
+		return rOut;
 	}
-*/
+
 	/**
 	 * Return the array of Monads used as the frame's basis. 
 	 * This basically just hands the whole thing over for another object to mangle.
 	 * DANGER
+	 * <p>
+	 * The frame does not see coefficients edited in place through these
+	 * monads. Call coefficientsChanged after such edits, or the fingerprint
+	 * and everything else computed from the old coefficients stay in use.
 	 * 
 	 * @return ArrayList (of Monads)
 	 */
 	@Override
 	public ArrayList<MonadRealD> getFBasis()
 	{
+		if (fBasis == null && matrix != null)
+		{
+			int tN = matrix.getDirectionCount();
+			ArrayList<MonadRealD> tList = new ArrayList<MonadRealD>(tN);
+			for (int i = 0; i < tN; i++)
+			{
+				String tName = (nameList != null && i < nameList.size()) 
+								? nameList.get(i) : getName() + i;
+				tList.add(matrix.toMonad(i, tName, (AlgebraRealD) getAlgebra(), getName()));
+			}
+			fBasis = tList;
+		}
 		return fBasis;
 	}
 
@@ -251,7 +891,25 @@ public class FrameRealD extends FrameAbstract
 	 */
 	public MonadRealD getFBasis(int pj)
 	{
-		return fBasis.get(pj);
+		return getFBasis().get(pj);
+	}
+
+	/**
+	 * Return the content hash index over the basis, building it if needed.
+	 * 
+	 * @return MonadIndex
+	 */
+	protected MonadIndex getMonadIndex()
+	{
+		if (monadIndex == null)
+		{
+			ArrayList<MonadRealD> tBasis = getFBasis();
+			int[] tHashes = new int[tBasis.size()];
+			for (int k = 0; k < tHashes.length; k++)
+				tHashes[k] = contentHash(tBasis.get(k));
+			monadIndex = new MonadIndex(tHashes);
+		}
+		return monadIndex;
 	}
 
 	/**
@@ -267,7 +925,44 @@ public class FrameRealD extends FrameAbstract
 	public MonadRealD getNameBasis(String pName)
 	{
 		int tSpot = FrameAbstract.findName(this, pName);
-		return fBasis.get(tSpot);
+		return getFBasis().get(tSpot);
+	}
+
+	/**
+	 * Return the product table for this frame, building it if needed. The
+	 * basis is packed into one row per direction before the build.
+	 * 
+	 * @return FrameTable or null if the directions do not span the algebra
+	 */
+	protected FrameTable getTable()
+	{
+		if (table == null && getTransform() != null)
+		{
+			long tStart = FrameMetrics.start();
+			table = FrameTable.build(ProductIndex.of(getAlgebra()), getTransform(), 
+							getBasisMatrix().readData());
+			FrameMetrics.stop(FrameMetrics.Operation.TABLE_BUILD, tStart, this);
+		}
+		return table;
+	}
+
+	/**
+	 * Return the change of basis for this frame, building it if needed.
+	 * 
+	 * @return FrameTransform or null if the directions do not span the
+	 *         algebra
+	 */
+	protected FrameTransform getTransform()
+	{
+		if (transform == null && getBasisMatrix() != null)
+		{
+			long tStart = FrameMetrics.start();
+			BasisMatrixD tMatrix = getBasisMatrix();
+			transform = FrameTransform.build(ProductIndex.of(getAlgebra()), 
+							tMatrix.readData(), tMatrix.getDirectionCount());
+			FrameMetrics.stop(FrameMetrics.Operation.TRANSFORM_BUILD, tStart, this);
+		}
+		return transform;
 	}
 
 	/**
@@ -276,17 +971,32 @@ public class FrameRealD extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadRealD
-	 * @return MonadRealD
+	 * @return MonadRealD or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadRealD multiplyLeft(short pReferenceIndex, MonadRealD pM)
+	protected MonadRealD multiplyLeft(short pReferenceIndex, MonadRealD pM) throws CladosFrameException
 	{
-		return null;
+		FrameTable tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		double[] tIn = readCoefficients(pM, new double[tTable.blades], 0);
+		double[] tOut = new double[tTable.blades];
+		tTable.multiplyLeft(pReferenceIndex, tIn, tOut);
+		
+		MonadRealD tProd = new MonadRealD(pM);
+		writeCoefficients(tOut, 0, tProd);
+		return tProd;
 	}
 
 	/**
@@ -295,24 +1005,102 @@ public class FrameRealD extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadRealD
-	 * @return MonadRealD
+	 * @return MonadRealD or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadRealD multiplyRight(short pReferenceIndex, MonadRealF pM)
+	protected MonadRealD multiplyRight(short pReferenceIndex, MonadRealD pM) throws CladosFrameException
 	{
-		return null;
+		FrameTable tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		double[] tIn = readCoefficients(pM, new double[tTable.blades], 0);
+		double[] tOut = new double[tTable.blades];
+		tTable.multiplyRight(pReferenceIndex, tIn, tOut);
+		
+		MonadRealD tProd = new MonadRealD(pM);
+		writeCoefficients(tOut, 0, tProd);
+		return tProd;
 	}
 	
-	//@Override
-	//protected void orthogonalizeOn(MonadAbstract pM)
-	//{
+	/**
+	 * Make the directions of this frame orthogonal to pM and to each other with
+	 * modified Gram-Schmidt. If pM is one of the basis monads it is taken first
+	 * and left alone. Otherwise pM leads and every direction is made
+	 * orthogonal to it as well. Either way pM itself is never changed.
+	 * <p>
+	 * Directions are not normalized, since the metric need not be positive.
+	 * Their coefficients are rewritten in place through a reused scratch
+	 * buffer, so no monads are created. The basis matrix is rewritten
+	 * alongside them rather than dropped and rebuilt, unless it sits over a
+	 * read-only buffer.
+	 * 
+	 * @param pM
+	 *            MonadRealD the direction to orthogonalize on
+	 */
+	public void orthogonalizeOn(MonadRealD pM)
+	{
+		BasisMatrixD tMatrix = getBasisMatrix();
+		ArrayList<MonadRealD> tBasis = getFBasis();
+		int tB = tMatrix.getBladeCount();
+		int tN = tMatrix.getDirectionCount();
+		int tAnchor = findMonad(this, pM);
+		int tRows = (tAnchor < 0) ? tN + 1 : tN;
+		if (orthoScratch == null || orthoScratch.length < tRows * tB)
+			orthoScratch = new double[tRows * tB];
 
-	//}
+		System.arraycopy(tMatrix.readData(), 0, orthoScratch, 0, tN * tB);
+		if (tAnchor < 0)
+		{
+			readCoefficients(pM, orthoScratch, tN * tB);
+			tAnchor = tN;
+		}
+		FrameMath.orthogonalize(ProductIndex.of(getAlgebra()), orthoScratch, tRows, tAnchor, ORTHO_TOLERANCE);
+		boolean tFixed = tMatrix.getBuffer() != null && tMatrix.getBuffer().isReadOnly();
+		for (int i = 0; i < tN; i++)
+			if (i != tAnchor)
+			{
+				writeCoefficients(orthoScratch, i * tB, tBasis.get(i));
+				if (!tFixed) tMatrix.setRow(i, orthoScratch, i * tB);
+			}
+		if (tFixed)
+			basisChanged();
+		else
+			contentChanged();
+	}
+
+	/**
+	 * Build the reciprocal frame from the cached reciprocal directions. Each
+	 * reciprocal monad starts as a copy of the matching basis monad, so it
+	 * keeps that monad's name and algebra.
+	 */
+	private FrameRealD reciprocalFrame()
+	{
+		int tB = getAlgebra().getGBasis().getBladeCount();
+		int tN = recipBasis.length / tB;
+		ArrayList<MonadRealD> tList = new ArrayList<MonadRealD>(tN);
+		for (int i = 0; i < tN; i++)
+		{
+			MonadRealD tM = new MonadRealD(getFBasis().get(i));
+			writeCoefficients(recipBasis, i * tB, tM);
+			tList.add(tM);
+		}
+		FrameRealD rFrame = new FrameRealD(getName() + "Reciprocal", 
+						(AlgebraRealD) getAlgebra(), tList);
+		if (nameList != null) 
+			rFrame.setNameList(new ArrayList<String>(nameList));
+		return rFrame;
+	}
 
 	/**
 	 * Remove a Monad on the list of monads in this nyad.
@@ -324,20 +1112,9 @@ public class FrameRealD extends FrameAbstract
 	 */
 	protected void removeNamedMonad(int pthisone) throws CladosFrameException
 	{
-		MonadRealD test = null;
-		try
-		{
-			test = fBasis.remove(pthisone);
-		}
-		catch (IndexOutOfBoundsException e)
-		{
+		if (!tryRemoveNamedMonad(pthisone))
 			throw new CladosFrameException(this, "Specific Monad removal at ["
 							+ pthisone + "] didn't work.");
-		}
-		finally
-		{
-			if (test != null) fBasis.trimToSize();
-		}
 	}
 
 	/**
@@ -350,14 +1127,68 @@ public class FrameRealD extends FrameAbstract
 	 */
 	protected void removeRefMonad(MonadRealD pM) throws CladosFrameException
 	{
-		int testfind = findMonad(this, pM);
-		if (testfind >= 0)
-			removeNamedMonad(testfind);
-		else
+		if (!tryRemoveRefMonad(pM))
 			throw new CladosFrameException(this,
 							"Can't find the Monad to remove.");
 	}
 
+	/**
+	 * Remove the monad at an index, reporting failure instead of throwing.
+	 * Loops that prune many directions should use this so a miss costs no
+	 * exception.
+	 * 
+	 * @param pthisone
+	 *            int
+	 * @return boolean false if there is no monad at that index
+	 */
+	protected boolean tryRemoveNamedMonad(int pthisone)
+	{
+		ArrayList<MonadRealD> tBasis = getFBasis();
+		if (tBasis == null || pthisone < 0 || pthisone >= tBasis.size()) return false;
+		tBasis.remove(pthisone);
+		tBasis.trimToSize();
+		if (nameList != null && pthisone < nameList.size())
+			nameList.remove(pthisone);
+		basisChanged();
+		return true;
+	}
+
+	/**
+	 * Remove a monad matching pM, reporting failure instead of throwing.
+	 * 
+	 * @param pM
+	 *            MonadRealD
+	 * @return boolean false if no monad in the basis matches
+	 */
+	protected boolean tryRemoveRefMonad(MonadRealD pM)
+	{
+		int tSpot = findMonad(this, pM);
+		return tSpot >= 0 && tryRemoveNamedMonad(tSpot);
+	}
+
+	/**
+	 * Keep only the directions whose names are in a set and remove the rest
+	 * in one step. A direction goes by its entry in the name list, or by its
+	 * monad's name where the list doesn't reach.
+	 * 
+	 * @param pNames
+	 *            Set of direction names to keep
+	 * @return int number of directions removed
+	 */
+	public int retainNames(Set<String> pNames)
+	{
+		ArrayList<MonadRealD> tBasis = getFBasis();
+		if (tBasis == null) return 0;
+		boolean[] tDrop = new boolean[tBasis.size()];
+		for (int k = 0; k < tDrop.length; k++)
+		{
+			String tName = (nameList != null && k < nameList.size()) 
+							? nameList.get(k) : tBasis.get(k).getName();
+			tDrop[k] = !pNames.contains(tName);
+		}
+		return removeMarked(tDrop);
+	}
+
 	/**
 	 * Set the Monad List array of this FrameRealD.
 	 * 
@@ -370,6 +1201,59 @@ public class FrameRealD extends FrameAbstract
 			fBasis = null;
 		else
 			fBasis = pML;
+		basisChanged();
+
+	}
 
+	/**
+	 * Return the coefficients of a default basis monad in frame coordinates.
+	 * The transform is cached by the frame, so this is one matrix-vector
+	 * product.
+	 * 
+	 * @param pM
+	 *            MonadRealD in the default basis
+	 * @return double[] one frame coordinate per blade
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pM uses another algebra.
+	 */
+	public double[] toFrameCoordinates(MonadRealD pM) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		if (pM.getAlgebra() != getAlgebra())
+			throw new CladosFrameException(this,
+							"Monads in a Frame should have algebras match");
+		
+		double[] tIn = readCoefficients(pM, new double[tTransform.blades], 0);
+		double[] rOut = new double[tTransform.blades];
+		tTransform.toFrame(tIn, rOut);
+		return rOut;
+	}
+
+	/**
+	 * Re-express a batch of packed default coordinate vectors in frame
+	 * coordinates. Vector v occupies one entry per blade starting at
+	 * v * blades. The whole batch is one pass over the cached transform, so
+	 * there is no per-monad overhead.
+	 * 
+	 * @param pIn
+	 *            double[] packed default coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed frame coordinates. May be null.
+	 *            Must not be pIn.
+	 * @return double[] the frame coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] toFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = batchTransform(pIn, pCount, pOut);
+		double[] rOut = (pOut == null) ? new double[pCount * tTransform.blades] : pOut;
+		tTransform.toFrame(pIn, 0, pCount, rOut, 0);
+		return rOut;
 	}
 }
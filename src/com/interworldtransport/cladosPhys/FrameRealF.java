@@ -24,8 +24,14 @@
  */
 package com.interworldtransport.cladosPhys;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
-import com.interworldtransport.cladosG.AlgebraAbstract;
+import java.util.HashMap;
+import java.util.Set;
+import com.interworldtransport.cladosF.RealF;
+import com.interworldtransport.cladosG.*;
 
 import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
 
@@ -38,6 +44,28 @@ import com.interworldtransport.cladosPhysExceptions.CladosFrameException;
  */
 public class FrameRealF extends FrameAbstract
 {
+	/**
+	 * Relative size below which a direction's square is treated as zero while
+	 * orthogonalizing. Such a direction is null and nothing is projected on it.
+	 */
+	private static final double	ORTHO_TOLERANCE	= 1.0e-6d;
+
+	/**
+	 * Return a hash of the algebra and coefficients of a monad. Monads that
+	 * pass isGEqual with each other always share this hash.
+	 * 
+	 * @param pM
+	 *            MonadRealF
+	 * @return int
+	 */
+	static int contentHash(MonadRealF pM)
+	{
+		int tHash = System.identityHashCode(pM.getAlgebra());
+		for (RealF tC : pM.getCoeff())
+			tHash = 31 * tHash + MonadIndex.quantize(tC.getReal());
+		return tHash;
+	}
+
 	/**
 	 * Return an integer pointing to the part of the nyad that covers the
 	 * algebra named in the parameter. Coverage is true if a monad can be found
@@ -50,10 +78,29 @@ public class FrameRealF extends FrameAbstract
 	 * @return int
 	 */
 	public static short findMonad(FrameRealF pRF, MonadRealF pMonad)
+	{
+		long tStart = FrameMetrics.start();
+		short rSpot = searchBasis(pRF, pMonad);
+		FrameMetrics.stop(FrameMetrics.Operation.FIND_MONAD, tStart, pRF);
+		return rSpot;
+	}
+
+	/**
+	 * The search behind findMonad.
+	 */
+	private static short searchBasis(FrameRealF pRF, MonadRealF pMonad)
 	{
 		ArrayList<MonadRealF> testFBasis=pRF.getFBasis();
-		for (MonadRealF pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return (short) pRF.fBasis.indexOf(pM);
+		if (pRF.isMonadIndexing())
+		{
+			MonadIndex tIndex = pRF.getMonadIndex();
+			int tHash = contentHash(pMonad);
+			for (int k = tIndex.first(tHash); k >= 0; k = tIndex.next(k, tHash))
+				if (testFBasis.get(k).isGEqual(pMonad)) return (short) k;
+			return -1;
+		}
+		for (int k = 0; k < testFBasis.size(); k++)
+			if (testFBasis.get(k).isGEqual(pMonad)) return (short) k;
 		return -1;
 	}
 
@@ -70,14 +117,23 @@ public class FrameRealF extends FrameAbstract
 	 */
 	public static boolean hasMonad(FrameRealF pRF, MonadRealF pMonad)
 	{
-		ArrayList<MonadRealF> testFBasis=pRF.getFBasis();
-		for (MonadRealF pM : testFBasis)
-			if (pM.isGEqual(pMonad)) return true;
-		return false;
+		return findMonad(pRF, pMonad) >= 0;
 	}
 
 	public static boolean isREqual(FrameRealF pRF1, FrameRealF pRF2)
 	{
+		long tStart = FrameMetrics.start();
+		boolean rSame = compareFrames(pRF1, pRF2);
+		FrameMetrics.stop(FrameMetrics.Operation.EQUALITY, tStart, pRF1);
+		return rSame;
+	}
+
+	/**
+	 * The comparison behind isREqual.
+	 */
+	private static boolean compareFrames(FrameRealF pRF1, FrameRealF pRF2)
+	{
+		if (pRF1 == pRF2) return true;
 
 		// Check to see if the Algebras match
 		if (pRF1.getAlgebra() != pRF2.getAlgebra()) return false;
@@ -86,25 +142,22 @@ public class FrameRealF extends FrameAbstract
 		// if they are not.
 		if (pRF1.getFrameOrder() != pRF2.getFrameOrder()) return false;
 
-		// Now check the monad lists.
-		boolean check = false;
+		// Equal frames always share a fingerprint, so a mismatch settles it
+		// without looking at any monads.
+		if (pRF1.getFingerprint() != pRF2.getFingerprint()) return false;
+		if (pRF1.getFBasis().size() != pRF2.getFBasis().size()) return false;
+
+		// Now check the monad lists, pairing them up by name.
+		HashMap<String, MonadRealF> tByName = new HashMap<String, MonadRealF>(
+						pRF2.getFBasis().size() * 4 / 3 + 1);
+		for (MonadRealF tSpot2 : pRF2.getFBasis())
+			tByName.putIfAbsent(tSpot2.getName(), tSpot2);
 		for (MonadRealF tSpot : pRF1.getFBasis())
 		{
-			check = false;
-			String tName1 = tSpot.getName();
-			for (MonadRealF tSpot2 : pRF2.getFBasis())
-			{
-				if (tName1.equals(tSpot2.getName()))
-				{
-					check = true;
-					if (!tSpot.isGEqual(tSpot2)) return false;
-					break;
-				}
-			}
-			// if check is true a match was found (by monad name)
-			// if check is false, we have a dangling monad (by monad name),
+			MonadRealF tSpot2 = tByName.get(tSpot.getName());
+			// if there is no match we have a dangling monad (by monad name),
 			// so they can't be equal.
-			if (!check) return false;
+			if (tSpot2 == null || !tSpot.isGEqual(tSpot2)) return false;
 		}
 		// To get this far, all Monads in one list must pass the equality
 		// test for their counterparts (by name) in the other list.
@@ -112,26 +165,61 @@ public class FrameRealF extends FrameAbstract
 	}
 	
 	/**
-	 * Display XML string that represents the Frame
+	 * Copy the coefficients of a monad into a primitive array.
+	 * 
+	 * @param pM
+	 *            MonadRealF
+	 * @param pOut
+	 *            double[] receives one entry per blade
+	 * @param pOff
+	 *            int position in pOut of the first blade
+	 * @return double[] pOut
+	 */
+	static double[] readCoefficients(MonadRealF pM, double[] pOut, int pOff)
+	{
+		RealF[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+			pOut[pOff + k] = tC[k].getReal();
+		return pOut;
+	}
+
+	/**
+	 * Copy primitive coefficients into the existing coefficients of a monad.
+	 * 
+	 * @param pIn
+	 *            double[] holds one entry per blade
+	 * @param pOff
+	 *            int position in pIn of the first blade
+	 * @param pM
+	 *            MonadRealF
+	 */
+	static void writeCoefficients(double[] pIn, int pOff, MonadRealF pM)
+	{
+		RealF[] tC = pM.getCoeff();
+		for (int k = 0; k < tC.length; k++)
+			tC[k].setReal((float) pIn[pOff + k]);
+	}
+
+	/**
+	 * Display XML string that represents the Frame. FrameXMLWriter streams the
+	 * same XML to a Writer without building the whole string.
+	 * 
 	 * @param pM
 	 * 		FrameRealF This is the Frame to be converted to XML.
 	 * @return String
 	 */
 	public static String toXMLString(FrameRealF pM)
 	{
-		StringBuffer rB = new StringBuffer("<Frame name=\"" + pM.getName()
-						+ "\" ");
-		rB.append("algebra=\"" + pM.getAlgebra().getAlgebraName() + "\" ");
-		rB.append("frame size=\"" + pM.getFBasis().size()+ "\" ");
-		rB.append(">\n");
-
-		rB.append(AlgebraRealF.toXMLString((AlgebraRealF)pM.getAlgebra()));
-		//rB.append("\n");
-		
-		for (short i=0; i<pM.getFBasis().size(); i++)
-			rB.append(MonadRealF.toXMLString(pM.getFBasis(i)));
-		
-		rB.append("</Frame>\n");
+		StringWriter rB = new StringWriter();
+		try
+		{
+			new FrameXMLWriter(rB).write(pM);
+		}
+		catch (IOException e)
+		{
+			// A StringWriter never throws.
+			throw new UncheckedIOException(e);
+		}
 		return rB.toString();
 	}
 	
@@ -160,6 +248,37 @@ public class FrameRealF extends FrameAbstract
 	 * no plan to construct one automatically from this frame.
 	 */
 	protected FrameRealF			reciprocal;
+
+	/**
+	 * The basis packed into one primitive matrix. Kernels read this instead of
+	 * the monads. It is built from the monads on first use and dropped
+	 * whenever the basis changes. A frame built from a matrix starts with
+	 * this and no monads at all.
+	 */
+	private BasisMatrixF				matrix;
+
+	/**
+	 * The content hash index over the basis monads. It is only built when
+	 * monad indexing is turned on and is dropped whenever the basis changes.
+	 */
+	private MonadIndex				monadIndex;
+
+	/**
+	 * Scratch rows reused by orthogonalizeOn so repeated calls don't allocate.
+	 */
+	private double[]				orthoScratch;
+
+	/**
+	 * The product table of this frame expressed in frame coordinates. It is
+	 * built on first use and dropped whenever the basis changes.
+	 */
+	private FrameTable				table;
+
+	/**
+	 * The change of basis between default and frame coordinates. It is built
+	 * on first use and dropped whenever the basis changes.
+	 */
+	private FrameTransform			transform;
 		
 	/**
 	 * Frame constructor with an empty basis list.
@@ -196,67 +315,325 @@ public class FrameRealF extends FrameAbstract
 		fBasis = new ArrayList<MonadRealF>(pML);
 	}
 
+	/**
+	 * Frame Constructor around a basis matrix. The monads for the directions
+	 * are not made until something asks for them, and they take their names
+	 * from the name list.
+	 * 
+	 * @param pName
+	 *            String
+	 * @param pAlg
+	 *            AlgebraRealF
+	 * @param pMatrix
+	 *            BasisMatrixF a row per direction
+	 * @param pNames
+	 *            ArrayList of direction names. May be null.
+	 */
+	public FrameRealF(String pName, AlgebraRealF pAlg, BasisMatrixF pMatrix, ArrayList<String> pNames)
+	{
+		setName(pName);
+		setAlgebra(pAlg);
+		setNameList(pNames);
+		matrix = pMatrix;
+	}
+
 
 	/**
-	 * Add another Monad to the list of monads in this frame. This method does
-	 * not create a new copy of the Monad offered as a parameter. The Frame DOES
-	 * wind up referencing the passed Monad.
+	 * Append copies of several monads in one step. Every monad is checked as
+	 * appendNamedMonad checks it before any is added. The basis grows once
+	 * and what was derived from it is extended once for the whole batch. The
+	 * copies take this frame's name as their frame name, and their names are
+	 * added to the name list when the frame has one.
 	 * 
-	 * There are a few things to check before a the offered Monad should be
-	 * appended to the Frame.
+	 * @param pML
+	 *            ArrayList of MonadRealF to append
+	 * @throws CladosFrameException
+	 * 	A monad has a different algebra or another frame, or the frame would
+	 * 	hold more directions than the algebra has generators. Nothing is
+	 * 	appended.
+	 */
+	public void appendAll(ArrayList<MonadRealF> pML) throws CladosFrameException
+	{
+		ArrayList<MonadRealF> tBasis = getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		if (tN + pML.size() + 1 > getAlgebra().getGProduct().getGradeCount())
+			throw new CladosFrameException(this, 
+							"Frame can't hold " + pML.size() + " more directions.");
+		for (MonadRealF tM : pML)
+			checkMember(tM);
+		if (pML.isEmpty()) return;
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadRealF>(pML.size());
+		tBasis.ensureCapacity(tN + pML.size());
+		if (nameList != null) nameList.ensureCapacity(nameList.size() + pML.size());
+		int tPrint = 0;
+		for (MonadRealF tM : pML)
+		{
+			MonadRealF tCopy = new MonadRealF(tM);
+			tCopy.setFrameName(getName());
+			tBasis.add(tCopy);
+			if (nameList != null) nameList.add(tM.getName());
+			tPrint += 31 * tCopy.getName().hashCode() + contentHash(tCopy);
+		}
+		fBasis = tBasis;
+		basisAppended(pML.size(), tPrint);
+	}
+
+	/**
+	 * Append a copy of a monad to the end of the basis. The copy takes this
+	 * frame's name as its frame name, as the monads a matrix-backed frame
+	 * makes do. Its name is added to the name list when the frame has one.
+	 * <p>
+	 * There are a few things to check before the offered Monad is appended,
+	 * and none of them costs more for a larger frame.
 	 * 1)	Is it sharing the same algebra as the frame? No? Reject.
-	 * 2)	Is it arriving with its own non-default frame? Yes? Reject.
+	 * 2)	Is it arriving with a frame other than the default or this one? Yes? Reject.
 	 * 3)	Is the fBasis already full? Yes? Reject.
-	 * 
+	 * <p>
+	 * What was derived from the basis is extended rather than rebuilt. The
+	 * basis matrix gains a row, the name and monad indexes gain an entry and
+	 * the fingerprint gains the new monad's share. The product table and
+	 * transform need directions that span the algebra, and a frame with room
+	 * for another direction doesn't, so neither has anything to extend.
 	 * 
 	 * @param pM
-	 *            MonadRealF this is the referenced monad for the Frame.
+	 *            MonadRealF to append
 	 * @throws CladosFrameException
+	 * 	The monad has a different algebra or another frame, or the frame
+	 * 	already holds as many directions as the algebra has generators.
 	 */
-	/*
 	public void appendNamedMonad(MonadRealF pM) throws CladosFrameException
 	{
-		// This method works if the foot of pM matches the foot of this frame
-		// and the algebra of pM matches the one for this frame.
-		// It is enough to ensure they share the same algebra. This is Reference Match.
-		if (!pM.getAlgebra().equals(getAlgebra()))
+		checkMember(pM);
+		ArrayList<MonadRealF> tBasis = getFBasis();
+		if (tBasis != null && isFilled(this))
+			throw new CladosFrameException(this, "Frame generator basis is already filled");
+
+		if (tBasis == null)
+			tBasis = new ArrayList<MonadRealF>();
+		MonadRealF tCopy = new MonadRealF(pM);
+		tCopy.setFrameName(getName());
+		tBasis.add(tCopy);
+		if (nameList != null) nameList.add(pM.getName());
+		fBasis = tBasis;
+		basisAppended(1, 31 * tCopy.getName().hashCode() + contentHash(tCopy));
+	}
+
+	/**
+	 * Reject a monad that can't join this frame because it has a different
+	 * algebra or is expressed in some frame other than the default or this one.
+	 */
+	private void checkMember(MonadRealF pM) throws CladosFrameException
+	{
+		if (pM.getAlgebra() != getAlgebra())
 			throw new CladosFrameException(this, "Monads in a Frame must have algebras match");
-		
-		// This method is not equipped to handle recursion through frames
-		// so the Monad being appended must use the default frame for itself.
-		if (!pM.getFrame().equals(null))
+		if (pM.getFrameName() != null && !pM.getFrameName().equals(getName()))
 			throw new CladosFrameException(this, "Monads in a Frame must use default frame for themselves");
-			
-		// fBasis is essentially a list of generators of the Frame. Appending another
-		// Monad should be prevented if fBasis is already full.
-		if (isFilled(this))
-			throw new CladosFrameException(this, "Frame generator basis is already filled");
+	}
+
+	@Override
+	protected int basisFingerprint()
+	{
+		int tHash = 0;
+		if (getFBasis() != null)
+			for (MonadRealF tM : getFBasis())
+				tHash += 31 * tM.getName().hashCode() + contentHash(tM);
+		return tHash;
+	}
+
+	@Override
+	protected void basisAppended(int pCount, int pPrint)
+	{
+		super.basisAppended(pCount, pPrint);
+		int tFrom = fBasis.size() - pCount;
+		if (monadIndex != null)
+		{
+			int[] tHashes = new int[pCount];
+			for (int k = 0; k < pCount; k++)
+				tHashes[k] = contentHash(fBasis.get(tFrom + k));
+			monadIndex = monadIndex.append(tHashes);
+		}
+		if (matrix != null)
+			matrix = matrix.append(fBasis, tFrom);
+		table = null;
+		transform = null;
+	}
+
+	@Override
+	protected void basisChanged()
+	{
+		super.basisChanged();
+		matrix = null;
+	}
+
+	/**
+	 * Tell the frame the coefficients of its basis monads were edited in
+	 * place. Everything computed from them is dropped, and the matrix is
+	 * packed again from the monads on its next use. A matrix-only frame keeps
+	 * its matrix.
+	 */
+	@Override
+	public void coefficientsChanged()
+	{
+		super.coefficientsChanged();
+		if (fBasis != null) matrix = null;
+	}
+
+	@Override
+	protected void contentChanged()
+	{
+		super.contentChanged();
+		monadIndex = null;
+		table = null;
+		transform = null;
+	}
+
+	/**
+	 * Re-express a batch of packed frame coordinate vectors in default
+	 * coordinates. Vector v occupies one entry per blade starting at
+	 * v * blades. The whole batch is one pass over the cached transform, so
+	 * there is no per-monad overhead.
+	 * 
+	 * @param pIn
+	 *            double[] packed frame coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed default coordinates. May be
+	 *            null. Must not be pIn.
+	 * @return double[] the default coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] fromFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = batchTransform(pIn, pCount, pOut);
+		double[] rOut = (pOut == null) ? new double[pCount * tTransform.blades] : pOut;
+		tTransform.toDefault(pIn, 0, pCount, rOut, 0);
+		return rOut;
+	}
+
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. The monad is named after this frame.
+	 * 
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealF in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealF fromFrameCoordinates(double[] pCoeffs) throws CladosFrameException
+	{
+		return fromFrameCoordinates(getName(), pCoeffs);
+	}
+
+	/**
+	 * Build a monad in the default basis from coefficients given in frame
+	 * coordinates. The transform is cached by the frame, so this is one
+	 * matrix-vector product.
+	 * 
+	 * @param pName
+	 *            String name of the new monad
+	 * @param pCoeffs
+	 *            double[] one frame coordinate per blade
+	 * @return MonadRealF in the default basis
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pCoeffs is the wrong size.
+	 */
+	public MonadRealF fromFrameCoordinates(String pName, double[] pCoeffs) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		if (pCoeffs.length != tTransform.blades)
+			throw new CladosFrameException(this,
+							"Frame coordinates need one entry per blade.");
 		
-		// Add Monad to the ArrayList
-		fBasis.ensureCapacity(fBasis.size() + 1);
+		double[] tOut = new double[tTransform.blades];
+		tTransform.toDefault(pCoeffs, tOut);
+		
+		AlgebraRealF tAlg = (AlgebraRealF) getAlgebra();
+		RealF[] tC = new RealF[tOut.length];
+		for (int k = 0; k < tOut.length; k++)
+		{
+			tC[k] = new RealF(tAlg.getProtoNumber());
+			tC[k].setReal((float) tOut[k]);
+		}
+		return new MonadRealF(pName, tAlg, null, tC);
+	}
 
-		// The offered Monad is given this Frame for a name, but it's 'frame' is left empty.
-		// This signifies it uses the default 'frame', but with this name as an alias.
-		pM.setFrameName(this.name);
-	
-		// The offered Monad is finally added to the end of the ArrayList.
-		// This should cause the Frame to rethink the spaces it spans by recalculating its 'blades'.
-		fBasis.add(new MonadRealF(pM));
-		//reBlade(this);
+	/**
+	 * Check the arrays handed to a batch transform and return the transform.
+	 * 
+	 * @param pIn
+	 *            double[] packed input
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] packed output. May be null.
+	 * @return FrameTransform
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	private FrameTransform batchTransform(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		int tSize = pCount * tTransform.blades;
+		if (pCount < 0 || pIn.length < tSize || (pOut != null && pOut.length < tSize))
+			throw new CladosFrameException(this,
+							"Batch arrays need one entry per blade per vector.");
+		if (pOut == pIn)
+			throw new CladosFrameException(this,
+							"Batch output must not be the input array.");
+		return tTransform;
+	}
 
+	/**
+	 * Return the basis packed as a primitive matrix, building it from the
+	 * monads if needed. A basis monad edited in place should be handed back
+	 * through setFBasis so the matrix sees its new coefficients.
+	 * 
+	 * @return BasisMatrixF or null if there is no basis
+	 */
+	public BasisMatrixF getBasisMatrix()
+	{
+		if (matrix == null && fBasis != null)
+			matrix = BasisMatrixF.of(fBasis, getAlgebra().getGBasis().getBladeCount());
+		return matrix;
 	}
-	*/
 
 	/**
 	 * Return the array of Monads used as the frame's basis. 
 	 * This basically just hands the whole thing over for another object to mangle.
 	 * DANGER
+	 * <p>
+	 * The frame does not see coefficients edited in place through these
+	 * monads. Call coefficientsChanged after such edits, or the fingerprint
+	 * and everything else computed from the old coefficients stay in use.
 	 * 
 	 * @return ArrayList (of Monads)
 	 */
 	@Override
 	public ArrayList<MonadRealF> getFBasis()
 	{
+		if (fBasis == null && matrix != null)
+		{
+			int tN = matrix.getDirectionCount();
+			ArrayList<MonadRealF> tList = new ArrayList<MonadRealF>(tN);
+			for (int i = 0; i < tN; i++)
+			{
+				String tName = (nameList != null && i < nameList.size()) 
+								? nameList.get(i) : getName() + i;
+				tList.add(matrix.toMonad(i, tName, (AlgebraRealF) getAlgebra(), getName()));
+			}
+			fBasis = tList;
+		}
 		return fBasis;
 	}
 
@@ -271,7 +648,25 @@ public class FrameRealF extends FrameAbstract
 	 */
 	public MonadRealF getFBasis(short pj)
 	{
-		return fBasis.get(pj);
+		return getFBasis().get(pj);
+	}
+
+	/**
+	 * Return the content hash index over the basis, building it if needed.
+	 * 
+	 * @return MonadIndex
+	 */
+	protected MonadIndex getMonadIndex()
+	{
+		if (monadIndex == null)
+		{
+			ArrayList<MonadRealF> tBasis = getFBasis();
+			int[] tHashes = new int[tBasis.size()];
+			for (int k = 0; k < tHashes.length; k++)
+				tHashes[k] = contentHash(tBasis.get(k));
+			monadIndex = new MonadIndex(tHashes);
+		}
+		return monadIndex;
 	}
 
 	/**
@@ -287,7 +682,44 @@ public class FrameRealF extends FrameAbstract
 	public MonadRealF getNameBasis(String pName)
 	{
 		int tSpot = FrameAbstract.findName(this, pName);
-		return fBasis.get(tSpot);
+		return getFBasis().get(tSpot);
+	}
+
+	/**
+	 * Return the product table for this frame, building it if needed. The
+	 * basis is packed into one row per direction before the build.
+	 * 
+	 * @return FrameTable or null if the directions do not span the algebra
+	 */
+	protected FrameTable getTable()
+	{
+		if (table == null && getTransform() != null)
+		{
+			long tStart = FrameMetrics.start();
+			table = FrameTable.build(ProductIndex.of(getAlgebra()), getTransform(), 
+							getBasisMatrix().toDouble());
+			FrameMetrics.stop(FrameMetrics.Operation.TABLE_BUILD, tStart, this);
+		}
+		return table;
+	}
+
+	/**
+	 * Return the change of basis for this frame, building it if needed.
+	 * 
+	 * @return FrameTransform or null if the directions do not span the
+	 *         algebra
+	 */
+	protected FrameTransform getTransform()
+	{
+		if (transform == null && getBasisMatrix() != null)
+		{
+			long tStart = FrameMetrics.start();
+			BasisMatrixF tMatrix = getBasisMatrix();
+			transform = FrameTransform.build(ProductIndex.of(getAlgebra()), 
+							tMatrix.toDouble(), tMatrix.getDirectionCount());
+			FrameMetrics.stop(FrameMetrics.Operation.TRANSFORM_BUILD, tStart, this);
+		}
+		return transform;
 	}
 
 	/**
@@ -296,17 +728,32 @@ public class FrameRealF extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadRealF
-	 * @return MonadRealF
+	 * @return MonadRealF or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadRealF multiplyLeft(short pReferenceIndex, MonadRealF pM)
+	protected MonadRealF multiplyLeft(short pReferenceIndex, MonadRealF pM) throws CladosFrameException
 	{
-		return null;
+		FrameTable tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		double[] tIn = readCoefficients(pM, new double[tTable.blades], 0);
+		double[] tOut = new double[tTable.blades];
+		tTable.multiplyLeft(pReferenceIndex, tIn, tOut);
+		
+		MonadRealF tProd = new MonadRealF(pM);
+		writeCoefficients(tOut, 0, tProd);
+		return tProd;
 	}
 	
 	/**
@@ -315,23 +762,75 @@ public class FrameRealF extends FrameAbstract
 	 * single blade described by the indexed direction. The indexed monad
 	 * happens to be in the fBasis list at that index.
 	 * <p>
-	 * Multiplication between pM
+	 * Multiplication between pM and the indexed direction is read from the
+	 * frame's product table, so pM is expected in frame coordinates and so is
+	 * the result.
 	 * 
 	 * @param pReferenceIndex
 	 *            short
 	 * @param pM
 	 *            MonadRealF
-	 * @return MonadRealF
+	 * @return MonadRealF or null if the directions do not span the algebra
+	 * @throws CladosFrameException
+	 * 	pReferenceIndex is not a direction of this frame.
 	 */
-	protected MonadRealF multiplyRight(short pReferenceIndex, MonadRealF pM)
+	protected MonadRealF multiplyRight(short pReferenceIndex, MonadRealF pM) throws CladosFrameException
 	{
-		return null;
+		FrameTable tTable = getTable();
+		if (tTable == null) return null;
+		if (pReferenceIndex < 0 || pReferenceIndex >= tTable.order)
+			throw new CladosFrameException(this, "No direction at index " + pReferenceIndex);
+		
+		double[] tIn = readCoefficients(pM, new double[tTable.blades], 0);
+		double[] tOut = new double[tTable.blades];
+		tTable.multiplyRight(pReferenceIndex, tIn, tOut);
+		
+		MonadRealF tProd = new MonadRealF(pM);
+		writeCoefficients(tOut, 0, tProd);
+		return tProd;
 	}
 
-	//@Override
-	protected void orthogonalizeOn(MonadRealF pM)
+	/**
+	 * Make the directions of this frame orthogonal to pM and to each other with
+	 * modified Gram-Schmidt. If pM is one of the basis monads it is taken first
+	 * and left alone. Otherwise pM leads and every direction is made
+	 * orthogonal to it as well. Either way pM itself is never changed.
+	 * <p>
+	 * Directions are not normalized, since the metric need not be positive.
+	 * Their coefficients are rewritten in place through a reused scratch
+	 * buffer, so no monads are created. The basis matrix is rewritten
+	 * alongside them rather than dropped and rebuilt.
+	 * 
+	 * @param pM
+	 *            MonadRealF the direction to orthogonalize on
+	 */
+	public void orthogonalizeOn(MonadRealF pM)
 	{
+		BasisMatrixF tMatrix = getBasisMatrix();
+		ArrayList<MonadRealF> tBasis = getFBasis();
+		int tB = tMatrix.getBladeCount();
+		int tN = tMatrix.getDirectionCount();
+		int tAnchor = findMonad(this, pM);
+		int tRows = (tAnchor < 0) ? tN + 1 : tN;
+		if (orthoScratch == null || orthoScratch.length < tRows * tB)
+			orthoScratch = new double[tRows * tB];
 
+		float[] tData = tMatrix.getData();
+		for (int k = 0; k < tN * tB; k++)
+			orthoScratch[k] = tData[k];
+		if (tAnchor < 0)
+		{
+			readCoefficients(pM, orthoScratch, tN * tB);
+			tAnchor = tN;
+		}
+		FrameMath.orthogonalize(ProductIndex.of(getAlgebra()), orthoScratch, tRows, tAnchor, ORTHO_TOLERANCE);
+		for (int i = 0; i < tN; i++)
+			if (i != tAnchor)
+			{
+				writeCoefficients(orthoScratch, i * tB, tBasis.get(i));
+				tMatrix.setRow(i, orthoScratch, i * tB);
+			}
+		contentChanged();
 	}
 
 	/**
@@ -344,20 +843,9 @@ public class FrameRealF extends FrameAbstract
 	 */
 	protected void removeNamedMonad(short pthisone) throws CladosFrameException
 	{
-		MonadRealF test = null;
-		try
-		{
-			test = fBasis.remove(pthisone);
-		}
-		catch (IndexOutOfBoundsException e)
-		{
-			throw new CladosFrameException(this, 
-					"Specific Monad removal at ["+ pthisone + "] didn't work.");
-		}
-		finally
-		{
-			if (test != null) fBasis.trimToSize();
-		}
+		if (!tryRemoveNamedMonad(pthisone))
+			throw new CladosFrameException(this, "Specific Monad removal at ["
+							+ pthisone + "] didn't work.");
 	}
 
 	/**
@@ -370,14 +858,68 @@ public class FrameRealF extends FrameAbstract
 	 */
 	protected void removeRefMonad(MonadRealF pM) throws CladosFrameException
 	{
-		short testfind = findMonad(this, pM);
-		if (testfind >= 0)
-			removeNamedMonad(testfind);
-		else
+		if (!tryRemoveRefMonad(pM))
 			throw new CladosFrameException(this,
 							"Can't find the Monad to remove.");
 	}
 
+	/**
+	 * Remove the monad at an index, reporting failure instead of throwing.
+	 * Loops that prune many directions should use this so a miss costs no
+	 * exception.
+	 * 
+	 * @param pthisone
+	 *            short
+	 * @return boolean false if there is no monad at that index
+	 */
+	protected boolean tryRemoveNamedMonad(short pthisone)
+	{
+		ArrayList<MonadRealF> tBasis = getFBasis();
+		if (tBasis == null || pthisone < 0 || pthisone >= tBasis.size()) return false;
+		tBasis.remove(pthisone);
+		tBasis.trimToSize();
+		if (nameList != null && pthisone < nameList.size())
+			nameList.remove(pthisone);
+		basisChanged();
+		return true;
+	}
+
+	/**
+	 * Remove a monad matching pM, reporting failure instead of throwing.
+	 * 
+	 * @param pM
+	 *            MonadRealF
+	 * @return boolean false if no monad in the basis matches
+	 */
+	protected boolean tryRemoveRefMonad(MonadRealF pM)
+	{
+		short tSpot = findMonad(this, pM);
+		return tSpot >= 0 && tryRemoveNamedMonad(tSpot);
+	}
+
+	/**
+	 * Keep only the directions whose names are in a set and remove the rest
+	 * in one step. A direction goes by its entry in the name list, or by its
+	 * monad's name where the list doesn't reach.
+	 * 
+	 * @param pNames
+	 *            Set of direction names to keep
+	 * @return int number of directions removed
+	 */
+	public int retainNames(Set<String> pNames)
+	{
+		ArrayList<MonadRealF> tBasis = getFBasis();
+		if (tBasis == null) return 0;
+		boolean[] tDrop = new boolean[tBasis.size()];
+		for (int k = 0; k < tDrop.length; k++)
+		{
+			String tName = (nameList != null && k < nameList.size()) 
+							? nameList.get(k) : tBasis.get(k).getName();
+			tDrop[k] = !pNames.contains(tName);
+		}
+		return removeMarked(tDrop);
+	}
+
 	/**
 	 * Set the Monad List array of this FrameRealF.
 	 * 
@@ -390,6 +932,59 @@ public class FrameRealF extends FrameAbstract
 			fBasis = null;
 		else
 			fBasis = pML;
+		basisChanged();
+
+	}
 
+	/**
+	 * Return the coefficients of a default basis monad in frame coordinates.
+	 * The transform is cached by the frame, so this is one matrix-vector
+	 * product.
+	 * 
+	 * @param pM
+	 *            MonadRealF in the default basis
+	 * @return double[] one frame coordinate per blade
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or pM uses another algebra.
+	 */
+	public double[] toFrameCoordinates(MonadRealF pM) throws CladosFrameException
+	{
+		FrameTransform tTransform = getTransform();
+		if (tTransform == null)
+			throw new CladosFrameException(this,
+							"Frame directions do not span the algebra.");
+		if (pM.getAlgebra() != getAlgebra())
+			throw new CladosFrameException(this,
+							"Monads in a Frame should have algebras match");
+		
+		double[] tIn = readCoefficients(pM, new double[tTransform.blades], 0);
+		double[] rOut = new double[tTransform.blades];
+		tTransform.toFrame(tIn, rOut);
+		return rOut;
+	}
+
+	/**
+	 * Re-express a batch of packed default coordinate vectors in frame
+	 * coordinates. Vector v occupies one entry per blade starting at
+	 * v * blades. The whole batch is one pass over the cached transform, so
+	 * there is no per-monad overhead.
+	 * 
+	 * @param pIn
+	 *            double[] packed default coordinates
+	 * @param pCount
+	 *            int number of vectors in pIn
+	 * @param pOut
+	 *            double[] receives the packed frame coordinates. May be null.
+	 *            Must not be pIn.
+	 * @return double[] the frame coordinates
+	 * @throws CladosFrameException
+	 * 	The directions do not span the algebra or the arrays are too short.
+	 */
+	public double[] toFrameCoordinates(double[] pIn, int pCount, double[] pOut) throws CladosFrameException
+	{
+		FrameTransform tTransform = batchTransform(pIn, pCount, pOut);
+		double[] rOut = (pOut == null) ? new double[pCount * tTransform.blades] : pOut;
+		tTransform.toFrame(pIn, 0, pCount, rOut, 0);
+		return rOut;
 	}
 }
@@ -0,0 +1,338 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameRegistry<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameRegistry<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.interworldtransport.cladosG.AlgebraAbstract;
+
+/**
+ * The frame registry interns frames so identical frames built in different
+ * places collapse to one object. Anything that object computes from its
+ * basis, such as product tables, transforms and reciprocals, is then computed
+ * once per distinct frame.
+ * <p>
+ * Frames are keyed by their algebra and fingerprint, and equal keys are
+ * confirmed with the isREqual test of the frame's class. The registry holds
+ * frames weakly, so it never keeps one alive on its own. It also holds at
+ * most a fixed number of keys, evicting the least recently used key when full.
+ * Frames can also be found by name, with the most recently registered frame
+ * winning when names repeat.
+ * <p>
+ * A registered frame should not be edited afterwards. Its fingerprint would
+ * no longer match its key. The registry copes with that by confirming
+ * equality on every hit, but the edited frame will not be found again.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameRegistry
+{
+	/**
+	 * Number of keys the shared registry holds.
+	 */
+	public static final int				DEFAULT_CAPACITY	= 1024;
+
+	private static final FrameRegistry	SHARED				= new FrameRegistry(DEFAULT_CAPACITY);
+
+	/**
+	 * Return the process-wide registry.
+	 * 
+	 * @return FrameRegistry
+	 */
+	public static FrameRegistry shared()
+	{
+		return SHARED;
+	}
+
+	/**
+	 * Test two frames for equality with the test belonging to their class.
+	 * 
+	 * @param pF1
+	 *            FrameAbstract
+	 * @param pF2
+	 *            FrameAbstract
+	 * @return boolean
+	 */
+	private static boolean isREqual(FrameAbstract pF1, FrameAbstract pF2)
+	{
+		if (pF1 == pF2) return true;
+		if (pF1.getClass() != pF2.getClass()) return false;
+		if (pF1 instanceof FrameRealD)
+			return FrameRealD.isREqual((FrameRealD) pF1, (FrameRealD) pF2);
+		if (pF1 instanceof FrameRealF)
+			return FrameRealF.isREqual((FrameRealF) pF1, (FrameRealF) pF2);
+		if (pF1 instanceof FrameComplexD)
+			return FrameComplexD.isREqual((FrameComplexD) pF1, (FrameComplexD) pF2);
+		if (pF1 instanceof FrameComplexF)
+			return FrameComplexF.isREqual((FrameComplexF) pF1, (FrameComplexF) pF2);
+		return false;
+	}
+
+	private final int									capacity;
+
+	private final LinkedHashMap<Key, ArrayList<Entry>>	entries;
+
+	private long										evictions;
+
+	private long										hits;
+
+	private long										misses;
+
+	private final HashMap<String, Entry>				names;
+
+	private final ReferenceQueue<FrameAbstract>			queue;
+
+	/**
+	 * Registry constructor.
+	 * 
+	 * @param pCapacity
+	 *            int most keys held before the least recently used is evicted
+	 */
+	public FrameRegistry(int pCapacity)
+	{
+		capacity = pCapacity;
+		queue = new ReferenceQueue<FrameAbstract>();
+		names = new HashMap<String, Entry>();
+		entries = new LinkedHashMap<Key, ArrayList<Entry>>(16, 0.75f, true)
+		{
+			private static final long	serialVersionUID	= 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, ArrayList<Entry>> pEldest)
+			{
+				if (size() <= capacity) return false;
+				for (Entry tEntry : pEldest.getValue())
+					forgetName(tEntry);
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Drop every frame and reset the counters.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		names.clear();
+		while (queue.poll() != null)
+			;
+		hits = 0L;
+		misses = 0L;
+		evictions = 0L;
+	}
+
+	/**
+	 * Find the most recently registered frame with the given name.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return FrameAbstract or null if none is registered
+	 */
+	public synchronized FrameAbstract findName(String pName)
+	{
+		purge();
+		Entry tEntry = names.get(pName);
+		return (tEntry == null) ? null : tEntry.get();
+	}
+
+	private void forgetName(Entry pEntry)
+	{
+		if (names.get(pEntry.name) == pEntry) names.remove(pEntry.name);
+	}
+
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+
+	/**
+	 * Return the frame registered as equal to pFrame, registering pFrame if
+	 * there is none. Callers should carry on with the returned frame.
+	 * 
+	 * @param pFrame
+	 *            FrameAbstract
+	 * @param <F>
+	 *            the frame class
+	 * @return the registered frame
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <F extends FrameAbstract> F intern(F pFrame)
+	{
+		purge();
+		Key tKey = new Key(pFrame.getAlgebra(), pFrame.getFingerprint());
+		ArrayList<Entry> tBucket = entries.get(tKey);
+		if (tBucket != null)
+			for (Entry tEntry : tBucket)
+			{
+				FrameAbstract tFrame = tEntry.get();
+				if (tFrame != null && isREqual(tFrame, pFrame))
+				{
+					hits++;
+					return (F) tFrame;
+				}
+			}
+
+		misses++;
+		Entry tEntry = new Entry(pFrame, tKey, queue);
+		if (tBucket == null)
+		{
+			tBucket = new ArrayList<Entry>(1);
+			entries.put(tKey, tBucket);
+		}
+		tBucket.add(tEntry);
+		if (pFrame.getName() != null) names.put(pFrame.getName(), tEntry);
+		return pFrame;
+	}
+
+	/**
+	 * Remove entries whose frames have been collected.
+	 */
+	private void purge()
+	{
+		Object tRef;
+		while ((tRef = queue.poll()) != null)
+		{
+			Entry tEntry = (Entry) tRef;
+			ArrayList<Entry> tBucket = entries.get(tEntry.key);
+			if (tBucket != null)
+			{
+				tBucket.remove(tEntry);
+				if (tBucket.isEmpty()) entries.remove(tEntry.key);
+			}
+			forgetName(tEntry);
+		}
+	}
+
+	/**
+	 * Forget a frame. Nothing happens if it was not registered.
+	 * 
+	 * @param pFrame
+	 *            FrameAbstract
+	 */
+	public synchronized void remove(FrameAbstract pFrame)
+	{
+		purge();
+		Iterator<ArrayList<Entry>> tBuckets = entries.values().iterator();
+		while (tBuckets.hasNext())
+		{
+			ArrayList<Entry> tBucket = tBuckets.next();
+			for (Iterator<Entry> tIt = tBucket.iterator(); tIt.hasNext();)
+			{
+				Entry tEntry = tIt.next();
+				if (tEntry.get() == pFrame)
+				{
+					tIt.remove();
+					forgetName(tEntry);
+				}
+			}
+			if (tBucket.isEmpty()) tBuckets.remove();
+		}
+	}
+
+	/**
+	 * Return the number of keys held.
+	 * 
+	 * @return int
+	 */
+	public synchronized int size()
+	{
+		purge();
+		return entries.size();
+	}
+
+	/**
+	 * A weak reference to a registered frame that remembers where it is
+	 * filed.
+	 */
+	private static final class Entry extends WeakReference<FrameAbstract>
+	{
+		final Key		key;
+
+		final String	name;
+
+		Entry(FrameAbstract pFrame, Key pKey, ReferenceQueue<FrameAbstract> pQueue)
+		{
+			super(pFrame, pQueue);
+			key = pKey;
+			name = pFrame.getName();
+		}
+	}
+
+	/**
+	 * Algebra and fingerprint of a frame. The algebra is held weakly and
+	 * compared by identity, as frame equality does.
+	 */
+	private static final class Key
+	{
+		final WeakReference<AlgebraAbstract>	algebra;
+
+		final int								fingerprint;
+
+		final int								hash;
+
+		Key(AlgebraAbstract pAlg, int pFingerprint)
+		{
+			algebra = new WeakReference<AlgebraAbstract>(pAlg);
+			fingerprint = pFingerprint;
+			hash = 31 * System.identityHashCode(pAlg) + pFingerprint;
+		}
+
+		@Override
+		public boolean equals(Object pObject)
+		{
+			if (this == pObject) return true;
+			if (!(pObject instanceof Key)) return false;
+			Key tOther = (Key) pObject;
+			AlgebraAbstract tAlg = algebra.get();
+			return fingerprint == tOther.fingerprint && tAlg != null 
+							&& tAlg == tOther.algebra.get();
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+}
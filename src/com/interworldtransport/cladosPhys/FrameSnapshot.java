@@ -0,0 +1,541 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameSnapshot<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameSnapshot<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+import com.interworldtransport.cladosG.*;
+
+/**
+ * An immutable picture of a frame that can be handed to other subsystems
+ * without a defensive copy. It holds the name, algebra, basis, direction
+ * names and reciprocal of the frame it was taken from, plus a fingerprint
+ * computed once.
+ * <p>
+ * The basis monads are copied once when the snapshot is taken. After that
+ * they are shared. A snapshot derived with withDirection reuses every monad
+ * except the replaced one, and it reuses the name list and name index
+ * outright. Monads handed out by a snapshot are the shared ones, so they
+ * must be treated as read-only. Use toFrame for an editable copy.
+ * 
+ * @param <T>
+ *            the monad type of the frame
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameSnapshot<T>
+{
+	/**
+	 * Take a snapshot of a FrameRealF.
+	 * 
+	 * @param pFrame
+	 *            FrameRealF
+	 * @return FrameSnapshot
+	 */
+	public static FrameSnapshot<MonadRealF> of(FrameRealF pFrame)
+	{
+		return new FrameSnapshot<MonadRealF>(REAL_F, pFrame, true);
+	}
+
+	/**
+	 * Take a snapshot of a FrameRealD. A ConcurrentFrameRealD is snapshotted
+	 * from one published state whatever type it is held as.
+	 * 
+	 * @param pFrame
+	 *            FrameRealD
+	 * @return FrameSnapshot
+	 */
+	public static FrameSnapshot<MonadRealD> of(FrameRealD pFrame)
+	{
+		if (pFrame instanceof ConcurrentFrameRealD) 
+			return of((ConcurrentFrameRealD) pFrame);
+		return new FrameSnapshot<MonadRealD>(REAL_D, pFrame, true);
+	}
+
+	/**
+	 * Take a snapshot of a ConcurrentFrameRealD. The basis, names and
+	 * reciprocal all come from the one state published when this is called,
+	 * even if a writer publishes another state meanwhile.
+	 * 
+	 * @param pFrame
+	 *            ConcurrentFrameRealD
+	 * @return FrameSnapshot
+	 */
+	public static FrameSnapshot<MonadRealD> of(ConcurrentFrameRealD pFrame)
+	{
+		return of(pFrame.publishedWithReciprocal());
+	}
+
+	/**
+	 * Take a snapshot of a FrameComplexF.
+	 * 
+	 * @param pFrame
+	 *            FrameComplexF
+	 * @return FrameSnapshot
+	 */
+	public static FrameSnapshot<MonadComplexF> of(FrameComplexF pFrame)
+	{
+		return new FrameSnapshot<MonadComplexF>(COMPLEX_F, pFrame, true);
+	}
+
+	/**
+	 * Take a snapshot of a FrameComplexD.
+	 * 
+	 * @param pFrame
+	 *            FrameComplexD
+	 * @return FrameSnapshot
+	 */
+	public static FrameSnapshot<MonadComplexD> of(FrameComplexD pFrame)
+	{
+		return new FrameSnapshot<MonadComplexD>(COMPLEX_D, pFrame, true);
+	}
+
+	private final AlgebraAbstract			algebra;
+
+	/**
+	 * The basis monads. The array is never written after construction.
+	 */
+	private final Object[]					basis;
+
+	/**
+	 * Sum of the per-monad fingerprint contributions, kept so a derived
+	 * snapshot can swap one contribution instead of rehashing the basis.
+	 */
+	private final int						basisPrint;
+
+	private final int						fingerprint;
+
+	private final Kind<T>					kind;
+
+	private final String					name;
+
+	private final HashMap<String, Integer>	nameIndex;
+
+	private final List<String>				names;
+
+	private final FrameSnapshot<T>			reciprocal;
+
+	/**
+	 * Snapshot a frame.
+	 * 
+	 * @param pKind
+	 *            Kind of frame
+	 * @param pFrame
+	 *            FrameAbstract of that kind
+	 * @param pReciprocal
+	 *            boolean also snapshot the reciprocal if there is one
+	 */
+	@SuppressWarnings("unchecked")
+	private FrameSnapshot(Kind<T> pKind, FrameAbstract pFrame, boolean pReciprocal)
+	{
+		kind = pKind;
+		name = pFrame.getName();
+		algebra = pFrame.getAlgebra();
+
+		ArrayList<T> tBasis = (ArrayList<T>) pFrame.getFBasis();
+		int tN = (tBasis == null) ? 0 : tBasis.size();
+		basis = new Object[tN];
+		int tPrint = 0;
+		for (int i = 0; i < tN; i++)
+		{
+			T tM = pKind.copy(tBasis.get(i));
+			basis[i] = tM;
+			tPrint += pKind.print(tM);
+		}
+		basisPrint = tPrint;
+
+		ArrayList<String> tNames = pFrame.getNameList();
+		if (tNames == null)
+		{
+			tNames = new ArrayList<String>(tN);
+			for (Object tM : basis)
+				tNames.add(pKind.name((T) tM));
+		}
+		names = Collections.unmodifiableList(new ArrayList<String>(tNames));
+		nameIndex = new HashMap<String, Integer>(names.size() * 4 / 3 + 1);
+		for (int k = 0; k < names.size(); k++)
+			nameIndex.putIfAbsent(names.get(k), Integer.valueOf(k));
+
+		fingerprint = fingerprint(algebra, names.size(), basisPrint);
+		reciprocal = (pReciprocal && pFrame.getReciprocal() != null) 
+						? new FrameSnapshot<T>(pKind, pFrame.getReciprocal(), false)
+						: null;
+	}
+
+	/**
+	 * Derive a snapshot from another with one basis array swapped in. The
+	 * names, name index and kind are shared. The reciprocal is dropped.
+	 */
+	private FrameSnapshot(FrameSnapshot<T> pFrom, Object[] pBasis, int pBasisPrint)
+	{
+		kind = pFrom.kind;
+		name = pFrom.name;
+		algebra = pFrom.algebra;
+		basis = pBasis;
+		basisPrint = pBasisPrint;
+		names = pFrom.names;
+		nameIndex = pFrom.nameIndex;
+		fingerprint = fingerprint(algebra, names.size(), basisPrint);
+		reciprocal = null;
+	}
+
+	/**
+	 * The same fingerprint FrameAbstract computes for a frame.
+	 */
+	private static int fingerprint(AlgebraAbstract pAlg, int pOrder, int pBasisPrint)
+	{
+		int tHash = System.identityHashCode(pAlg);
+		tHash = 31 * tHash + pOrder;
+		return 31 * tHash + pBasisPrint;
+	}
+
+	/**
+	 * Snapshots are equal when they hold the same algebra, names and monads.
+	 * Monads are paired by position since both name lists are fixed.
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean equals(Object pObject)
+	{
+		if (this == pObject) return true;
+		if (!(pObject instanceof FrameSnapshot)) return false;
+		FrameSnapshot<?> tOther = (FrameSnapshot<?>) pObject;
+		if (kind != tOther.kind || algebra != tOther.algebra) return false;
+		if (fingerprint != tOther.fingerprint) return false;
+		if (basis.length != tOther.basis.length) return false;
+		if (!names.equals(tOther.names)) return false;
+		for (int i = 0; i < basis.length; i++)
+			if (basis[i] != tOther.basis[i] 
+							&& !kind.isGEqual((T) basis[i], (T) tOther.basis[i]))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Return the index of a direction name.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return int position of the name or -1
+	 */
+	public int findName(String pName)
+	{
+		Integer tSpot = nameIndex.get(pName);
+		return (tSpot == null) ? -1 : tSpot.intValue();
+	}
+
+	public AlgebraAbstract getAlgebra()
+	{
+		return algebra;
+	}
+
+	/**
+	 * Return the basis as an unmodifiable list. The monads are shared with
+	 * other snapshots and must not be edited.
+	 * 
+	 * @return List of monads
+	 */
+	@SuppressWarnings("unchecked")
+	public List<T> getBasis()
+	{
+		return Collections.unmodifiableList((List<T>) Arrays.asList(basis));
+	}
+
+	/**
+	 * Return the monad at the jth index. It is shared and must not be edited.
+	 * 
+	 * @param pj
+	 *            int
+	 * @return monad
+	 */
+	@SuppressWarnings("unchecked")
+	public T getDirection(int pj)
+	{
+		return (T) basis[pj];
+	}
+
+	/**
+	 * Return the fingerprint. It matches the one the original frame reports
+	 * when that frame has a name list.
+	 * 
+	 * @return int
+	 */
+	public int getFingerprint()
+	{
+		return fingerprint;
+	}
+
+	public short getFrameOrder()
+	{
+		return (short) names.size();
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Return the monad with the given name. It is shared and must not be
+	 * edited.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return monad or null if no direction has that name
+	 */
+	public T getNameBasis(String pName)
+	{
+		int tSpot = findName(pName);
+		return (tSpot < 0) ? null : getDirection(tSpot);
+	}
+
+	/**
+	 * Return the direction names as an unmodifiable list.
+	 * 
+	 * @return List of names
+	 */
+	public List<String> getNameList()
+	{
+		return names;
+	}
+
+	/**
+	 * Return the snapshot of the reciprocal frame.
+	 * 
+	 * @return FrameSnapshot or null if the frame had no reciprocal
+	 */
+	public FrameSnapshot<T> getReciprocal()
+	{
+		return reciprocal;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return fingerprint;
+	}
+
+	/**
+	 * Return an editable frame of the same class as the one this snapshot
+	 * was taken from. It shares nothing with the snapshot.
+	 * 
+	 * @return FrameAbstract
+	 */
+	@SuppressWarnings("unchecked")
+	public FrameAbstract toFrame()
+	{
+		ArrayList<T> tBasis = new ArrayList<T>(basis.length);
+		for (Object tM : basis)
+			tBasis.add(kind.copy((T) tM));
+		FrameAbstract rFrame = kind.newFrame(name, algebra, tBasis);
+		rFrame.setNameList(new ArrayList<String>(names));
+		return rFrame;
+	}
+
+	/**
+	 * Derive a snapshot with one direction replaced. The monad is copied. All
+	 * other monads, the names and the name index are shared with this
+	 * snapshot, so the monad must carry the name of the direction it
+	 * replaces. The reciprocal is not carried over because it no longer
+	 * matches.
+	 * 
+	 * @param pj
+	 *            int index of the direction to replace
+	 * @param pM
+	 *            monad for that direction
+	 * @return FrameSnapshot
+	 * @throws IllegalArgumentException
+	 *             The monad's name is not the name of direction pj.
+	 */
+	@SuppressWarnings("unchecked")
+	public FrameSnapshot<T> withDirection(int pj, T pM)
+	{
+		String tName = names.get(pj);
+		if (!Objects.equals(tName, kind.name(pM)))
+			throw new IllegalArgumentException("Monad " + kind.name(pM) 
+							+ " can't replace direction " + tName);
+		T tM = kind.copy(pM);
+		Object[] tBasis = basis.clone();
+		tBasis[pj] = tM;
+		int tPrint = basisPrint - kind.print((T) basis[pj]) + kind.print(tM);
+		return new FrameSnapshot<T>(this, tBasis, tPrint);
+	}
+
+	/**
+	 * Derive a snapshot with the named direction replaced.
+	 * 
+	 * @param pName
+	 *            String name of the direction to replace
+	 * @param pM
+	 *            monad for that direction
+	 * @return FrameSnapshot
+	 * @throws IllegalArgumentException
+	 *             No direction has that name or the monad has another.
+	 */
+	public FrameSnapshot<T> withDirection(String pName, T pM)
+	{
+		int tSpot = findName(pName);
+		if (tSpot < 0)
+			throw new IllegalArgumentException("No direction named " + pName);
+		return withDirection(tSpot, pM);
+	}
+
+	/**
+	 * The handful of monad operations a snapshot needs, one instance per
+	 * frame type.
+	 */
+	private abstract static class Kind<T>
+	{
+		abstract T copy(T pM);
+
+		abstract boolean isGEqual(T pM1, T pM2);
+
+		abstract String name(T pM);
+
+		abstract FrameAbstract newFrame(String pName, AlgebraAbstract pAlg, ArrayList<T> pBasis);
+
+		/**
+		 * The contribution of one monad to a frame's basis fingerprint.
+		 */
+		abstract int print(T pM);
+	}
+
+	private static final Kind<MonadRealF>		REAL_F		= new Kind<MonadRealF>()
+	{
+		MonadRealF copy(MonadRealF pM)
+		{
+			return new MonadRealF(pM);
+		}
+
+		boolean isGEqual(MonadRealF pM1, MonadRealF pM2)
+		{
+			return pM1.isGEqual(pM2);
+		}
+
+		String name(MonadRealF pM)
+		{
+			return pM.getName();
+		}
+
+		FrameAbstract newFrame(String pName, AlgebraAbstract pAlg, ArrayList<MonadRealF> pBasis)
+		{
+			return new FrameRealF(pName, (AlgebraRealF) pAlg, pBasis);
+		}
+
+		int print(MonadRealF pM)
+		{
+			return 31 * pM.getName().hashCode() + FrameRealF.contentHash(pM);
+		}
+	};
+
+	private static final Kind<MonadRealD>		REAL_D		= new Kind<MonadRealD>()
+	{
+		MonadRealD copy(MonadRealD pM)
+		{
+			return new MonadRealD(pM);
+		}
+
+		boolean isGEqual(MonadRealD pM1, MonadRealD pM2)
+		{
+			return pM1.isGEqual(pM2);
+		}
+
+		String name(MonadRealD pM)
+		{
+			return pM.getName();
+		}
+
+		FrameAbstract newFrame(String pName, AlgebraAbstract pAlg, ArrayList<MonadRealD> pBasis)
+		{
+			return new FrameRealD(pName, (AlgebraRealD) pAlg, pBasis);
+		}
+
+		int print(MonadRealD pM)
+		{
+			return 31 * pM.getName().hashCode() + FrameRealD.contentHash(pM);
+		}
+	};
+
+	private static final Kind<MonadComplexF>	COMPLEX_F	= new Kind<MonadComplexF>()
+	{
+		MonadComplexF copy(MonadComplexF pM)
+		{
+			return new MonadComplexF(pM);
+		}
+
+		boolean isGEqual(MonadComplexF pM1, MonadComplexF pM2)
+		{
+			return pM1.isGEqual(pM2);
+		}
+
+		String name(MonadComplexF pM)
+		{
+			return pM.getName();
+		}
+
+		FrameAbstract newFrame(String pName, AlgebraAbstract pAlg, ArrayList<MonadComplexF> pBasis)
+		{
+			return new FrameComplexF(pName, (AlgebraComplexF) pAlg, pBasis);
+		}
+
+		int print(MonadComplexF pM)
+		{
+			return 31 * pM.getName().hashCode() + FrameComplexF.contentHash(pM);
+		}
+	};
+
+	private static final Kind<MonadComplexD>	COMPLEX_D	= new Kind<MonadComplexD>()
+	{
+		MonadComplexD copy(MonadComplexD pM)
+		{
+			return new MonadComplexD(pM);
+		}
+
+		boolean isGEqual(MonadComplexD pM1, MonadComplexD pM2)
+		{
+			return pM1.isGEqual(pM2);
+		}
+
+		String name(MonadComplexD pM)
+		{
+			return pM.getName();
+		}
+
+		FrameAbstract newFrame(String pName, AlgebraAbstract pAlg, ArrayList<MonadComplexD> pBasis)
+		{
+			return new FrameComplexD(pName, (AlgebraComplexD) pAlg, pBasis);
+		}
+
+		int print(MonadComplexD pM)
+		{
+			return 31 * pM.getName().hashCode() + FrameComplexD.contentHash(pM);
+		}
+	};
+}
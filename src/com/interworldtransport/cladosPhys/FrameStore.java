@@ -0,0 +1,445 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameStore<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameStore<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import com.interworldtransport.cladosG.AlgebraAbstract;
+import com.interworldtransport.cladosG.AlgebraRealD;
+
+/**
+ * A read-only library of frames kept in one memory-mapped file. The file is
+ * laid out little-endian as follows.
+ * <ul>
+ * <li>int magic, short version, short reserved, int frame count, int
+ * reserved, long offset of the index and long offset of the name table.</li>
+ * <li>One FrameBinary record per frame, each starting on a multiple of eight
+ * bytes so its coefficients are aligned for doubles. No record crosses a
+ * WINDOW boundary.</li>
+ * <li>The index: one long file offset per frame in the order written.</li>
+ * <li>The name table: an int entry count, then one entry per named frame
+ * sorted by the UTF-8 bytes of the name and then by position. An entry is
+ * three ints: where the name's bytes start from the table's start, how
+ * many there are and the frame's position. The name bytes follow the
+ * entries.</li>
+ * </ul>
+ * Opening a store maps the file and reads nothing else. Looking a frame up
+ * by name is a binary search of the mapped name table. Fetching a FrameRealD
+ * reads its record header and hands back a frame whose basis matrix sits
+ * over the mapped coefficients, so the coefficients are only paged in when
+ * something reads them. The other frame types are decoded into heap arrays
+ * as FrameBinary does.
+ * <p>
+ * A store may be shared between threads. Frames handed out are ordinary
+ * frames and are not.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameStore implements AutoCloseable
+{
+	/**
+	 * First four bytes of a store file. They read "CLFS" in file order.
+	 */
+	public static final int		MAGIC	= 0x53464C43;
+
+	/**
+	 * Format version written by this class.
+	 */
+	public static final short	VERSION	= 2;
+
+	/**
+	 * Bytes in the file header.
+	 */
+	static final int			HEADER	= 32;
+
+	/**
+	 * Size of each mapped region of the file. A single mapping is limited to
+	 * two gigabytes, so the records are mapped in windows of this size and
+	 * the writer keeps every record inside one window.
+	 */
+	static final long			WINDOW	= 1L << 30;
+
+	/**
+	 * Open a store file for reading.
+	 * 
+	 * @param pPath
+	 *            Path of the store file
+	 * @param pResolver
+	 *            AlgebraResolver finds the algebras the frames name
+	 * @return FrameStore
+	 * @throws IOException
+	 *             The file can't be read or isn't a frame store.
+	 */
+	public static FrameStore open(Path pPath, AlgebraResolver pResolver) throws IOException
+	{
+		try (FileChannel tFile = FileChannel.open(pPath, StandardOpenOption.READ))
+		{
+			return new FrameStore(tFile, pResolver);
+		}
+	}
+
+	/**
+	 * Write a store file holding the frames in the order given. Any existing
+	 * file at the path is replaced.
+	 * 
+	 * @param pPath
+	 *            Path of the store file
+	 * @param pFrames
+	 *            Iterable of frames of any of the four types
+	 * @return int number of frames written
+	 * @throws IOException
+	 *             from the file system, or a frame is too large for a window
+	 */
+	public static int write(Path pPath, Iterable<? extends FrameAbstract> pFrames) throws IOException
+	{
+		try (FileChannel tFile = FileChannel.open(pPath, StandardOpenOption.CREATE, 
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			long[] tIndex = new long[16];
+			String[] tNames = new String[16];
+			int tCount = 0;
+			long tAt = HEADER;
+			tFile.position(tAt);
+			for (FrameAbstract tF : pFrames)
+			{
+				ByteBuffer tRecord = FrameBinary.encode(tF);
+				long tLength = tRecord.remaining();
+				if (tLength > WINDOW)
+					throw new IOException("Frame " + tF.getName() + " is too large for a store");
+				long tStart = (tAt + 7) & ~7L;
+				if (tStart / WINDOW != (tStart + tLength - 1) / WINDOW) 
+					tStart = (tStart / WINDOW + 1) * WINDOW;
+				pad(tFile, tStart - tAt);
+				writeFully(tFile, tRecord);
+				tAt = tStart + tLength;
+
+				if (tCount == tIndex.length)
+				{
+					tIndex = Arrays.copyOf(tIndex, tCount * 2);
+					tNames = Arrays.copyOf(tNames, tCount * 2);
+				}
+				tNames[tCount] = tF.getName();
+				tIndex[tCount++] = tStart;
+			}
+
+			long tIndexAt = (tAt + 7) & ~7L;
+			pad(tFile, tIndexAt - tAt);
+			ByteBuffer tOut = ByteBuffer.allocate(tCount * 8).order(ByteOrder.LITTLE_ENDIAN);
+			tOut.asLongBuffer().put(tIndex, 0, tCount);
+			writeFully(tFile, tOut);
+			long tNamesAt = tIndexAt + tCount * 8L;
+			writeFully(tFile, names(tNames, tCount));
+
+			ByteBuffer tHead = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			tHead.putInt(MAGIC).putShort(VERSION).putShort((short) 0);
+			tHead.putInt(tCount).putInt(0).putLong(tIndexAt).putLong(tNamesAt);
+			tHead.flip();
+			tFile.position(0);
+			writeFully(tFile, tHead);
+			return tCount;
+		}
+	}
+
+	/**
+	 * Lay out the name table for the first pCount names. Frames without a
+	 * name are left out.
+	 */
+	private static ByteBuffer names(String[] pNames, int pCount) throws IOException
+	{
+		byte[][] tBytes = new byte[pCount][];
+		Integer[] tOrder = new Integer[pCount];
+		int tEntries = 0;
+		long tLength = 4;
+		for (int k = 0; k < pCount; k++)
+			if (pNames[k] != null)
+			{
+				tBytes[k] = pNames[k].getBytes(StandardCharsets.UTF_8);
+				tOrder[tEntries++] = Integer.valueOf(k);
+				tLength += 12 + tBytes[k].length;
+			}
+		if (tLength > Integer.MAX_VALUE)
+			throw new IOException("Frame names are too long for a store");
+		Arrays.sort(tOrder, 0, tEntries, (a, b) -> {
+			int tDiff = Arrays.compareUnsigned(tBytes[a], tBytes[b]);
+			return (tDiff != 0) ? tDiff : a.compareTo(b);
+		});
+
+		ByteBuffer rTable = ByteBuffer.allocate((int) tLength).order(ByteOrder.LITTLE_ENDIAN);
+		rTable.putInt(tEntries);
+		int tAt = 4 + 12 * tEntries;
+		for (int e = 0; e < tEntries; e++)
+		{
+			int tk = tOrder[e].intValue();
+			rTable.putInt(tAt).putInt(tBytes[tk].length).putInt(tk);
+			tAt += tBytes[tk].length;
+		}
+		for (int e = 0; e < tEntries; e++)
+			rTable.put(tBytes[tOrder[e].intValue()]);
+		rTable.flip();
+		return rTable;
+	}
+
+	private static void pad(FileChannel pFile, long pBytes) throws IOException
+	{
+		ByteBuffer tZeros = ByteBuffer.allocate((int) Math.min(pBytes, 1 << 16));
+		while (pBytes > 0)
+		{
+			tZeros.clear().limit((int) Math.min(pBytes, tZeros.capacity()));
+			pBytes -= tZeros.remaining();
+			writeFully(pFile, tZeros);
+		}
+	}
+
+	private static void writeFully(FileChannel pFile, ByteBuffer pBuffer) throws IOException
+	{
+		while (pBuffer.hasRemaining())
+			pFile.write(pBuffer);
+	}
+
+	/**
+	 * Algebras already resolved, by name.
+	 */
+	private final HashMap<String, AlgebraAbstract>	algebras;
+
+	private final int								count;
+
+	/**
+	 * File offset of each record.
+	 */
+	private final LongBuffer						index;
+
+	/**
+	 * The mapped name table and the number of entries in it.
+	 */
+	private ByteBuffer								names;
+
+	private final int								nameCount;
+
+	private final AlgebraResolver					resolver;
+
+	/**
+	 * The record region of the file mapped WINDOW bytes at a time.
+	 */
+	private final ByteBuffer[]						windows;
+
+	private FrameStore(FileChannel pFile, AlgebraResolver pResolver) throws IOException
+	{
+		long tSize = pFile.size();
+		if (tSize < HEADER) throw new IOException("Not a frame store");
+		ByteBuffer tHead = pFile.map(FileChannel.MapMode.READ_ONLY, 0, HEADER)
+						.order(ByteOrder.LITTLE_ENDIAN);
+		if (tHead.getInt(0) != MAGIC) throw new IOException("Not a frame store");
+		short tVersion = tHead.getShort(4);
+		if (tVersion != VERSION) throw new IOException("Unsupported frame store version " + tVersion);
+		count = tHead.getInt(8);
+		long tIndexAt = tHead.getLong(16);
+		long tNamesAt = tHead.getLong(24);
+		if (count < 0 || count > Integer.MAX_VALUE / 8 || tIndexAt < HEADER
+						|| tIndexAt + count * 8L > tNamesAt)
+			throw new IOException("Frame store index is damaged");
+		if (tSize - tNamesAt < 4 || tSize - tNamesAt > Integer.MAX_VALUE)
+			throw new IOException("Frame store name table is damaged");
+
+		index = pFile.map(FileChannel.MapMode.READ_ONLY, tIndexAt, count * 8L)
+						.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		windows = new ByteBuffer[(int) ((tIndexAt + WINDOW - 1) / WINDOW)];
+		for (int w = 0; w < windows.length; w++)
+		{
+			long tFrom = w * WINDOW;
+			windows[w] = pFile.map(FileChannel.MapMode.READ_ONLY, tFrom, 
+							Math.min(WINDOW, tIndexAt - tFrom));
+		}
+		names = pFile.map(FileChannel.MapMode.READ_ONLY, tNamesAt, tSize - tNamesAt)
+						.order(ByteOrder.LITTLE_ENDIAN);
+		nameCount = names.getInt(0);
+		if (nameCount < 0 || nameCount > count || 4 + 12L * nameCount > names.capacity())
+			throw new IOException("Frame store name table is damaged");
+		resolver = pResolver;
+		algebras = new HashMap<String, AlgebraAbstract>();
+	}
+
+	/**
+	 * Let go of the mappings held by this store. The file stays mapped until
+	 * the frames already handed out are unreachable too.
+	 */
+	@Override
+	public void close()
+	{
+		Arrays.fill(windows, null);
+		names = null;
+	}
+
+	/**
+	 * Return the position of the first frame with a name or -1 if none has
+	 * it. The name table is searched where it is mapped, so nothing is
+	 * decoded beyond the few names the search compares.
+	 * 
+	 * @param pName
+	 *            String
+	 * @return int
+	 * @throws IOException
+	 *             The name table is damaged or the store is closed.
+	 */
+	public int findName(String pName) throws IOException
+	{
+		ByteBuffer tNames = names;
+		if (tNames == null) throw new IOException("Frame store is closed");
+		if (pName == null) return -1;
+		byte[] tKey = pName.getBytes(StandardCharsets.UTF_8);
+		int tLow = 0;
+		int tHigh = nameCount;
+		while (tLow < tHigh)
+		{
+			int tMid = (tLow + tHigh) >>> 1;
+			if (compareName(tNames, tMid, tKey) < 0)
+				tLow = tMid + 1;
+			else
+				tHigh = tMid;
+		}
+		if (tLow == nameCount || compareName(tNames, tLow, tKey) != 0) return -1;
+		return tNames.getInt(12 + 12 * tLow);
+	}
+
+	/**
+	 * Return one frame. A FrameRealD comes back as a view over the mapped
+	 * coefficients, so its basis can't be edited. Anything else is decoded.
+	 * 
+	 * @param pk
+	 *            int position of the frame in the store
+	 * @return FrameAbstract
+	 * @throws IOException
+	 *             The record is damaged or names an unknown algebra.
+	 */
+	public FrameAbstract get(int pk) throws IOException
+	{
+		ByteBuffer tRecord = record(pk);
+		int tStart = tRecord.position();
+		FrameBinary.Header tHead = header(tRecord);
+		if (tHead.type != FrameBinary.REAL_D)
+		{
+			tRecord.position(tStart);
+			return FrameBinary.read(tRecord, this::resolve);
+		}
+
+		AlgebraAbstract tAlg = tHead.resolve(this::resolve);
+		if (!(tAlg instanceof AlgebraRealD))
+			throw new IOException("Algebra " + tHead.algebraName + " does not suit frame type " + tHead.type);
+
+		return new FrameRealD(tHead.name, (AlgebraRealD) tAlg, 
+						BasisMatrixD.over(tRecord, tHead.directions, tHead.blades), tHead.names);
+	}
+
+	/**
+	 * Return the name of one frame without building the frame.
+	 * 
+	 * @param pk
+	 *            int position of the frame in the store
+	 * @return String
+	 * @throws IOException
+	 *             The record is damaged.
+	 */
+	public String getName(int pk) throws IOException
+	{
+		return header(record(pk)).name;
+	}
+
+	/**
+	 * Return the number of frames in the store.
+	 * 
+	 * @return int
+	 */
+	public int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Compare the name in one entry of the name table with a key, byte by
+	 * unsigned byte.
+	 */
+	private static int compareName(ByteBuffer pNames, int pEntry, byte[] pKey) throws IOException
+	{
+		int tAt = pNames.getInt(4 + 12 * pEntry);
+		int tLength = pNames.getInt(8 + 12 * pEntry);
+		if (tAt < 0 || tLength < 0 || tAt > pNames.capacity() - tLength)
+			throw new IOException("Frame store name table is damaged");
+		int tShared = Math.min(tLength, pKey.length);
+		for (int k = 0; k < tShared; k++)
+		{
+			int tDiff = (pNames.get(tAt + k) & 0xFF) - (pKey[k] & 0xFF);
+			if (tDiff != 0) return tDiff;
+		}
+		return tLength - pKey.length;
+	}
+
+	private FrameBinary.Header header(ByteBuffer pRecord) throws IOException
+	{
+		return new FrameBinary.Header(pRecord);
+	}
+
+	/**
+	 * Return a little-endian view of the window holding a record, positioned
+	 * at the record's start.
+	 */
+	private ByteBuffer record(int pk) throws IOException
+	{
+		if (pk < 0 || pk >= count) throw new IndexOutOfBoundsException("No frame " + pk + " in store");
+		long tAt = index.get(pk);
+		int tWindow = (int) (tAt / WINDOW);
+		if (tAt < HEADER || tWindow >= windows.length) throw new IOException("Frame store index is damaged");
+		ByteBuffer tMap = windows[tWindow];
+		if (tMap == null) throw new IOException("Frame store is closed");
+		ByteBuffer rRecord = tMap.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		rRecord.position((int) (tAt - tWindow * WINDOW));
+		return rRecord;
+	}
+
+	/**
+	 * Resolve an algebra name once per store.
+	 */
+	private AlgebraAbstract resolve(String pName)
+	{
+		synchronized (algebras)
+		{
+			AlgebraAbstract rAlg = algebras.get(pName);
+			if (rAlg == null)
+			{
+				rAlg = resolver.resolve(pName);
+				if (rAlg != null) algebras.put(pName, rAlg);
+			}
+			return rAlg;
+		}
+	}
+}
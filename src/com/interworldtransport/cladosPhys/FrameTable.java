@@ -0,0 +1,149 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTable<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTable<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+/**
+ * The frame table holds the products of a frame's reference directions with
+ * every frame blade, already expressed in frame coordinates. Once built, a
+ * product against a reference direction is one matrix-vector product.
+ * <p>
+ * The change of basis between default and frame blades comes from the frame's
+ * FrameTransform, which the table keeps a reference to.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class FrameTable
+{
+	/**
+	 * Build the table for a frame. The basis is packed one direction per row
+	 * with one column per default blade.
+	 *
+	 * @param pIndex
+	 *            ProductIndex of the frame's algebra
+	 * @param pTransform
+	 *            FrameTransform of the frame
+	 * @param pBasis
+	 *            double[] packed reference directions
+	 * @return FrameTable or null if there is no transform
+	 */
+	static FrameTable build(ProductIndex pIndex, FrameTransform pTransform, double[] pBasis)
+	{
+		if (pTransform == null) return null;
+		int tB = pTransform.blades;
+		int tOrder = pTransform.order;
+
+		// Each frame blade fills its own column of every table, so the blades
+		// can be worked on independently.
+		double[] tLeft = new double[tOrder * tB * tB];
+		double[] tRight = new double[tOrder * tB * tB];
+		FrameMath.rows(0, tB, tB).forEach(k -> {
+			double[] tBlade = new double[tB];
+			double[] tProduct = new double[tB];
+			double[] tColumn = new double[tB];
+			pTransform.blade(k, tBlade, 0);
+			for (int i = 0; i < tOrder; i++)
+			{
+				int tOff = i * tB * tB;
+				pIndex.multiply(tBlade, 0, pBasis, i * tB, tProduct, 0);
+				pTransform.toFrame(tProduct, tColumn);
+				for (int r = 0; r < tB; r++)
+					tLeft[tOff + r * tB + k] = tColumn[r];
+
+				pIndex.multiply(pBasis, i * tB, tBlade, 0, tProduct, 0);
+				pTransform.toFrame(tProduct, tColumn);
+				for (int r = 0; r < tB; r++)
+					tRight[tOff + r * tB + k] = tColumn[r];
+			}
+		});
+		return new FrameTable(pTransform, tLeft, tRight);
+	}
+
+	/**
+	 * Number of blades in the algebra.
+	 */
+	final int		blades;
+
+	/**
+	 * Number of reference directions in the frame.
+	 */
+	final int		order;
+
+	/**
+	 * Change of basis between default and frame coordinates.
+	 */
+	final FrameTransform	transform;
+
+	/**
+	 * One matrix per direction giving (x * direction) in frame coordinates.
+	 */
+	final double[]	left;
+
+	/**
+	 * One matrix per direction giving (direction * x) in frame coordinates.
+	 */
+	final double[]	right;
+
+	private FrameTable(FrameTransform pTransform, double[] pLeft, double[] pRight)
+	{
+		blades = pTransform.blades;
+		order = pTransform.order;
+		transform = pTransform;
+		left = pLeft;
+		right = pRight;
+	}
+
+	/**
+	 * Frame coordinates of (x * direction) where x is given in frame
+	 * coordinates.
+	 *
+	 * @param pDirection
+	 *            int index of the reference direction
+	 * @param pX
+	 *            double[] frame coordinates of x
+	 * @param pOut
+	 *            double[] frame coordinates of the product
+	 */
+	void multiplyLeft(int pDirection, double[] pX, double[] pOut)
+	{
+		FrameKernel.KERNEL.multiply(left, pDirection * blades * blades, blades, pX, pOut);
+	}
+
+	/**
+	 * Frame coordinates of (direction * x) where x is given in frame
+	 * coordinates.
+	 *
+	 * @param pDirection
+	 *            int index of the reference direction
+	 * @param pX
+	 *            double[] frame coordinates of x
+	 * @param pOut
+	 *            double[] frame coordinates of the product
+	 */
+	void multiplyRight(int pDirection, double[] pX, double[] pOut)
+	{
+		FrameKernel.KERNEL.multiply(right, pDirection * blades * blades, blades, pX, pOut);
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTableComplex<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTableComplex<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+/**
+ * The complex frame table is the FrameTable for frames over the complex
+ * numbers. Every matrix is held as a real part and an imaginary part so no
+ * complex number objects are made while building or applying it.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class FrameTableComplex
+{
+	/**
+	 * Build the table for a complex frame. The basis is packed one direction
+	 * per row with one column per default blade.
+	 *
+	 * @param pIndex
+	 *            ProductIndex of the frame's algebra
+	 * @param pRe
+	 *            double[] real parts of the packed reference directions
+	 * @param pIm
+	 *            double[] imaginary parts of the packed reference directions
+	 * @param pOrder
+	 *            int number of reference directions
+	 * @return FrameTableComplex or null if the directions do not span the
+	 *         algebra
+	 */
+	static FrameTableComplex build(ProductIndex pIndex, double[] pRe, double[] pIm, int pOrder)
+	{
+		if (pOrder != pIndex.generators) return null;
+		int tB = pIndex.blades;
+
+		double[] tSubRe = new double[tB * tB];
+		double[] tSubIm = new double[tB * tB];
+		tSubRe[0] = 1.0d;
+		for (int tMask = 1; tMask < tB; tMask++)
+		{
+			int tHigh = 31 - Integer.numberOfLeadingZeros(tMask);
+			pIndex.multiply(tSubRe, tSubIm, (tMask ^ (1 << tHigh)) * tB,
+							pRe, pIm, tHigh * tB,
+							tSubRe, tSubIm, tMask * tB);
+		}
+
+		double[] tBladeRe = new double[tB * tB];
+		double[] tBladeIm = new double[tB * tB];
+		double[] tToDefaultRe = new double[tB * tB];
+		double[] tToDefaultIm = new double[tB * tB];
+		for (int k = 0; k < tB; k++)
+		{
+			int tFrom = pIndex.bladeMask[k] * tB;
+			double tSign = pIndex.bladeSign[k];
+			for (int r = 0; r < tB; r++)
+			{
+				double tR = tSign * tSubRe[tFrom + r];
+				double tI = tSign * tSubIm[tFrom + r];
+				tBladeRe[k * tB + r] = tR;
+				tBladeIm[k * tB + r] = tI;
+				tToDefaultRe[r * tB + k] = tR;
+				tToDefaultIm[r * tB + k] = tI;
+			}
+		}
+		double[][] tToFrame = FrameMath.invert(tToDefaultRe, tToDefaultIm, tB, FrameMath.PIVOT_TOLERANCE);
+		if (tToFrame == null) return null;
+
+		double[] tLeftRe = new double[pOrder * tB * tB];
+		double[] tLeftIm = new double[pOrder * tB * tB];
+		double[] tRightRe = new double[pOrder * tB * tB];
+		double[] tRightIm = new double[pOrder * tB * tB];
+		// Each frame blade fills its own column of every table, so the blades
+		// can be worked on independently.
+		FrameMath.rows(0, tB, tB).forEach(k -> {
+			double[] tProdRe = new double[tB];
+			double[] tProdIm = new double[tB];
+			double[] tColRe = new double[tB];
+			double[] tColIm = new double[tB];
+			for (int i = 0; i < pOrder; i++)
+			{
+				int tOff = i * tB * tB;
+				pIndex.multiply(tBladeRe, tBladeIm, k * tB, pRe, pIm, i * tB, tProdRe, tProdIm, 0);
+				FrameMath.multiply(tToFrame[0], tToFrame[1], 0, tB, tProdRe, tProdIm, tColRe, tColIm);
+				for (int r = 0; r < tB; r++)
+				{
+					tLeftRe[tOff + r * tB + k] = tColRe[r];
+					tLeftIm[tOff + r * tB + k] = tColIm[r];
+				}
+
+				pIndex.multiply(pRe, pIm, i * tB, tBladeRe, tBladeIm, k * tB, tProdRe, tProdIm, 0);
+				FrameMath.multiply(tToFrame[0], tToFrame[1], 0, tB, tProdRe, tProdIm, tColRe, tColIm);
+				for (int r = 0; r < tB; r++)
+				{
+					tRightRe[tOff + r * tB + k] = tColRe[r];
+					tRightIm[tOff + r * tB + k] = tColIm[r];
+				}
+			}
+		});
+		return new FrameTableComplex(tB, pOrder,
+						new double[][] { tToDefaultRe, tToDefaultIm }, tToFrame,
+						new double[][] { tLeftRe, tLeftIm },
+						new double[][] { tRightRe, tRightIm });
+	}
+
+	/**
+	 * Number of blades in the algebra.
+	 */
+	final int			blades;
+
+	/**
+	 * Number of reference directions in the frame.
+	 */
+	final int			order;
+
+	/**
+	 * Real and imaginary parts of the blade matrix taking frame coordinates to
+	 * default coordinates.
+	 */
+	final double[][]	toDefault;
+
+	/**
+	 * Real and imaginary parts of the inverse blade matrix taking default
+	 * coordinates to frame coordinates.
+	 */
+	final double[][]	toFrame;
+
+	/**
+	 * Real and imaginary parts of one matrix per direction giving
+	 * (x * direction) in frame coordinates.
+	 */
+	final double[][]	left;
+
+	/**
+	 * Real and imaginary parts of one matrix per direction giving
+	 * (direction * x) in frame coordinates.
+	 */
+	final double[][]	right;
+
+	private FrameTableComplex(	int pBlades, int pOrder,
+								double[][] pToDefault, double[][] pToFrame,
+								double[][] pLeft, double[][] pRight)
+	{
+		blades = pBlades;
+		order = pOrder;
+		toDefault = pToDefault;
+		toFrame = pToFrame;
+		left = pLeft;
+		right = pRight;
+	}
+
+	/**
+	 * Frame coordinates of (x * direction) where x is given in frame
+	 * coordinates.
+	 *
+	 * @param pDirection
+	 *            int index of the reference direction
+	 * @param pXRe
+	 *            double[] real part of x
+	 * @param pXIm
+	 *            double[] imaginary part of x
+	 * @param pOutRe
+	 *            double[] real part of the product
+	 * @param pOutIm
+	 *            double[] imaginary part of the product
+	 */
+	void multiplyLeft(int pDirection, double[] pXRe, double[] pXIm, double[] pOutRe, double[] pOutIm)
+	{
+		FrameMath.multiply(left[0], left[1], pDirection * blades * blades, blades,
+						pXRe, pXIm, pOutRe, pOutIm);
+	}
+
+	/**
+	 * Frame coordinates of (direction * x) where x is given in frame
+	 * coordinates.
+	 *
+	 * @param pDirection
+	 *            int index of the reference direction
+	 * @param pXRe
+	 *            double[] real part of x
+	 * @param pXIm
+	 *            double[] imaginary part of x
+	 * @param pOutRe
+	 *            double[] real part of the product
+	 * @param pOutIm
+	 *            double[] imaginary part of the product
+	 */
+	void multiplyRight(int pDirection, double[] pXRe, double[] pXIm, double[] pOutRe, double[] pOutIm)
+	{
+		FrameMath.multiply(right[0], right[1], pDirection * blades * blades, blades,
+						pXRe, pXIm, pOutRe, pOutIm);
+	}
+}
@@ -0,0 +1,209 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTransform<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameTransform<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+/**
+ * The frame transform re-expresses coefficients between the default blades of
+ * an algebra and the blades of a frame. Frame blades are the ordered geometric
+ * products of the reference directions, chosen so they line up with the
+ * default blades. The transform holds the blade matrix and its inverse, so
+ * each conversion is one matrix-vector product.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class FrameTransform
+{
+	/**
+	 * Build the transform for a frame. The basis is packed one direction per
+	 * row with one column per default blade.
+	 *
+	 * @param pIndex
+	 *            ProductIndex of the frame's algebra
+	 * @param pBasis
+	 *            double[] packed reference directions
+	 * @param pOrder
+	 *            int number of reference directions
+	 * @return FrameTransform or null if the directions do not span the algebra
+	 */
+	static FrameTransform build(ProductIndex pIndex, double[] pBasis, int pOrder)
+	{
+		if (pOrder != pIndex.generators) return null;
+		int tB = pIndex.blades;
+
+		// Products of direction subsets, built up one direction at a time.
+		double[] tSubset = new double[tB * tB];
+		tSubset[0] = 1.0d;
+		for (int tMask = 1; tMask < tB; tMask++)
+		{
+			int tHigh = 31 - Integer.numberOfLeadingZeros(tMask);
+			pIndex.multiply(tSubset, (tMask ^ (1 << tHigh)) * tB,
+							pBasis, tHigh * tB,
+							tSubset, tMask * tB);
+		}
+
+		// Frame blade k is stored as column k of toDefault.
+		double[] tToDefault = new double[tB * tB];
+		for (int k = 0; k < tB; k++)
+		{
+			int tFrom = pIndex.bladeMask[k] * tB;
+			double tSign = pIndex.bladeSign[k];
+			for (int r = 0; r < tB; r++)
+				tToDefault[r * tB + k] = tSign * tSubset[tFrom + r];
+		}
+		double[] tToFrame = FrameMath.invert(tToDefault, tB, FrameMath.PIVOT_TOLERANCE);
+		if (tToFrame == null) return null;
+		return new FrameTransform(tB, pOrder, tToDefault, tToFrame);
+	}
+
+	/**
+	 * Number of blades in the algebra.
+	 */
+	final int		blades;
+
+	/**
+	 * Number of reference directions in the frame.
+	 */
+	final int		order;
+
+	/**
+	 * Blade matrix taking frame coordinates to default coordinates.
+	 */
+	final double[]	toDefault;
+
+	/**
+	 * Inverse of the blade matrix taking default coordinates to frame
+	 * coordinates.
+	 */
+	final double[]	toFrame;
+
+	/**
+	 * toDefault stored column-major for the batch kernel. Row k is frame
+	 * blade k in default coordinates.
+	 */
+	final double[]	toDefaultCols;
+
+	/**
+	 * toFrame stored column-major for the batch kernel.
+	 */
+	final double[]	toFrameCols;
+
+	private FrameTransform(int pBlades, int pOrder, double[] pToDefault, double[] pToFrame)
+	{
+		blades = pBlades;
+		order = pOrder;
+		toDefault = pToDefault;
+		toFrame = pToFrame;
+		toDefaultCols = new double[pBlades * pBlades];
+		toFrameCols = new double[pBlades * pBlades];
+		for (int r = 0; r < pBlades; r++)
+			for (int c = 0; c < pBlades; c++)
+			{
+				toDefaultCols[c * pBlades + r] = pToDefault[r * pBlades + c];
+				toFrameCols[c * pBlades + r] = pToFrame[r * pBlades + c];
+			}
+	}
+
+	/**
+	 * Copy frame blade k, expressed in default coordinates, into a row.
+	 *
+	 * @param pK
+	 *            int index of the frame blade
+	 * @param pOut
+	 *            double[] receives the default coordinates of the blade
+	 * @param pOff
+	 *            int position in pOut of the first coordinate
+	 */
+	void blade(int pK, double[] pOut, int pOff)
+	{
+		System.arraycopy(toDefaultCols, pK * blades, pOut, pOff, blades);
+	}
+
+	/**
+	 * Re-express default coordinates in frame coordinates.
+	 *
+	 * @param pX
+	 *            double[] default coordinates
+	 * @param pOut
+	 *            double[] receives the frame coordinates
+	 */
+	void toFrame(double[] pX, double[] pOut)
+	{
+		FrameKernel.KERNEL.multiply(toFrame, 0, blades, pX, pOut);
+	}
+
+	/**
+	 * Re-express frame coordinates in default coordinates.
+	 *
+	 * @param pX
+	 *            double[] frame coordinates
+	 * @param pOut
+	 *            double[] receives the default coordinates
+	 */
+	void toDefault(double[] pX, double[] pOut)
+	{
+		FrameKernel.KERNEL.multiply(toDefault, 0, blades, pX, pOut);
+	}
+
+	/**
+	 * Re-express a batch of packed default coordinate vectors in frame
+	 * coordinates.
+	 *
+	 * @param pIn
+	 *            double[] packed default coordinates
+	 * @param pInOff
+	 *            int offset of the first vector
+	 * @param pCount
+	 *            int number of vectors
+	 * @param pOut
+	 *            double[] receives the packed frame coordinates
+	 * @param pOutOff
+	 *            int offset of the first result
+	 */
+	void toFrame(double[] pIn, int pInOff, int pCount, double[] pOut, int pOutOff)
+	{
+		FrameKernel.KERNEL.multiplyBatch(toFrameCols, blades, pIn, pInOff, pCount, pOut, pOutOff);
+	}
+
+	/**
+	 * Re-express a batch of packed frame coordinate vectors in default
+	 * coordinates.
+	 *
+	 * @param pIn
+	 *            double[] packed frame coordinates
+	 * @param pInOff
+	 *            int offset of the first vector
+	 * @param pCount
+	 *            int number of vectors
+	 * @param pOut
+	 *            double[] receives the packed default coordinates
+	 * @param pOutOff
+	 *            int offset of the first result
+	 */
+	void toDefault(double[] pIn, int pInOff, int pCount, double[] pOut, int pOutOff)
+	{
+		FrameKernel.KERNEL.multiplyBatch(toDefaultCols, blades, pIn, pInOff, pCount, pOut, pOutOff);
+	}
+}
@@ -0,0 +1,371 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameXMLReader<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameXMLReader<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.interworldtransport.cladosG.*;
+
+/**
+ * The frame XML reader rebuilds frames from the XML that FrameXMLWriter and
+ * the frames' toXMLString produce. It pulls events with StAX and hands back
+ * one frame per call to next, so a dump holding many frames is read in
+ * memory bounded by the largest single frame.
+ * <p>
+ * Each frame is rebuilt from the Coefficients list of its Direction elements
+ * as a matrix-backed frame. Its monads are only made when something asks for
+ * them. The embedded algebra and monad markup is skipped, so the
+ * coefficients the monad XML repeats are never parsed. The size attribute only
+ * presizes the arrays and may be missing. It is not trusted beyond that, so
+ * no more room is made than the algebra's generators need, and a frame with
+ * more directions than generators is rejected. A Frame element without a type
+ * attribute, as the older toXMLString wrote, is read as the frame type that
+ * suits its algebra. Algebras are found
+ * by name through an AlgebraResolver, and each name is resolved once per
+ * reader, so frames sharing an algebra share one algebra object.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameXMLReader implements AutoCloseable
+{
+	/**
+	 * Rebuild the first frame in an XML string.
+	 * 
+	 * @param pXML
+	 *            String holding at least one Frame element
+	 * @param pResolver
+	 *            AlgebraResolver
+	 * @return FrameAbstract or null if there is no frame
+	 * @throws XMLStreamException
+	 *             The XML is malformed or names an unknown algebra.
+	 */
+	public static FrameAbstract fromXMLString(String pXML, AlgebraResolver pResolver) throws XMLStreamException
+	{
+		try (FrameXMLReader tReader = new FrameXMLReader(new StringReader(pXML), pResolver))
+		{
+			return tReader.next();
+		}
+	}
+
+	/**
+	 * A factory that reads untrusted input safely.
+	 */
+	private static XMLInputFactory factory()
+	{
+		XMLInputFactory rFactory = XMLInputFactory.newInstance();
+		rFactory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		rFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return rFactory;
+	}
+
+	private final HashMap<String, AlgebraAbstract>	algebras;
+
+	private final XMLStreamReader					in;
+
+	private final AlgebraResolver					resolver;
+
+	/**
+	 * Reader constructor over a byte stream.
+	 * 
+	 * @param pIn
+	 *            InputStream holding the XML
+	 * @param pResolver
+	 *            AlgebraResolver
+	 * @throws XMLStreamException
+	 *             The stream can't be opened as XML.
+	 */
+	public FrameXMLReader(InputStream pIn, AlgebraResolver pResolver) throws XMLStreamException
+	{
+		in = factory().createXMLStreamReader(pIn);
+		resolver = pResolver;
+		algebras = new HashMap<String, AlgebraAbstract>();
+	}
+
+	/**
+	 * Reader constructor over a character stream.
+	 * 
+	 * @param pIn
+	 *            Reader holding the XML
+	 * @param pResolver
+	 *            AlgebraResolver
+	 * @throws XMLStreamException
+	 *             The stream can't be opened as XML.
+	 */
+	public FrameXMLReader(Reader pIn, AlgebraResolver pResolver) throws XMLStreamException
+	{
+		in = factory().createXMLStreamReader(pIn);
+		resolver = pResolver;
+		algebras = new HashMap<String, AlgebraAbstract>();
+	}
+
+	/**
+	 * Return the algebra with the given name, resolving it the first time.
+	 */
+	private AlgebraAbstract algebra(String pName) throws XMLStreamException
+	{
+		AlgebraAbstract rAlg = algebras.get(pName);
+		if (rAlg == null)
+		{
+			rAlg = resolver.resolve(pName);
+			if (rAlg == null)
+				throw new XMLStreamException("Unknown algebra " + pName, in.getLocation());
+			algebras.put(pName, rAlg);
+		}
+		return rAlg;
+	}
+
+	/**
+	 * Close the XML stream. The underlying stream stays open.
+	 * 
+	 * @throws XMLStreamException
+	 *             from the XML stream
+	 */
+	@Override
+	public void close() throws XMLStreamException
+	{
+		in.close();
+	}
+
+	/**
+	 * Read the next frame.
+	 * 
+	 * @return FrameAbstract or null at the end of the document
+	 * @throws XMLStreamException
+	 *             The XML is malformed or names an unknown algebra.
+	 */
+	public FrameAbstract next() throws XMLStreamException
+	{
+		while (in.hasNext())
+			if (in.next() == XMLStreamConstants.START_ELEMENT 
+							&& "Frame".equals(in.getLocalName()))
+			{
+				long tStart = FrameMetrics.start();
+				FrameAbstract rFrame = readFrame();
+				FrameMetrics.stop(FrameMetrics.Operation.XML_READ, tStart, rFrame);
+				return rFrame;
+			}
+		return null;
+	}
+
+	/**
+	 * Parse a whitespace separated list of numbers into pRe, and pIm when it
+	 * is given, starting at pOff.
+	 */
+	private void readCoefficients(String pText, double[] pRe, double[] pIm, int pOff, int pBlades) 
+					throws XMLStreamException
+	{
+		int tCount = 0;
+		int tWant = (pIm == null) ? pBlades : 2 * pBlades;
+		int tEnd = pText.length();
+		int tAt = 0;
+		while (tAt < tEnd)
+		{
+			while (tAt < tEnd && Character.isWhitespace(pText.charAt(tAt)))
+				tAt++;
+			if (tAt == tEnd) break;
+			int tStart = tAt;
+			while (tAt < tEnd && !Character.isWhitespace(pText.charAt(tAt)))
+				tAt++;
+			if (tCount == tWant) tCount++;
+			if (tCount > tWant) break;
+			double tValue;
+			try
+			{
+				tValue = Double.parseDouble(pText.substring(tStart, tAt));
+			}
+			catch (NumberFormatException e)
+			{
+				throw new XMLStreamException("Bad coefficient " + pText.substring(tStart, tAt), 
+								in.getLocation());
+			}
+			if (pIm == null)
+				pRe[pOff + tCount] = tValue;
+			else if ((tCount & 1) == 0)
+				pRe[pOff + tCount / 2] = tValue;
+			else
+				pIm[pOff + tCount / 2] = tValue;
+			tCount++;
+		}
+		if (tCount != tWant)
+			throw new XMLStreamException("Expected " + tWant + " coefficients per direction", 
+							in.getLocation());
+	}
+
+	/**
+	 * Read one Frame element. The reader sits on its start tag.
+	 */
+	private FrameAbstract readFrame() throws XMLStreamException
+	{
+		String tType = in.getAttributeValue(null, "type");
+		String tName = in.getAttributeValue(null, "name");
+		String tSize = in.getAttributeValue(null, "size");
+		AlgebraAbstract tAlg = algebra(in.getAttributeValue(null, "algebra"));
+		if (tType == null) tType = typeOf(tAlg);
+		boolean tComplex = tType.startsWith("Complex");
+
+		int tB = tAlg.getGBasis().getBladeCount();
+		int tMost = tAlg.getGProduct().getGradeCount() - 1;
+		int tRoom = Math.max(1, Math.min(size(tSize), tMost));
+		double[] tRe = new double[tRoom * tB];
+		double[] tIm = tComplex ? new double[tRoom * tB] : null;
+		ArrayList<String> tNames = new ArrayList<String>(tRoom);
+		String tDirection = null;
+
+		while (true)
+		{
+			int tEvent = in.next();
+			if (tEvent == XMLStreamConstants.END_ELEMENT && "Frame".equals(in.getLocalName()))
+				break;
+			if (tEvent != XMLStreamConstants.START_ELEMENT) continue;
+
+			String tTag = in.getLocalName();
+			if ("Direction".equals(tTag))
+				tDirection = in.getAttributeValue(null, "name");
+			else if ("Coefficients".equals(tTag) && tDirection != null)
+			{
+				int tN = tNames.size();
+				if (tN >= tMost)
+					throw new XMLStreamException("Frame has more directions than its algebra has generators", 
+									in.getLocation());
+				if ((tN + 1) * tB > tRe.length)
+				{
+					int tLength = Math.min(2 * tRe.length, tMost * tB);
+					tRe = Arrays.copyOf(tRe, tLength);
+					if (tComplex) tIm = Arrays.copyOf(tIm, tLength);
+				}
+				readCoefficients(in.getElementText(), tRe, tIm, tN * tB, tB);
+				tNames.add(tDirection);
+				tDirection = null;
+			}
+			else
+				skipElement();
+		}
+		return toFrame(tType, tName, tAlg, tNames, tRe, tIm);
+	}
+
+	/**
+	 * Parse the size attribute of a Frame element. A missing one gives the
+	 * default room.
+	 */
+	private int size(String pSize) throws XMLStreamException
+	{
+		if (pSize == null) return 4;
+		try
+		{
+			return Integer.parseInt(pSize.trim());
+		}
+		catch (NumberFormatException e)
+		{
+			throw new XMLStreamException("Bad frame size " + pSize, in.getLocation());
+		}
+	}
+
+	/**
+	 * Skip the element the reader sits on, including everything inside it.
+	 */
+	private void skipElement() throws XMLStreamException
+	{
+		int tDepth = 1;
+		while (tDepth > 0)
+		{
+			int tEvent = in.next();
+			if (tEvent == XMLStreamConstants.START_ELEMENT)
+				tDepth++;
+			else if (tEvent == XMLStreamConstants.END_ELEMENT) 
+				tDepth--;
+		}
+	}
+
+	/**
+	 * Build a matrix-backed frame of the given type.
+	 */
+	private FrameAbstract toFrame(	String pType, String pName, AlgebraAbstract pAlg, 
+									ArrayList<String> pNames, double[] pRe, double[] pIm) 
+					throws XMLStreamException
+	{
+		int tB = pAlg.getGBasis().getBladeCount();
+		int tN = pNames.size();
+		int tLength = tN * tB;
+		try
+		{
+			switch (pType)
+			{
+				case "RealD":
+					return new FrameRealD(pName, (AlgebraRealD) pAlg, 
+									new BasisMatrixD(tN, tB, Arrays.copyOf(pRe, tLength)), pNames);
+				case "RealF":
+					return new FrameRealF(pName, (AlgebraRealF) pAlg, 
+									new BasisMatrixF(tN, tB, toFloat(pRe, tLength)), pNames);
+				case "ComplexD":
+					return new FrameComplexD(pName, (AlgebraComplexD) pAlg, 
+									new BasisMatrixComplexD(tN, tB, Arrays.copyOf(pRe, tLength), 
+													Arrays.copyOf(pIm, tLength)), pNames);
+				case "ComplexF":
+					return new FrameComplexF(pName, (AlgebraComplexF) pAlg, 
+									new BasisMatrixComplexF(tN, tB, toFloat(pRe, tLength), 
+													toFloat(pIm, tLength)), pNames);
+				default:
+					throw new XMLStreamException("Unknown frame type " + pType, in.getLocation());
+			}
+		}
+		catch (ClassCastException e)
+		{
+			throw new XMLStreamException("Algebra " + pAlg.getAlgebraName() 
+							+ " does not suit a " + pType + " frame", in.getLocation());
+		}
+	}
+
+	/**
+	 * Return the frame type that goes with an algebra. Frames written before
+	 * the type attribute existed are read as this type.
+	 */
+	private String typeOf(AlgebraAbstract pAlg) throws XMLStreamException
+	{
+		if (pAlg instanceof AlgebraRealD) return "RealD";
+		if (pAlg instanceof AlgebraRealF) return "RealF";
+		if (pAlg instanceof AlgebraComplexD) return "ComplexD";
+		if (pAlg instanceof AlgebraComplexF) return "ComplexF";
+		throw new XMLStreamException("Frame has no type", in.getLocation());
+	}
+
+	private static float[] toFloat(double[] pIn, int pLength)
+	{
+		float[] rOut = new float[pLength];
+		for (int k = 0; k < pLength; k++)
+			rOut[k] = (float) pIn[k];
+		return rOut;
+	}
+}
@@ -0,0 +1,357 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameXMLWriter<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.FrameXMLWriter<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.interworldtransport.cladosG.*;
+
+/**
+ * The frame XML writer streams frames straight to a Writer so exporting many
+ * frames never builds one large string. Each monad is still rendered by its
+ * own toXMLString and written as soon as it is ready.
+ * <p>
+ * A frame is written as a Frame element with type, name, algebra and size
+ * attributes. The algebra element follows, then one Direction element per
+ * basis monad. A Direction holds the monad's coefficients as a plain list,
+ * which FrameXMLReader reads back, followed by the monad's own XML. The
+ * monad XML repeats the coefficients. It stays so documents read the same
+ * as they always have, and the reader skips it.
+ * When the writer is told to reference algebras by name, the algebra element
+ * is left out and a reader has to find the algebra from the algebra
+ * attribute. That saves re-emitting the same algebra for every frame in a
+ * large export.
+ * <p>
+ * Before this writer, toXMLString wrote no type, and FrameRealF wrote its
+ * direction count as frame size="n". That is not a legal attribute and no
+ * XML parser reads it, so every frame type now writes the count as size.
+ * FrameXMLReader reads the current form and also frames with no type or
+ * size.
+ * 
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+public final class FrameXMLWriter
+{
+	/**
+	 * Escape the characters that may not appear in an attribute value.
+	 * 
+	 * @param pText
+	 *            String
+	 * @return String
+	 */
+	static String escape(String pText)
+	{
+		if (pText == null) return "";
+		StringBuilder rB = null;
+		for (int k = 0; k < pText.length(); k++)
+		{
+			char tC = pText.charAt(k);
+			String tSub;
+			switch (tC)
+			{
+				case '&':	tSub = "&amp;";		break;
+				case '<':	tSub = "&lt;";		break;
+				case '>':	tSub = "&gt;";		break;
+				case '"':	tSub = "&quot;";	break;
+				case '\'':	tSub = "&apos;";	break;
+				default:	tSub = null;
+			}
+			if (tSub == null)
+			{
+				if (rB != null) rB.append(tC);
+				continue;
+			}
+			if (rB == null) rB = new StringBuilder(pText.length() + 16).append(pText, 0, k);
+			rB.append(tSub);
+		}
+		return (rB == null) ? pText : rB.toString();
+	}
+
+	private final boolean	algebraByName;
+
+	private final Writer	out;
+
+	/**
+	 * Writer constructor that embeds the algebra in every frame.
+	 * 
+	 * @param pOut
+	 *            Writer that receives the XML
+	 */
+	public FrameXMLWriter(Writer pOut)
+	{
+		this(pOut, false);
+	}
+
+	/**
+	 * Writer constructor.
+	 * 
+	 * @param pOut
+	 *            Writer that receives the XML
+	 * @param pAlgebraByName
+	 *            boolean reference algebras by name instead of embedding them
+	 */
+	public FrameXMLWriter(Writer pOut, boolean pAlgebraByName)
+	{
+		out = pOut;
+		algebraByName = pAlgebraByName;
+	}
+
+	/**
+	 * Writer constructor for a byte stream. The XML is encoded as UTF-8 and
+	 * buffered, so call flush when done.
+	 * 
+	 * @param pOut
+	 *            OutputStream that receives the XML
+	 * @param pAlgebraByName
+	 *            boolean reference algebras by name instead of embedding them
+	 */
+	public FrameXMLWriter(OutputStream pOut, boolean pAlgebraByName)
+	{
+		this(new BufferedWriter(new OutputStreamWriter(pOut, StandardCharsets.UTF_8)), pAlgebraByName);
+	}
+
+	/**
+	 * Flush the underlying writer.
+	 * 
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Report whether algebras are referenced by name instead of embedded.
+	 * 
+	 * @return boolean
+	 */
+	public boolean isAlgebraByName()
+	{
+		return algebraByName;
+	}
+
+	/**
+	 * Write a FrameComplexD.
+	 * 
+	 * @param pF
+	 *            FrameComplexD
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void write(FrameComplexD pF) throws IOException
+	{
+		long tStart = FrameMetrics.start();
+		writeStart(pF, "ComplexD");
+		if (!algebraByName)
+			out.write(AlgebraComplexD.toXMLString((AlgebraComplexD) pF.getAlgebra()));
+		if (pF.getFBasis() != null)
+		{
+			int tB = pF.getAlgebra().getGBasis().getBladeCount();
+			double[] tRe = new double[tB];
+			double[] tIm = new double[tB];
+			for (MonadComplexD tM : pF.getFBasis())
+			{
+				writeDirectionStart(tM.getName());
+				FrameComplexD.readCoefficients(tM, tRe, tIm, 0);
+				writeCoefficients(tRe, tIm, false);
+				out.write(MonadComplexD.toXMLString(tM));
+				writeDirectionEnd();
+			}
+		}
+		writeEnd();
+		FrameMetrics.stop(FrameMetrics.Operation.XML_WRITE, tStart, pF);
+	}
+
+	/**
+	 * Write a FrameComplexF.
+	 * 
+	 * @param pF
+	 *            FrameComplexF
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void write(FrameComplexF pF) throws IOException
+	{
+		long tStart = FrameMetrics.start();
+		writeStart(pF, "ComplexF");
+		if (!algebraByName)
+			out.write(AlgebraComplexF.toXMLString((AlgebraComplexF) pF.getAlgebra()));
+		if (pF.getFBasis() != null)
+		{
+			int tB = pF.getAlgebra().getGBasis().getBladeCount();
+			double[] tRe = new double[tB];
+			double[] tIm = new double[tB];
+			for (MonadComplexF tM : pF.getFBasis())
+			{
+				writeDirectionStart(tM.getName());
+				FrameComplexF.readCoefficients(tM, tRe, tIm, 0);
+				writeCoefficients(tRe, tIm, true);
+				out.write(MonadComplexF.toXMLString(tM));
+				writeDirectionEnd();
+			}
+		}
+		writeEnd();
+		FrameMetrics.stop(FrameMetrics.Operation.XML_WRITE, tStart, pF);
+	}
+
+	/**
+	 * Write a FrameRealD.
+	 * 
+	 * @param pF
+	 *            FrameRealD
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void write(FrameRealD pF) throws IOException
+	{
+		long tStart = FrameMetrics.start();
+		// Read one published state, not a mix of two.
+		pF = pF.view();
+		writeStart(pF, "RealD");
+		if (!algebraByName)
+			out.write(AlgebraRealD.toXMLString((AlgebraRealD) pF.getAlgebra()));
+		if (pF.getFBasis() != null)
+		{
+			double[] tC = new double[pF.getAlgebra().getGBasis().getBladeCount()];
+			for (MonadRealD tM : pF.getFBasis())
+			{
+				writeDirectionStart(tM.getName());
+				writeCoefficients(FrameRealD.readCoefficients(tM, tC, 0), null, false);
+				out.write(MonadRealD.toXMLString(tM));
+				writeDirectionEnd();
+			}
+		}
+		writeEnd();
+		FrameMetrics.stop(FrameMetrics.Operation.XML_WRITE, tStart, pF);
+	}
+
+	/**
+	 * Write a FrameRealF.
+	 * 
+	 * @param pF
+	 *            FrameRealF
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void write(FrameRealF pF) throws IOException
+	{
+		long tStart = FrameMetrics.start();
+		writeStart(pF, "RealF");
+		if (!algebraByName)
+			out.write(AlgebraRealF.toXMLString((AlgebraRealF) pF.getAlgebra()));
+		if (pF.getFBasis() != null)
+		{
+			double[] tC = new double[pF.getAlgebra().getGBasis().getBladeCount()];
+			for (MonadRealF tM : pF.getFBasis())
+			{
+				writeDirectionStart(tM.getName());
+				writeCoefficients(FrameRealF.readCoefficients(tM, tC, 0), null, true);
+				out.write(MonadRealF.toXMLString(tM));
+				writeDirectionEnd();
+			}
+		}
+		writeEnd();
+		FrameMetrics.stop(FrameMetrics.Operation.XML_WRITE, tStart, pF);
+	}
+
+	/**
+	 * Write the coefficients of one direction as a whitespace separated list.
+	 * Complex values are written as real then imaginary parts.
+	 */
+	private void writeCoefficients(double[] pRe, double[] pIm, boolean pSingle) throws IOException
+	{
+		out.write("<Coefficients>");
+		for (int k = 0; k < pRe.length; k++)
+		{
+			if (k > 0) out.write(' ');
+			out.write(pSingle ? Float.toString((float) pRe[k]) : Double.toString(pRe[k]));
+			if (pIm == null) continue;
+			out.write(' ');
+			out.write(pSingle ? Float.toString((float) pIm[k]) : Double.toString(pIm[k]));
+		}
+		out.write("</Coefficients>\n");
+	}
+
+	private void writeDirectionEnd() throws IOException
+	{
+		out.write("</Direction>\n");
+	}
+
+	private void writeDirectionStart(String pName) throws IOException
+	{
+		out.write("<Direction name=\"");
+		out.write(escape(pName));
+		out.write("\">\n");
+	}
+
+	/**
+	 * Close the Frames element opened by writeStartFrames.
+	 * 
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void writeEndFrames() throws IOException
+	{
+		out.write("</Frames>\n");
+	}
+
+	private void writeEnd() throws IOException
+	{
+		out.write("</Frame>\n");
+	}
+
+	private void writeStart(FrameAbstract pF, String pType) throws IOException
+	{
+		out.write("<Frame type=\"");
+		out.write(pType);
+		out.write("\" name=\"");
+		out.write(escape(pF.getName()));
+		out.write("\" algebra=\"");
+		out.write(escape(pF.getAlgebra().getAlgebraName()));
+		out.write("\" size=\"");
+		out.write(Integer.toString((pF.getFBasis() == null) ? 0 : pF.getFBasis().size()));
+		out.write("\">\n");
+	}
+
+	/**
+	 * Open a document that holds any number of frames. Frames written after
+	 * this sit inside one Frames element, so the result is well formed XML.
+	 * Close it with writeEndFrames.
+	 * 
+	 * @throws IOException
+	 *             from the underlying writer
+	 */
+	public void writeStartFrames() throws IOException
+	{
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Frames>\n");
+	}
+}
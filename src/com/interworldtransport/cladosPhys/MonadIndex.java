@@ -0,0 +1,145 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.MonadIndex<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.MonadIndex<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.Arrays;
+
+/**
+ * The monad index buckets the positions of a frame's basis monads by a hash
+ * of their content. A search only has to test the monads that share a bucket
+ * with the one it is looking for.
+ * <p>
+ * The hash is built from the algebra and from coefficients with their lowest
+ * mantissa bits cleared. Monads that are equal always land in the same
+ * bucket. The frame still confirms every candidate with isGEqual.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class MonadIndex
+{
+	/**
+	 * Mantissa bits dropped from each coefficient before it is hashed.
+	 */
+	private static final long	QUANTUM	= (1L << 20) - 1L;
+
+	/**
+	 * Reduce a coefficient to the bits that take part in a content hash. Both
+	 * zeros hash alike.
+	 *
+	 * @param pValue
+	 *            double
+	 * @return int
+	 */
+	static int quantize(double pValue)
+	{
+		if (pValue == 0.0d) return 0;
+		long tBits = Double.doubleToLongBits(pValue) & ~QUANTUM;
+		return (int) (tBits ^ (tBits >>> 32));
+	}
+
+	private final int[]	hashes;
+	private final int[]	head;
+	private final int	mask;
+	private final int[]	next;
+
+	/**
+	 * Build the index from the content hash of each basis monad in order.
+	 *
+	 * @param pHashes
+	 *            int[] one content hash per basis monad
+	 */
+	MonadIndex(int[] pHashes)
+	{
+		int tSize = Integer.highestOneBit(Math.max(1, pHashes.length) * 2 - 1) * 2;
+		hashes = pHashes;
+		head = new int[tSize];
+		mask = tSize - 1;
+		next = new int[pHashes.length];
+		Arrays.fill(head, -1);
+		// Filling from the back leaves each bucket in ascending order, so the
+		// first candidate is the first match a walk of the list would find.
+		for (int k = pHashes.length - 1; k >= 0; k--)
+		{
+			int tBucket = spread(pHashes[k]) & mask;
+			next[k] = head[tBucket];
+			head[tBucket] = k;
+		}
+	}
+
+	/**
+	 * Return an index over the same monads plus some appended after them. The
+	 * content hashes already known are reused, so no monad is hashed again.
+	 *
+	 * @param pHashes
+	 *            int[] content hashes of the appended monads in order
+	 * @return MonadIndex
+	 */
+	MonadIndex append(int[] pHashes)
+	{
+		int[] tHashes = Arrays.copyOf(hashes, hashes.length + pHashes.length);
+		System.arraycopy(pHashes, 0, tHashes, hashes.length, pHashes.length);
+		return new MonadIndex(tHashes);
+	}
+
+	/**
+	 * Return the first position whose monad has the given content hash.
+	 *
+	 * @param pHash
+	 *            int
+	 * @return int position or -1 when there is none
+	 */
+	int first(int pHash)
+	{
+		return skip(head[spread(pHash) & mask], pHash);
+	}
+
+	/**
+	 * Return the next position after pSpot whose monad has the given content
+	 * hash.
+	 *
+	 * @param pSpot
+	 *            int the previous candidate
+	 * @param pHash
+	 *            int
+	 * @return int position or -1 when there are no more
+	 */
+	int next(int pSpot, int pHash)
+	{
+		return skip(next[pSpot], pHash);
+	}
+
+	private int skip(int pSpot, int pHash)
+	{
+		while (pSpot >= 0 && hashes[pSpot] != pHash)
+			pSpot = next[pSpot];
+		return pSpot;
+	}
+
+	private static int spread(int pHash)
+	{
+		return pHash ^ (pHash >>> 16);
+	}
+}
@@ -0,0 +1,302 @@
+/*
+ * <h2>Copyright</h2> © 2018 Alfred Differ.<br>
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.ProductIndex<br>
+ * -------------------------------------------------------------------- <p>
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.<p>
+ *
+ * Use of this code or executable objects derived from it by the Licensee
+ * states their willingness to accept the terms of the license. <p>
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.<p>
+ *
+ * ------------------------------------------------------------------------ <br>
+ * ---com.interworldtransport.cladosPhys.ProductIndex<br>
+ * ------------------------------------------------------------------------ <br>
+ */
+package com.interworldtransport.cladosPhys;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.interworldtransport.cladosG.AlgebraAbstract;
+import com.interworldtransport.cladosG.GProduct;
+
+/**
+ * The product index is a primitive copy of the default basis product table of
+ * an algebra. Frames use it to multiply coefficient arrays without going
+ * through monads. One index is built per algebra and shared by every frame
+ * that references that algebra.
+ * <p>
+ * The GProduct table reports the product of two blades as a signed, one-based
+ * blade index. This class splits that into a zero-based blade index and a
+ * sign so the inner loops never have to decode it.
+ *
+ * @version 1.0
+ * @author Dr Alfred W Differ
+ */
+final class ProductIndex
+{
+	private static final Map<AlgebraAbstract, ProductIndex> indices = new WeakHashMap<AlgebraAbstract, ProductIndex>();
+
+	/**
+	 * Return the product index for an algebra, building it the first time the
+	 * algebra is seen.
+	 *
+	 * @param pAlg
+	 *            AlgebraAbstract
+	 * @return ProductIndex
+	 */
+	static ProductIndex of(AlgebraAbstract pAlg)
+	{
+		synchronized (indices)
+		{
+			ProductIndex tIndex = indices.get(pAlg);
+			if (tIndex == null)
+			{
+				tIndex = new ProductIndex(pAlg);
+				indices.put(pAlg, tIndex);
+			}
+			return tIndex;
+		}
+	}
+
+	/**
+	 * Number of blades in the default basis.
+	 */
+	final int		blades;
+
+	/**
+	 * Number of generators of the algebra.
+	 */
+	final int		generators;
+
+	/**
+	 * Zero-based blade index for the product of blade j and blade k stored at
+	 * [j*blades+k].
+	 */
+	final int[]		product;
+
+	/**
+	 * Sign (+1/-1) for the product of blade j and blade k stored at
+	 * [j*blades+k].
+	 */
+	final byte[]	sign;
+
+	/**
+	 * Generator subset (as a bit mask) that spans each default blade.
+	 */
+	final int[]		bladeMask;
+
+	/**
+	 * Sign relating the ordered product of the generators in bladeMask[k] to
+	 * default blade k.
+	 */
+	final byte[]	bladeSign;
+
+	/**
+	 * Sign of the scalar produced when a default blade is squared.
+	 */
+	final byte[]	square;
+
+	/**
+	 * The same signs as square held as doubles for the dot product kernels.
+	 */
+	final double[]	metric;
+
+	private ProductIndex(AlgebraAbstract pAlg)
+	{
+		blades = pAlg.getGBasis().getBladeCount();
+		generators = Integer.numberOfTrailingZeros(blades);
+		product = new int[blades * blades];
+		sign = new byte[blades * blades];
+		square = new byte[blades];
+		metric = new double[blades];
+
+		GProduct tProduct = pAlg.getGProduct();
+		for (int j = 0; j < blades; j++)
+			for (int k = 0; k < blades; k++)
+			{
+				int tResult = tProduct.getResult((short) j, (short) k);
+				product[j * blades + k] = Math.abs(tResult) - 1;
+				sign[j * blades + k] = (byte) (tResult < 0 ? -1 : 1);
+			}
+		for (int k = 0; k < blades; k++)
+		{
+			square[k] = sign[k * blades + k];
+			metric[k] = square[k];
+		}
+
+		// The vector blades follow the scalar in generator order, so every
+		// other blade can be located by multiplying its generators in order.
+		bladeMask = new int[blades];
+		bladeSign = new byte[blades];
+		for (int tMask = 0; tMask < blades; tMask++)
+		{
+			int tBlade = 0;
+			int tSign = 1;
+			for (int g = 0; g < generators; g++)
+				if ((tMask & (1 << g)) != 0)
+				{
+					int tSpot = tBlade * blades + g + 1;
+					tSign *= sign[tSpot];
+					tBlade = product[tSpot];
+				}
+			bladeMask[tBlade] = tMask;
+			bladeSign[tBlade] = (byte) tSign;
+		}
+	}
+
+	/**
+	 * Geometric product of two coefficient arrays expressed in the default
+	 * basis. Each operand and the result occupy 'blades' consecutive entries
+	 * starting at their offsets. The result is cleared before accumulation.
+	 *
+	 * @param pA
+	 *            double[] left factor
+	 * @param pAOff
+	 *            int offset of the left factor
+	 * @param pB
+	 *            double[] right factor
+	 * @param pBOff
+	 *            int offset of the right factor
+	 * @param pOut
+	 *            double[] product
+	 * @param pOutOff
+	 *            int offset of the product
+	 */
+	void multiply(double[] pA, int pAOff, double[] pB, int pBOff, double[] pOut, int pOutOff)
+	{
+		Arrays.fill(pOut, pOutOff, pOutOff + blades, 0.0d);
+		for (int j = 0; j < blades; j++)
+		{
+			double tA = pA[pAOff + j];
+			if (tA == 0.0d) continue;
+			int tRow = j * blades;
+			for (int k = 0; k < blades; k++)
+			{
+				int tSpot = tRow + k;
+				int tOut = pOutOff + product[tSpot];
+				pOut[tOut] = Math.fma(sign[tSpot] * tA, pB[pBOff + k], pOut[tOut]);
+			}
+		}
+	}
+
+	/**
+	 * Geometric product of two complex coefficient arrays expressed in the
+	 * default basis. Real and imaginary parts are held in separate arrays that
+	 * share offsets. The result is cleared before accumulation.
+	 *
+	 * @param pARe
+	 *            double[] real part of the left factor
+	 * @param pAIm
+	 *            double[] imaginary part of the left factor
+	 * @param pAOff
+	 *            int offset of the left factor
+	 * @param pBRe
+	 *            double[] real part of the right factor
+	 * @param pBIm
+	 *            double[] imaginary part of the right factor
+	 * @param pBOff
+	 *            int offset of the right factor
+	 * @param pOutRe
+	 *            double[] real part of the product
+	 * @param pOutIm
+	 *            double[] imaginary part of the product
+	 * @param pOutOff
+	 *            int offset of the product
+	 */
+	void multiply(	double[] pARe, double[] pAIm, int pAOff,
+					double[] pBRe, double[] pBIm, int pBOff,
+					double[] pOutRe, double[] pOutIm, int pOutOff)
+	{
+		Arrays.fill(pOutRe, pOutOff, pOutOff + blades, 0.0d);
+		Arrays.fill(pOutIm, pOutOff, pOutOff + blades, 0.0d);
+		for (int j = 0; j < blades; j++)
+		{
+			double tAR = pARe[pAOff + j];
+			double tAI = pAIm[pAOff + j];
+			if (tAR == 0.0d && tAI == 0.0d) continue;
+			int tRow = j * blades;
+			for (int k = 0; k < blades; k++)
+			{
+				int tSpot = tRow + k;
+				int tOut = pOutOff + product[tSpot];
+				double tSR = sign[tSpot] * tAR;
+				double tSI = sign[tSpot] * tAI;
+				double tBR = pBRe[pBOff + k];
+				double tBI = pBIm[pBOff + k];
+				pOutRe[tOut] = Math.fma(tSR, tBR, Math.fma(-tSI, tBI, pOutRe[tOut]));
+				pOutIm[tOut] = Math.fma(tSR, tBI, Math.fma(tSI, tBR, pOutIm[tOut]));
+			}
+		}
+	}
+
+	/**
+	 * Scalar part of the geometric product of two coefficient arrays expressed
+	 * in the default basis. Only a blade times itself lands on the scalar, so
+	 * this is a single signed dot product.
+	 *
+	 * @param pA
+	 *            double[] left factor
+	 * @param pAOff
+	 *            int offset of the left factor
+	 * @param pB
+	 *            double[] right factor
+	 * @param pBOff
+	 *            int offset of the right factor
+	 * @return double
+	 */
+	double scalarProduct(double[] pA, int pAOff, double[] pB, int pBOff)
+	{
+		return FrameKernel.KERNEL.dot(metric, pA, pAOff, pB, pBOff, blades);
+	}
+
+	/**
+	 * Scalar part of the geometric product of two complex coefficient arrays
+	 * expressed in the default basis. Real and imaginary parts are held in
+	 * separate arrays that share offsets.
+	 *
+	 * @param pARe
+	 *            double[] real part of the left factor
+	 * @param pAIm
+	 *            double[] imaginary part of the left factor
+	 * @param pAOff
+	 *            int offset of the left factor
+	 * @param pBRe
+	 *            double[] real part of the right factor
+	 * @param pBIm
+	 *            double[] imaginary part of the right factor
+	 * @param pBOff
+	 *            int offset of the right factor
+	 * @param pOut
+	 *            double[] receives the real then imaginary part of the result
+	 */
+	void scalarProduct(	double[] pARe, double[] pAIm, int pAOff,
+						double[] pBRe, double[] pBIm, int pBOff,
+						double[] pOut)
+	{
+		double tRe = 0.0d;
+		double tIm = 0.0d;
+		for (int k = 0; k < blades; k++)
+		{
+			double tAR = square[k] * pARe[pAOff + k];
+			double tAI = square[k] * pAIm[pAOff + k];
+			double tBR = pBRe[pBOff + k];
+			double tBI = pBIm[pBOff + k];
+			tRe = Math.fma(tAR, tBR, Math.fma(-tAI, tBI, tRe));
+			tIm = Math.fma(tAR, tBI, Math.fma(tAI, tBR, tIm));
+		}
+		pOut[0] = tRe;
+		pOut[1] = tIm;
+	}
+}
@@ -26,6 +26,12 @@ import com.interworldtransport.cladosPhys.FrameAbstract;
  * with unhandled problems. Common elements from each exception class are found
  * here.
  * <p>
+ * Frames also throw these for ordinary misses, such as a monad that isn't in
+ * the basis, and filling in a stack trace is most of what such an exception
+ * costs. Stack traces can be turned off for every frame exception with
+ * setStackTraces or the cladosPhys.stacklessExceptions system property, or
+ * for one exception through its constructor. The frames also offer tryRemove
+ * methods that report a miss without throwing at all.
  * 
  * @version 1.0
  * @author Dr Alfred W Differ
@@ -34,6 +40,36 @@ import com.interworldtransport.cladosPhys.FrameAbstract;
 public class CladosFrameException extends Exception
 {
 	private static final long serialVersionUID = -5513271199443426633L;
+
+	/**
+	 * Whether new frame exceptions record a stack trace when their
+	 * constructor doesn't say.
+	 */
+	private static volatile boolean	stackTraces	= !Boolean.getBoolean("cladosPhys.stacklessExceptions");
+
+	/**
+	 * Report whether new frame exceptions record stack traces by default.
+	 * 
+	 * @return boolean
+	 */
+	public static boolean isStackTraces()
+	{
+		return stackTraces;
+	}
+
+	/**
+	 * Choose whether new frame exceptions record stack traces by default.
+	 * Without them an exception costs little more than its allocation, but
+	 * it can't say where it came from.
+	 * 
+	 * @param pStackTraces
+	 *            boolean
+	 */
+	public static void setStackTraces(boolean pStackTraces)
+	{
+		stackTraces = pStackTraces;
+	}
+
 	/**
 	 * The source NyadRealD is the originator of the Exception.
 	 */
@@ -55,7 +91,22 @@ public class CladosFrameException extends Exception
 	 */
 	public CladosFrameException(FrameAbstract pSource, String pMessage)
 	{
-		super();
+		this(pSource, pMessage, stackTraces);
+	}
+
+	/**
+	 * Constructor that says whether to record a stack trace.
+	 * 
+	 * @param pSource
+	 *            FrameAbstract
+	 * @param pMessage
+	 *            String
+	 * @param pStackTrace
+	 *            boolean false skips filling in the stack trace
+	 */
+	public CladosFrameException(FrameAbstract pSource, String pMessage, boolean pStackTrace)
+	{
+		super(null, null, true, pStackTrace);
 		SourceMessage = pMessage;
 		Source = pSource;
 	}